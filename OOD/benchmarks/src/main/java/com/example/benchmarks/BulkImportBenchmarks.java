@@ -0,0 +1,116 @@
+package com.example.benchmarks;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Importing a campaign's URLs into an empty codec, one import per measurement:
+ * a loop of encode calls, encodeAll over the list, and importFile from a
+ * newline-delimited file to a file of short URLs. One URL in ten repeats an
+ * earlier one. The urls counter reports URLs per second; -p urls=10000000 gives
+ * the production-size import.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@State(Scope.Benchmark)
+public class BulkImportBenchmarks {
+    
+    @Param({"1000000"})
+    public int urls;
+    
+    @Param({"memory", "mapped"})
+    public String store;
+    
+    private Path directory;
+    private Path source;
+    private Path target;
+    private List<String> longUrls;
+    private Object codec;
+    private Path storeDirectory;
+    
+    @Setup(Level.Trial)
+    public void writeUrls() throws Throwable {
+        directory = Files.createTempDirectory("import-benchmark");
+        source = directory.resolve("long-urls.txt");
+        target = directory.resolve("short-urls.txt");
+        String[] all = new String[urls];
+        try (BufferedWriter writer = Files.newBufferedWriter(source)) {
+            for (int i = 0; i < urls; i++) {
+                int n = i % 10 == 9 ? i / 2 : i;
+                all[i] = "https://example.com/campaigns/spring/" + n + "?utm_source=newsletter&utm_medium=email";
+                writer.write(all[i]);
+                writer.newLine();
+            }
+        }
+        longUrls = Arrays.asList(all);
+    }
+    
+    @TearDown(Level.Trial)
+    public void deleteUrls() throws Throwable {
+        CodecBenchmarks.deleteRecursively(directory);
+    }
+    
+    @Setup(Level.Invocation)
+    public void emptyCodec() throws Throwable {
+        storeDirectory = Files.createTempDirectory(directory, "store");
+        codec = CodecBenchmarks.newCodec(store, storeDirectory);
+    }
+    
+    @TearDown(Level.Invocation)
+    public void closeCodec() throws Throwable {
+        Targets.CLOSE_CODEC.invokeExact(codec);
+        CodecBenchmarks.deleteRecursively(storeDirectory);
+        Files.deleteIfExists(target);
+    }
+    
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Imported {
+        public long urls;
+    }
+    
+    @Benchmark
+    public void encodeEach(Imported imported, Blackhole blackhole) throws Throwable {
+        for (String longUrl : longUrls) {
+            blackhole.consume((String) Targets.ENCODE.invokeExact(codec, longUrl));
+        }
+        imported.urls += urls;
+    }
+    
+    @Benchmark
+    public List<?> encodeAll(Imported imported) throws Throwable {
+        List<?> shortUrls = (List<?>) Targets.ENCODE_ALL.invokeExact(codec, longUrls);
+        imported.urls += urls;
+        return shortUrls;
+    }
+    
+    @Benchmark
+    public long importFile(Imported imported) throws Throwable {
+        long count = (long) Targets.IMPORT_FILE.invokeExact(codec, source, target);
+        imported.urls += count;
+        return count;
+    }
+}
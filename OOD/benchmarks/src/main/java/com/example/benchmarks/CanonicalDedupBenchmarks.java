@@ -0,0 +1,75 @@
+package com.example.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Repeat encodes of URLs spelled four ways, as links pasted from different places
+ * tend to be: as stored, with an upper-case host, with the default port and a
+ * trailing slash, and with the query parameters swapped. Each codec starts with
+ * the first spelling of every URL on the heap store; one canonicalizes, one does
+ * not. The teardown prints how many mappings the codec ended up holding.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class CanonicalDedupBenchmarks {
+    
+    @Param({"100000"})
+    public int urls;
+    
+    @Param({"false", "true"})
+    public boolean canonicalize;
+    
+    private Object store;
+    private Object codec;
+    private String[] spellings;
+    
+    @Setup(Level.Trial)
+    public void populate() throws Throwable {
+        store = (Object) Targets.NEW_IN_MEMORY_URL_STORE.invokeExact();
+        Object ids = (Object) Targets.NEW_LEASED_ID_ALLOCATOR.invokeExact(
+                (Object) Targets.NEW_IN_PROCESS_ID_COORDINATOR.invokeExact(1L));
+        codec = (Object) Targets.NEW_CANONICALIZING_CODEC.invokeExact(store, (Object) null, ids, (Object) null,
+                canonicalize);
+        spellings = new String[urls * 4];
+        for (int i = 0; i < urls; i++) {
+            String path = "/articles/" + i;
+            spellings[4 * i] = "https://example.com" + path + "?id=" + i + "&ref=share";
+            spellings[4 * i + 1] = "https://Example.COM" + path + "?id=" + i + "&ref=share";
+            spellings[4 * i + 2] = "https://example.com:443" + path + "/?id=" + i + "&ref=share";
+            spellings[4 * i + 3] = "https://example.com" + path + "?ref=share&id=" + i;
+            String shortUrl = (String) Targets.ENCODE.invokeExact(codec, spellings[4 * i]);
+        }
+    }
+    
+    @TearDown(Level.Trial)
+    public void close() throws Throwable {
+        System.out.printf("%nmappings for %,d URLs: %,d%n", urls, (long) Targets.URL_STORE_SIZE.invokeExact(store));
+        Targets.CLOSE_CODEC.invokeExact(codec);
+    }
+    
+    @Benchmark
+    public String encodeRepeat() throws Throwable {
+        return (String) Targets.ENCODE.invokeExact(codec, spellings[ThreadLocalRandom.current().nextInt(spellings.length)]);
+    }
+}
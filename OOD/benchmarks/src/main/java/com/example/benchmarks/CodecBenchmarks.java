@@ -0,0 +1,129 @@
+package com.example.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Codec.encode and decode from several threads against one shared codec holding
+ * many URLs, on the heap store and on the memory-mapped store. Lookups pick a
+ * random known URL per call; encodeNew shortens a URL never seen before, against
+ * a codec emptied at each iteration so the run does not grow without bound.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class CodecBenchmarks {
+    
+    @Param({"100000"})
+    public int urls;
+    
+    @Param({"memory", "mapped"})
+    public String store;
+    
+    private Object codec;
+    private Path directory;
+    private String[] longUrls;
+    private String[] shortUrls;
+    
+    @Setup(Level.Trial)
+    public void populate() throws Throwable {
+        directory = Files.createTempDirectory("codec-benchmark");
+        codec = newCodec(store, directory);
+        longUrls = new String[urls];
+        shortUrls = new String[urls];
+        for (int i = 0; i < urls; i++) {
+            longUrls[i] = "https://example.com/articles/" + i + "?utm_source=benchmark";
+            shortUrls[i] = (String) Targets.ENCODE.invokeExact(codec, longUrls[i]);
+        }
+    }
+    
+    @TearDown(Level.Trial)
+    public void close() throws Throwable {
+        Targets.CLOSE_CODEC.invokeExact(codec);
+        deleteRecursively(directory);
+    }
+    
+    @State(Scope.Benchmark)
+    public static class FreshCodec {
+        Object codec;
+        Path directory;
+        
+        @Setup(Level.Iteration)
+        public void reset(CodecBenchmarks benchmark) throws Throwable {
+            directory = Files.createTempDirectory("codec-benchmark");
+            codec = newCodec(benchmark.store, directory);
+        }
+        
+        @TearDown(Level.Iteration)
+        public void close() throws Throwable {
+            Targets.CLOSE_CODEC.invokeExact(codec);
+            deleteRecursively(directory);
+        }
+    }
+    
+    static Object newCodec(String store, Path directory) throws Throwable {
+        if (store.equals("mapped")) {
+            Object mapped = (Object) Targets.NEW_MAPPED_URL_STORE.invokeExact(directory);
+            return (Object) Targets.NEW_CODEC_WITH_STORE.invokeExact(mapped);
+        }
+        return (Object) Targets.NEW_CODEC.invokeExact();
+    }
+    
+    static void deleteRecursively(Path directory) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+    
+    @State(Scope.Thread)
+    public static class Writer {
+        String prefix;
+        long next;
+        
+        @Setup(Level.Trial)
+        public void name() {
+            prefix = "https://example.com/new/" + Thread.currentThread().getId() + "/";
+        }
+    }
+    
+    @Benchmark
+    public String encodeExisting() throws Throwable {
+        return (String) Targets.ENCODE.invokeExact(codec, longUrls[ThreadLocalRandom.current().nextInt(urls)]);
+    }
+    
+    @Benchmark
+    public String decode() throws Throwable {
+        return (String) Targets.DECODE.invokeExact(codec, shortUrls[ThreadLocalRandom.current().nextInt(urls)]);
+    }
+    
+    @Benchmark
+    public String encodeNew(FreshCodec fresh, Writer writer) throws Throwable {
+        return (String) Targets.ENCODE.invokeExact(fresh.codec, writer.prefix + writer.next++);
+    }
+}
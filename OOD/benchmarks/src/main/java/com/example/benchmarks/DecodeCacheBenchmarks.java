@@ -0,0 +1,121 @@
+package com.example.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Codec.decode under skewed redirect traffic: short URLs are drawn from a Zipfian
+ * distribution over every stored URL (exponent 0.99 as in YCSB, and the more
+ * skewed 1.2), with and without a DecodeCache of 10,000 entries in front of the
+ * store. The draws are
+ * made up front and the hot ranks are scattered over the ids, so the measured
+ * loop is only the decode. The trial prints the cache's hit rate.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class DecodeCacheBenchmarks {
+    
+    private static final int DRAWS = 1 << 22;
+    
+    @Param({"1000000"})
+    public int urls;
+    
+    @Param({"memory", "mapped"})
+    public String store;
+    
+    @Param({"0", "10000"})
+    public int cacheEntries;
+    
+    @Param({"0.99", "1.2"})
+    public double exponent;
+    
+    private Object codec;
+    private Object cache;
+    private Path directory;
+    private String[] draws;
+    
+    @Setup(Level.Trial)
+    public void populate() throws Throwable {
+        directory = Files.createTempDirectory("decode-cache-benchmark");
+        Object urlStore = store.equals("mapped")
+                ? (Object) Targets.NEW_MAPPED_URL_STORE.invokeExact(directory)
+                : (Object) Targets.NEW_IN_MEMORY_URL_STORE.invokeExact();
+        cache = cacheEntries == 0 ? null : (Object) Targets.DECODE_CACHE_OF_ENTRIES.invokeExact((long) cacheEntries);
+        codec = (Object) Targets.NEW_CODEC_WITH_CACHE.invokeExact(urlStore, cache);
+        String[] shortUrls = new String[urls];
+        for (int i = 0; i < urls; i++) {
+            shortUrls[i] = (String) Targets.ENCODE.invokeExact(codec,
+                    "https://example.com/articles/" + i + "?utm_source=benchmark");
+        }
+        
+        // Rank r is drawn with probability proportional to 1 / r^exponent
+        double[] cumulative = new double[urls];
+        double sum = 0;
+        for (int r = 0; r < urls; r++) {
+            sum += 1 / Math.pow(r + 1, exponent);
+            cumulative[r] = sum;
+        }
+        int[] idOfRank = new int[urls];
+        Random random = new Random(42);
+        for (int r = 0; r < urls; r++) {
+            int j = random.nextInt(r + 1);
+            idOfRank[r] = idOfRank[j];
+            idOfRank[j] = r;
+        }
+        draws = new String[DRAWS];
+        for (int i = 0; i < DRAWS; i++) {
+            int rank = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+            draws[i] = shortUrls[idOfRank[rank < 0 ? -rank - 1 : rank]];
+        }
+    }
+    
+    @TearDown(Level.Trial)
+    public void close() throws Throwable {
+        if (cache != null) {
+            System.out.printf("%ncache hit rate %.3f%n", (double) Targets.CACHE_HIT_RATE.invokeExact(cache));
+        }
+        Targets.CLOSE_CODEC.invokeExact(codec);
+        CodecBenchmarks.deleteRecursively(directory);
+    }
+    
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+        
+        @Setup(Level.Trial)
+        public void start() {
+            next = ThreadLocalRandom.current().nextInt(DRAWS);
+        }
+    }
+    
+    @Benchmark
+    public String decode(Cursor cursor) throws Throwable {
+        String shortUrl = draws[cursor.next];
+        cursor.next = (cursor.next + 1) & (DRAWS - 1);
+        return (String) Targets.DECODE.invokeExact(codec, shortUrl);
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Codec.encode with a TTL and decode on the heap store while the expiry sweeper
+ * is idle and while it is busy. With sweeping on, 1,000,000 preloaded mappings
+ * expire evenly over the first ten seconds, about 100,000 a second, which covers
+ * the warmup and measurement, and new mappings live two seconds; with it off,
+ * everything lives a day. The latency percentiles should match between the two.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class ExpiryBenchmarks {
+    
+    private static final long DAY_MILLIS = 86_400_000;
+    
+    @Param({"100000"})
+    public int urls;
+    
+    @Param({"false", "true"})
+    public boolean sweeping;
+    
+    private Object codec;
+    private String[] shortUrls;
+    private long newTtlMillis;
+    
+    @Setup(Level.Trial)
+    public void populate() throws Throwable {
+        Object store = (Object) Targets.NEW_IN_MEMORY_URL_STORE.invokeExact();
+        codec = (Object) Targets.NEW_CODEC_WITH_STORE.invokeExact(store);
+        shortUrls = new String[urls];
+        for (int i = 0; i < urls; i++) {
+            shortUrls[i] = (String) Targets.ENCODE_WITH_TTL.invokeExact(codec,
+                    "https://example.com/articles/" + i + "?utm_source=benchmark", DAY_MILLIS);
+        }
+        for (int i = 0; i < 1_000_000; i++) {
+            String shortUrl = (String) Targets.ENCODE_WITH_TTL.invokeExact(codec,
+                    "https://example.com/campaigns/" + i + "?utm_source=benchmark",
+                    sweeping ? 1_000 + i % 9_000 : DAY_MILLIS);
+        }
+        newTtlMillis = sweeping ? 2_000 : DAY_MILLIS;
+    }
+    
+    @TearDown(Level.Trial)
+    public void close() throws Throwable {
+        Targets.CLOSE_CODEC.invokeExact(codec);
+    }
+    
+    @State(Scope.Thread)
+    public static class Writer {
+        String prefix;
+        long next;
+        
+        @Setup(Level.Trial)
+        public void name() {
+            prefix = "https://example.com/new/" + Thread.currentThread().getId() + "/";
+        }
+    }
+    
+    @Benchmark
+    public String decode() throws Throwable {
+        return (String) Targets.DECODE.invokeExact(codec, shortUrls[ThreadLocalRandom.current().nextInt(urls)]);
+    }
+    
+    @Benchmark
+    public String encodeNew(Writer writer) throws Throwable {
+        return (String) Targets.ENCODE_WITH_TTL.invokeExact(codec, writer.prefix + writer.next++, newTtlMillis);
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.Closeable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Id allocation from several threads: one shared counter, as every Codec used to
+ * keep, next to blocks leased from an in-process coordinator and from a
+ * coordinator file, and Snowflake ids. nextId takes an id alone; encodeNew
+ * shortens a URL never seen before on the heap store with ids from each
+ * allocator, against a codec emptied at each iteration.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class IdAllocationBenchmarks {
+    
+    @Param({"counter", "leased", "file", "snowflake"})
+    public String allocator;
+    
+    private Path directory;
+    private Object coordinator;
+    private Object ids;
+    
+    @Setup(Level.Trial)
+    public void open() throws Throwable {
+        directory = Files.createTempDirectory("id-benchmark");
+        ids = newAllocator();
+    }
+    
+    @TearDown(Level.Trial)
+    public void close() throws Throwable {
+        if (coordinator instanceof Closeable) {
+            ((Closeable) coordinator).close();
+        }
+        CodecBenchmarks.deleteRecursively(directory);
+    }
+    
+    // The counter is a coordinator asked for one id at a time: a single shared getAndAdd
+    private Object newAllocator() throws Throwable {
+        switch (allocator) {
+            case "counter":
+                coordinator = (Object) Targets.NEW_IN_PROCESS_ID_COORDINATOR.invokeExact(1L);
+                return null;
+            case "leased":
+                coordinator = (Object) Targets.NEW_IN_PROCESS_ID_COORDINATOR.invokeExact(1L);
+                return (Object) Targets.NEW_LEASED_ID_ALLOCATOR.invokeExact(coordinator);
+            case "file":
+                coordinator = (Object) Targets.NEW_FILE_ID_COORDINATOR.invokeExact(directory.resolve("next-id"), 1L);
+                return (Object) Targets.NEW_LEASED_ID_ALLOCATOR.invokeExact(coordinator);
+            case "snowflake":
+                return (Object) Targets.NEW_SNOWFLAKE_ID_ALLOCATOR.invokeExact(1);
+            default:
+                throw new IllegalArgumentException("Unknown allocator " + allocator);
+        }
+    }
+    
+    @State(Scope.Benchmark)
+    public static class FreshCodec {
+        Object codec;
+        
+        @Setup(Level.Iteration)
+        public void reset(IdAllocationBenchmarks benchmark) throws Throwable {
+            Object store = (Object) Targets.NEW_IN_MEMORY_URL_STORE.invokeExact();
+            codec = benchmark.ids == null
+                    ? (Object) Targets.NEW_CODEC_WITH_STORE.invokeExact(store)
+                    : (Object) Targets.NEW_CODEC_WITH_IDS.invokeExact(store, (Object) null, benchmark.ids);
+        }
+        
+        @TearDown(Level.Iteration)
+        public void close() throws Throwable {
+            Targets.CLOSE_CODEC.invokeExact(codec);
+        }
+    }
+    
+    @State(Scope.Thread)
+    public static class Writer {
+        String prefix;
+        long next;
+        
+        @Setup(Level.Trial)
+        public void name() {
+            prefix = "https://example.com/new/" + Thread.currentThread().getId() + "/";
+        }
+    }
+    
+    @Benchmark
+    public long nextId() throws Throwable {
+        if (ids == null) {
+            return (long) Targets.CLAIM_IDS.invokeExact(coordinator, 1);
+        }
+        return (long) Targets.NEXT_ID.invokeExact(ids);
+    }
+    
+    @Benchmark
+    public String encodeNew(FreshCodec fresh, Writer writer) throws Throwable {
+        return (String) Targets.ENCODE.invokeExact(fresh.codec, writer.prefix + writer.next++);
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decodes of made-up short URLs, as a scanner sends them, against a heap-store
+ * codec of 1,000,000 URLs numbered densely or by Snowflake ids. The junk
+ * tokens are as long as real ones, so they parse like real ones and miss in the
+ * store. decodeJunk pays for the exception, tryDecodeJunk returns null, and
+ * tryDecodeKnown shows what the filter costs a real redirect.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class NegativeLookupBenchmarks {
+    
+    private static final int JUNK = 1 << 16;
+    
+    @Param({"1000000"})
+    public int urls;
+    
+    @Param({"counter", "snowflake"})
+    public String ids;
+    
+    @Param({"false", "true"})
+    public boolean filter;
+    
+    private Object codec;
+    private String[] shortUrls;
+    private String[] junk;
+    
+    @Setup(Level.Trial)
+    public void populate() throws Throwable {
+        Object store = (Object) Targets.NEW_IN_MEMORY_URL_STORE.invokeExact();
+        Object bloom = filter ? (Object) Targets.NEW_ID_BLOOM_FILTER.invokeExact((long) urls) : null;
+        Object allocator = ids.equals("snowflake")
+                ? (Object) Targets.NEW_SNOWFLAKE_ID_ALLOCATOR.invokeExact(1)
+                : (Object) Targets.NEW_LEASED_ID_ALLOCATOR.invokeExact(
+                        (Object) Targets.NEW_IN_PROCESS_ID_COORDINATOR.invokeExact(1L));
+        codec = (Object) Targets.NEW_CODEC_WITH_FILTER.invokeExact(store, (Object) null, allocator, bloom);
+        shortUrls = new String[urls];
+        for (int i = 0; i < urls; i++) {
+            shortUrls[i] = (String) Targets.ENCODE.invokeExact(codec,
+                    "https://example.com/articles/" + i + "?utm_source=benchmark");
+        }
+        
+        String prefix = shortUrls[0].substring(0, shortUrls[0].lastIndexOf('/') + 1);
+        int length = shortUrls[urls - 1].length() - prefix.length();
+        String digits = "0123456789abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ";
+        Random random = new Random(42);
+        junk = new String[JUNK];
+        for (int i = 0; i < JUNK; i++) {
+            StringBuilder token = new StringBuilder(prefix);
+            // A leading 1 keeps 11-digit tokens inside a long
+            token.append(length == 11 ? '1' : digits.charAt(1 + random.nextInt(61)));
+            for (int j = 1; j < length; j++) {
+                token.append(digits.charAt(random.nextInt(62)));
+            }
+            junk[i] = token.toString();
+        }
+    }
+    
+    @TearDown(Level.Trial)
+    public void close() throws Throwable {
+        Targets.CLOSE_CODEC.invokeExact(codec);
+    }
+    
+    @Benchmark
+    public String decodeJunk() throws Throwable {
+        try {
+            return (String) Targets.DECODE.invokeExact(codec, junk[ThreadLocalRandom.current().nextInt(JUNK)]);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+    
+    @Benchmark
+    public String tryDecodeJunk() throws Throwable {
+        return (String) Targets.TRY_DECODE.invokeExact(codec, junk[ThreadLocalRandom.current().nextInt(JUNK)]);
+    }
+    
+    @Benchmark
+    public String tryDecodeKnown() throws Throwable {
+        return (String) Targets.TRY_DECODE.invokeExact(codec, shortUrls[ThreadLocalRandom.current().nextInt(urls)]);
+    }
+}
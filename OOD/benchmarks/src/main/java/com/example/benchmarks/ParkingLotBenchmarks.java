@@ -0,0 +1,76 @@
+package com.example.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Park + unpark of one car on lots of several sizes held at a fixed fill. Each
+ * operation parks a visitor and sends it away again, so the fill never drifts
+ * and the number measured is the cost of a steady-state visit.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParkingLotBenchmarks {
+    
+    private static final int ROWS = 20;
+    private static final int SPOTS_PER_ROW = 100;
+    private static final int VISITORS = 1024;
+    
+    // Levels of 20 rows x 100 spots
+    @Param({"1", "10", "25"})
+    public int levels;
+    
+    // Share of the spots a car can use that are taken before measuring
+    @Param({"0.0", "0.5", "0.9", "0.99"})
+    public double fill;
+    
+    private Object lot;
+    private String[] visitors;
+    private int next;
+    
+    @Setup(Level.Trial)
+    public void fillLot() throws Throwable {
+        // Count the car spots on an empty lot of the same shape
+        Object probe = (Object) Targets.NEW_PARKING_LOT.invokeExact(levels, ROWS, SPOTS_PER_ROW);
+        int capacity = 0;
+        while ((boolean) Targets.PARK_VEHICLE.invokeExact(probe, "Car_probe_" + capacity)) {
+            capacity++;
+        }
+        
+        lot = (Object) Targets.NEW_PARKING_LOT.invokeExact(levels, ROWS, SPOTS_PER_ROW);
+        int parked = (int) (capacity * fill);
+        for (int i = 0; i < parked; i++) {
+            if (!(boolean) Targets.PARK_VEHICLE.invokeExact(lot, "Car_resident_" + i)) {
+                throw new IllegalStateException("Lot full after " + i + " of " + parked + " cars");
+            }
+        }
+        visitors = new String[VISITORS];
+        for (int i = 0; i < VISITORS; i++) {
+            visitors[i] = "Car_visitor_" + i;
+        }
+    }
+    
+    @Benchmark
+    public boolean parkAndUnpark() throws Throwable {
+        String plate = visitors[next++ & (VISITORS - 1)];
+        boolean parked = (boolean) Targets.PARK_VEHICLE.invokeExact(lot, plate);
+        boolean unparked = (boolean) Targets.UNPARK_VEHICLE.invokeExact(lot, plate);
+        return parked & unparked;
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to reopen a MappedUrlStore holding many URLs, one open per measurement:
+ * after a clean close, after a crash that left the last 10% of the URLs past the
+ * checkpoint, and with both index files gone so the whole log is replayed. Run
+ * with -p urls=50000000 for the startup figure at production size; that store
+ * takes about 5 GB of disk.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RecoveryBenchmarks {
+    
+    @Param({"1000000"})
+    public int urls;
+    
+    @Param({"clean", "crash", "rebuild"})
+    public String recovery;
+    
+    private Path directory;
+    private byte[] checkpoint;
+    private Object store;
+    
+    @Setup(Level.Trial)
+    public void populate() throws Throwable {
+        directory = Files.createTempDirectory("recovery-benchmark");
+        Object writer = (Object) Targets.OPEN_MAPPED_URL_STORE.invokeExact(directory, 0L, 0L);
+        Object codec = (Object) Targets.NEW_CODEC_WITH_STORE.invokeExact(writer);
+        for (int i = 0; i < urls; i++) {
+            String shortUrl = (String) Targets.ENCODE.invokeExact(codec,
+                    "https://example.com/articles/" + i + "?utm_source=benchmark");
+            if (i == urls * 9 / 10) {
+                Targets.CHECKPOINT_STORE.invokeExact(writer);
+            }
+        }
+        if (recovery.equals("crash")) {
+            // Never closed, as if the process died; the mapped writes are in the page cache
+            checkpoint = Files.readAllBytes(directory.resolve("checkpoint"));
+        } else {
+            Targets.CLOSE_CODEC.invokeExact(codec);
+        }
+    }
+    
+    @Setup(Level.Invocation)
+    public void prepare() throws Exception {
+        if (recovery.equals("crash")) {
+            // Put back the checkpoint the crash left, so every open replays the same tail
+            Files.write(directory.resolve("checkpoint"), checkpoint);
+        } else if (recovery.equals("rebuild")) {
+            try (DirectoryStream<Path> indexes = Files.newDirectoryStream(directory, "*.idx")) {
+                for (Path index : indexes) {
+                    Files.delete(index);
+                }
+            }
+        }
+    }
+    
+    @Benchmark
+    public Object open() throws Throwable {
+        store = (Object) Targets.OPEN_MAPPED_URL_STORE.invokeExact(directory, 0L, 0L);
+        return store;
+    }
+    
+    @TearDown(Level.Invocation)
+    public void close() throws Throwable {
+        Targets.CLOSE_STORE.invokeExact(store);
+    }
+    
+    @TearDown(Level.Trial)
+    public void delete() throws Exception {
+        CodecBenchmarks.deleteRecursively(directory);
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DynamicMeetingScheduler.scheduleDay over many days of random meetings. A day
+ * holds at most nine hours, so "large" means many days per operation; about a
+ * fifth of them are over budget and take the unschedulable path. The scheduler
+ * prints its plan, so System.out is swapped for a stream that discards bytes:
+ * the formatting is still measured, the terminal is not.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SchedulerBenchmarks {
+    
+    @Param({"365", "3650"})
+    public int days;
+    
+    private String[] names;
+    private List<List<Integer>> meetings;
+    private PrintStream console;
+    
+    @Setup(Level.Trial)
+    public void generate() {
+        Random random = new Random(42);
+        names = new String[days];
+        meetings = new ArrayList<>(days);
+        for (int day = 0; day < days; day++) {
+            names[day] = "Day" + day;
+            List<Integer> durations = new ArrayList<>();
+            int budget = random.nextInt(5) == 0 ? 12 : 9;
+            for (int total = 0; total < budget; ) {
+                int hours = 1 + random.nextInt(Math.min(4, budget - total));
+                durations.add(hours);
+                total += hours;
+            }
+            meetings.add(durations);
+        }
+        console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+    
+    @TearDown(Level.Trial)
+    public void restoreConsole() {
+        System.setOut(console);
+    }
+    
+    @Benchmark
+    public void scheduleDays() throws Throwable {
+        for (int day = 0; day < days; day++) {
+            // scheduleDay sorts its argument, so every call gets a fresh copy
+            List<Integer> durations = new ArrayList<>(meetings.get(day));
+            Targets.SCHEDULE_DAY.invokeExact(names[day], durations);
+        }
+    }
+}
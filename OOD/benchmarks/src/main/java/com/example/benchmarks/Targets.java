@@ -0,0 +1,143 @@
+package com.example.benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Handles to the code under test. The parking lot, codec and scheduler are
+ * written in the unnamed package, which a named package cannot import, and JMH
+ * refuses benchmarks in the unnamed package; so the benchmarks reach them
+ * through method handles. The handles are static finals, which the JIT inlines
+ * like a direct call.
+ */
+final class Targets {
+    
+    private static final MethodType OBJECT_TO_BOOLEAN = MethodType.methodType(boolean.class, Object.class, String.class);
+    private static final MethodType OBJECT_TO_STRING = MethodType.methodType(String.class, Object.class, String.class);
+    
+    static final MethodHandle NEW_PARKING_LOT = constructor("ParkingLot", int.class, int.class, int.class)
+            .asType(MethodType.methodType(Object.class, int.class, int.class, int.class));
+    static final MethodHandle PARK_VEHICLE = method("ParkingLot", "parkVehicle",
+            MethodType.methodType(boolean.class, String.class)).asType(OBJECT_TO_BOOLEAN);
+    static final MethodHandle UNPARK_VEHICLE = method("ParkingLot", "unParkVehicle",
+            MethodType.methodType(boolean.class, String.class)).asType(OBJECT_TO_BOOLEAN);
+    
+    static final MethodHandle NEW_CODEC = constructor("Codec")
+            .asType(MethodType.methodType(Object.class));
+    static final MethodHandle NEW_CODEC_WITH_STORE = constructor("Codec", type("UrlStore"))
+            .asType(MethodType.methodType(Object.class, Object.class));
+    static final MethodHandle NEW_CODEC_WITH_CACHE = constructor("Codec", type("UrlStore"), type("DecodeCache"))
+            .asType(MethodType.methodType(Object.class, Object.class, Object.class));
+    static final MethodHandle DECODE_CACHE_OF_ENTRIES = staticMethod("DecodeCache", "ofEntries",
+            MethodType.methodType(type("DecodeCache"), long.class)).asType(MethodType.methodType(Object.class, long.class));
+    static final MethodHandle CACHE_HIT_RATE = method("DecodeCache", "hitRate", MethodType.methodType(double.class))
+            .asType(MethodType.methodType(double.class, Object.class));
+    static final MethodHandle NEW_CODEC_WITH_IDS = constructor("Codec", type("UrlStore"), type("DecodeCache"),
+            type("IdAllocator")).asType(MethodType.methodType(Object.class, Object.class, Object.class, Object.class));
+    static final MethodHandle NEW_CODEC_WITH_FILTER = constructor("Codec", type("UrlStore"), type("DecodeCache"),
+            type("IdAllocator"), type("IdBloomFilter"))
+            .asType(MethodType.methodType(Object.class, Object.class, Object.class, Object.class, Object.class));
+    static final MethodHandle NEW_CANONICALIZING_CODEC = constructor("Codec", type("UrlStore"), type("DecodeCache"),
+            type("IdAllocator"), type("IdBloomFilter"), boolean.class)
+            .asType(MethodType.methodType(Object.class, Object.class, Object.class, Object.class, Object.class,
+                    boolean.class));
+    static final MethodHandle NEW_ID_BLOOM_FILTER = constructor("IdBloomFilter", long.class)
+            .asType(MethodType.methodType(Object.class, long.class));
+    static final MethodHandle NEW_IN_PROCESS_ID_COORDINATOR = constructor("InProcessIdCoordinator", long.class)
+            .asType(MethodType.methodType(Object.class, long.class));
+    static final MethodHandle NEW_FILE_ID_COORDINATOR = constructor("FileIdCoordinator", Path.class, long.class)
+            .asType(MethodType.methodType(Object.class, Path.class, long.class));
+    static final MethodHandle CLAIM_IDS = method("IdBlockCoordinator", "claim", MethodType.methodType(long.class, int.class))
+            .asType(MethodType.methodType(long.class, Object.class, int.class));
+    static final MethodHandle NEW_LEASED_ID_ALLOCATOR = constructor("LeasedIdAllocator", type("IdBlockCoordinator"))
+            .asType(MethodType.methodType(Object.class, Object.class));
+    static final MethodHandle NEW_SNOWFLAKE_ID_ALLOCATOR = constructor("SnowflakeIdAllocator", int.class)
+            .asType(MethodType.methodType(Object.class, int.class));
+    static final MethodHandle NEXT_ID = method("IdAllocator", "nextId", MethodType.methodType(long.class))
+            .asType(MethodType.methodType(long.class, Object.class));
+    static final MethodHandle NEW_IN_MEMORY_URL_STORE = constructor("InMemoryUrlStore")
+            .asType(MethodType.methodType(Object.class));
+    static final MethodHandle URL_STORE_SIZE = method("UrlStore", "size", MethodType.methodType(long.class))
+            .asType(MethodType.methodType(long.class, Object.class));
+    static final MethodHandle NEW_MAPPED_URL_STORE = constructor("MappedUrlStore", Path.class)
+            .asType(MethodType.methodType(Object.class, Path.class));
+    static final MethodHandle OPEN_MAPPED_URL_STORE = constructor("MappedUrlStore", Path.class, long.class, long.class)
+            .asType(MethodType.methodType(Object.class, Path.class, long.class, long.class));
+    static final MethodHandle CHECKPOINT_STORE = method("MappedUrlStore", "checkpoint", MethodType.methodType(void.class))
+            .asType(MethodType.methodType(void.class, Object.class));
+    static final MethodHandle CLOSE_STORE = method("MappedUrlStore", "close", MethodType.methodType(void.class))
+            .asType(MethodType.methodType(void.class, Object.class));
+    static final MethodHandle CLOSE_CODEC = method("Codec", "close", MethodType.methodType(void.class))
+            .asType(MethodType.methodType(void.class, Object.class));
+    static final MethodHandle ENCODE = method("Codec", "encode",
+            MethodType.methodType(String.class, String.class)).asType(OBJECT_TO_STRING);
+    static final MethodHandle DECODE = method("Codec", "decode",
+            MethodType.methodType(String.class, String.class)).asType(OBJECT_TO_STRING);
+    static final MethodHandle TRY_DECODE = method("Codec", "tryDecode",
+            MethodType.methodType(String.class, String.class)).asType(OBJECT_TO_STRING);
+    static final MethodHandle ENCODE_WITH_TTL = method("Codec", "encode",
+            MethodType.methodType(String.class, String.class, long.class))
+            .asType(MethodType.methodType(String.class, Object.class, String.class, long.class));
+    static final MethodHandle ENCODE_ALL = method("Codec", "encodeAll", MethodType.methodType(List.class, Iterable.class))
+            .asType(MethodType.methodType(List.class, Object.class, List.class));
+    static final MethodHandle IMPORT_FILE = method("Codec", "importFile",
+            MethodType.methodType(long.class, Path.class, Path.class))
+            .asType(MethodType.methodType(long.class, Object.class, Path.class, Path.class));
+    static final MethodHandle ENCODE_INTO = method("Codec", "encode",
+            MethodType.methodType(int.class, String.class, char[].class, int.class))
+            .asType(MethodType.methodType(int.class, Object.class, String.class, char[].class, int.class));
+    static final MethodHandle DECODE_RANGE = method("Codec", "decode",
+            MethodType.methodType(String.class, CharSequence.class, int.class, int.class))
+            .asType(MethodType.methodType(String.class, Object.class, CharSequence.class, int.class, int.class));
+    static final MethodHandle MAX_SHORT_URL_LENGTH = staticMethod("Codec", "maxShortUrlLength",
+            MethodType.methodType(int.class));
+    
+    // Package-private in the scheduler, so it needs a private lookup
+    static final MethodHandle SCHEDULE_DAY = staticMethod("DynamicMeetingScheduler", "scheduleDay",
+            MethodType.methodType(void.class, String.class, List.class));
+    
+    private Targets() {
+    }
+    
+    private static Class<?> type(String className) {
+        try {
+            return Class.forName(className);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Cannot find " + className, e);
+        }
+    }
+    
+    private static MethodHandle constructor(String className, Class<?>... parameters) {
+        try {
+            Class<?> target = Class.forName(className);
+            return lookup(target).findConstructor(target, MethodType.methodType(void.class, parameters));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot find " + className + " constructor", e);
+        }
+    }
+    
+    private static MethodHandle method(String className, String name, MethodType type) {
+        try {
+            Class<?> target = Class.forName(className);
+            return lookup(target).findVirtual(target, name, type);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot find " + className + "." + name, e);
+        }
+    }
+    
+    private static MethodHandle staticMethod(String className, String name, MethodType type) {
+        try {
+            Class<?> target = Class.forName(className);
+            return lookup(target).findStatic(target, name, type);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot find " + className + "." + name, e);
+        }
+    }
+    
+    private static MethodHandles.Lookup lookup(Class<?> target) throws IllegalAccessException {
+        return MethodHandles.privateLookupIn(target, MethodHandles.lookup());
+    }
+}
@@ -0,0 +1,114 @@
+import java.util.*;
+
+/**
+ * Replays the same random stream of arrivals and departures against every
+ * allocation strategy and reports throughput, rejection rates, how evenly the
+ * levels fill and how far vehicles park from the exit.
+ */
+public class AllocationSimulation {
+    private static final int LEVELS = 4;
+    private static final int ROWS = 20;
+    private static final int SPOTS_PER_ROW = 40;
+    private static final int EVENTS = 400_000;
+    // Slightly more arrivals than departures keeps the lot near full, where strategies differ
+    private static final double ARRIVAL_RATE = 0.53;
+    private static final int SAMPLE_EVERY = 1_000;
+    
+    public static void main(String[] args) {
+        Map<String, AllocationStrategy> strategies = new LinkedHashMap<>();
+        strategies.put("first-fit", new FirstFitStrategy());
+        strategies.put("best-fit", new BestFitStrategy());
+        strategies.put("fragmentation", new FragmentationAwareStrategy());
+        strategies.put("nearest-exit", new NearestExitStrategy());
+        strategies.put("least-loaded", new LeastLoadedLevelStrategy(new FragmentationAwareStrategy()));
+        
+        System.out.println("=== Allocation Strategy Simulation ===");
+        System.out.println("Lot: " + LEVELS + " levels x " + ROWS + " rows x " + SPOTS_PER_ROW + " spots, "
+                + EVENTS + " events, 35% motorcycles / 50% cars / 15% buses");
+        System.out.println();
+        
+        // Warm up every strategy before measuring any of them
+        for (AllocationStrategy strategy : strategies.values()) {
+            simulate(strategy);
+        }
+        
+        System.out.printf("%-14s %12s %10s %10s %10s %12s %12s%n", "strategy", "events/sec", "rejected",
+                "cars", "buses", "level skew", "exit rows");
+        for (Map.Entry<String, AllocationStrategy> entry : strategies.entrySet()) {
+            Result result = simulate(entry.getValue());
+            System.out.printf("%-14s %12.0f %9.1f%% %9.1f%% %9.1f%% %11.1f%% %12.2f%n", entry.getKey(),
+                    result.eventsPerSecond, result.rejectionRate(), result.rejectionRate(VehicleSize.CAR),
+                    result.rejectionRate(VehicleSize.BUS), result.levelSkew * 100, result.exitRows);
+        }
+    }
+    
+    private static Result simulate(AllocationStrategy strategy) {
+        ParkingLot parkingLot = new ParkingLot(LEVELS, ROWS, SPOTS_PER_ROW, strategy);
+        Random random = new Random(42);
+        List<String> parked = new ArrayList<>();
+        Result result = new Result();
+        int capacity = ROWS * SPOTS_PER_ROW;
+        int samples = 0;
+        int nextPlate = 0;
+        
+        long start = System.nanoTime();
+        for (int event = 0; event < EVENTS; event++) {
+            if (parked.isEmpty() || random.nextDouble() < ARRIVAL_RATE) {
+                int kind = random.nextInt(100);
+                VehicleSize size = kind < 35 ? VehicleSize.MOTORCYCLE : kind < 85 ? VehicleSize.CAR : VehicleSize.BUS;
+                String plate = (size == VehicleSize.MOTORCYCLE ? "Motorcycle_" : size == VehicleSize.CAR ? "Car_" : "Bus_")
+                        + nextPlate++;
+                // Arrivals come through one gate per level
+                result.arrivals[size.ordinal()]++;
+                if (parkingLot.parkVehicle(plate, random.nextInt(LEVELS))) {
+                    parked.add(plate);
+                } else {
+                    result.rejections[size.ordinal()]++;
+                }
+            } else {
+                int index = random.nextInt(parked.size());
+                String plate = parked.get(index);
+                parked.set(index, parked.get(parked.size() - 1));
+                parked.remove(parked.size() - 1);
+                parkingLot.unParkVehicle(plate);
+            }
+            
+            if (event % SAMPLE_EVERY == 0 && !parked.isEmpty()) {
+                // Sampling reads counters and one plate, so it barely touches the timing
+                double least = 1;
+                double most = 0;
+                for (int level = 0; level < LEVELS; level++) {
+                    double occupied = 1 - (double) parkingLot.getAvailability(level).getTotalFree() / capacity;
+                    least = Math.min(least, occupied);
+                    most = Math.max(most, occupied);
+                }
+                result.levelSkew += most - least;
+                Spot spot = parkingLot.getParkedSpots(parked.get(random.nextInt(parked.size()))).get(0);
+                result.exitRows += spot.getLevel() * ROWS + spot.getRow();
+                samples++;
+            }
+        }
+        result.eventsPerSecond = EVENTS / ((System.nanoTime() - start) / 1e9);
+        result.levelSkew /= samples;
+        result.exitRows /= samples;
+        return result;
+    }
+    
+    private static class Result {
+        final int[] arrivals = new int[VehicleSize.values().length];
+        final int[] rejections = new int[VehicleSize.values().length];
+        double eventsPerSecond;
+        // Mean gap between the fullest and emptiest level, as a fraction of a level
+        double levelSkew;
+        // Mean rows walked to the exit at row 0 of level 0, counting a level as ROWS rows
+        double exitRows;
+        
+        double rejectionRate() {
+            return 100.0 * Arrays.stream(rejections).sum() / Arrays.stream(arrivals).sum();
+        }
+        
+        double rejectionRate(VehicleSize size) {
+            return 100.0 * rejections[size.ordinal()] / arrivals[size.ordinal()];
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,25 @@
+/**
+ * Decides where a vehicle parks: the order in which levels are tried and which free
+ * spots to take on a level. One strategy is shared by every level and gate, so it
+ * must be stateless or thread-safe.
+ */
+public interface AllocationStrategy {
+    /**
+     * Returns every level number once, in the order the levels should be tried.
+     * The default starts at the gate's preferred level and wraps around.
+     */
+    default int[] levelOrder(Level[] levels, Vehicle vehicle, int preferredLevel) {
+        int[] order = new int[levels.length];
+        for (int i = 0; i < levels.length; i++) {
+            order[i] = Math.floorMod(preferredLevel + i, levels.length);
+        }
+        return order;
+    }
+    
+    /**
+     * Returns the first spot id of a free run of vehicle.getSpotsNeeded() spots the
+     * vehicle fits in, or -1 when the level has none. Runs under the level lock and
+     * should answer from the level's free-spot indexes rather than scanning spots.
+     */
+    int findSpots(Level level, Vehicle vehicle);
+}
\ No newline at end of file
@@ -0,0 +1,173 @@
+import java.util.*;
+
+public class AllocationStrategyTest {
+    public static void main(String[] args) {
+        verifyIndexQueries();
+        verifyFirstFit();
+        verifyBestFit();
+        verifyFragmentationAware();
+        verifyNearestExit();
+        verifyLeastLoadedLevel();
+        
+        System.out.println("=== Allocation Strategy Test ===");
+        System.out.println("PASSED");
+    }
+    
+    // The new index queries against a brute-force model of the same free spots
+    private static void verifyIndexQueries() {
+        Random random = new Random(7);
+        int rows = 13;
+        int width = 37;
+        FreeSpotIndex spots = new FreeSpotIndex(rows * width);
+        FreeRunIndex runs = new FreeRunIndex(rows, width);
+        boolean[] free = new boolean[rows * width];
+        for (int step = 0; step < 20_000; step++) {
+            int id = random.nextInt(free.length);
+            free[id] = random.nextInt(3) != 0;
+            if (free[id]) {
+                spots.set(id);
+            } else {
+                spots.clear(id);
+            }
+            runs.set(id / width, id % width, free[id]);
+            
+            int from = random.nextInt(free.length + 10) - 5;
+            int expected = -1;
+            for (int i = Math.min(from, free.length - 1); i >= 0; i--) {
+                if (free[i]) {
+                    expected = i;
+                    break;
+                }
+            }
+            check(spots.previousSetBit(from) == expected, "previousSetBit(" + from + ")");
+            
+            int length = 1 + random.nextInt(6);
+            int row = random.nextInt(rows + 2) - 1;
+            check(runs.firstRow(length, row) == firstRow(free, width, length, row), "firstRow");
+            check(runs.lastRow(length, row) == lastRow(free, width, length, row), "lastRow");
+            int fragmented = -1;
+            for (int r = 0; r < rows; r++) {
+                int longest = longestRun(free, width, r);
+                if (longest > 0 && (fragmented == -1 || longest < longestRun(free, width, fragmented))) {
+                    fragmented = r;
+                }
+            }
+            check(runs.mostFragmentedRow() == fragmented, "mostFragmentedRow");
+        }
+    }
+    
+    private static void verifyFirstFit() {
+        ParkingLot parkingLot = new ParkingLot(2, 2, 8, new FirstFitStrategy());
+        // Row layout: 2 motorcycle, 4 compact, 2 large; a motorcycle takes the lowest id of any type
+        check(parkingLot.parkVehicle("Motorcycle_1", 1), "motorcycle parks");
+        check(spotOf(parkingLot, "Motorcycle_1").equals("1/0/0"), "first fit starts at the gate level");
+    }
+    
+    private static void verifyBestFit() {
+        ParkingLot parkingLot = new ParkingLot(1, 1, 8, new BestFitStrategy());
+        for (int i = 0; i < 2; i++) {
+            parkingLot.parkVehicle("Motorcycle_" + i);
+        }
+        check(parkingLot.parkVehicle("Motorcycle_2"), "third motorcycle parks");
+        check(spotOf(parkingLot, "Motorcycle_2").equals("0/0/2"), "motorcycle moves up to COMPACT");
+        for (int i = 0; i < 3; i++) {
+            parkingLot.parkVehicle("Car_" + i);
+        }
+        check(parkingLot.getAvailableSpots(0, SpotType.LARGE) == 2, "cars leave LARGE spots alone");
+        check(parkingLot.parkVehicle("Car_3") && spotOf(parkingLot, "Car_3").equals("0/0/6"),
+                "car falls back to LARGE");
+    }
+    
+    private static void verifyFragmentationAware() {
+        ParkingLot parkingLot = brokenMiddleRow(new FragmentationAwareStrategy());
+        check(parkingLot.parkVehicle("Car_2"), "car takes a LARGE spot");
+        check(spotOf(parkingLot, "Car_2").equals("0/1/16"), "car goes to the already broken row");
+        check(parkingLot.parkVehicle("Bus_3") && parkingLot.parkVehicle("Bus_4"), "both whole runs stay free");
+        
+        ParkingLot firstFit = brokenMiddleRow(new FirstFitStrategy());
+        check(firstFit.parkVehicle("Car_2") && spotOf(firstFit, "Car_2").equals("0/0/15"), "first fit breaks row 0");
+        check(firstFit.parkVehicle("Bus_3") && !firstFit.parkVehicle("Bus_4"), "first fit loses a bus run");
+    }
+    
+    // 3 rows of 20 with only LARGE spots 15-19 free: rows 0 and 2 whole, row 1 holding one car
+    private static ParkingLot brokenMiddleRow(AllocationStrategy strategy) {
+        ParkingLot parkingLot = new ParkingLot(1, 3, 20, strategy);
+        for (int row = 0; row < 3; row++) {
+            for (int spot = 0; spot < 15; spot++) {
+                parkingLot.parkVehicle("Motorcycle_" + row + "_" + spot);
+            }
+            parkingLot.parkVehicle("Bus_" + row);
+        }
+        parkingLot.unParkVehicles(Arrays.asList("Bus_1", "Bus_2"));
+        parkingLot.parkVehicle("Car_1");
+        parkingLot.unParkVehicle("Bus_0");
+        check(spotOf(parkingLot, "Car_1").equals("0/1/15"), "setup car breaks row 1");
+        return parkingLot;
+    }
+    
+    private static void verifyNearestExit() {
+        ParkingLot parkingLot = new ParkingLot(2, 5, 20, new NearestExitStrategy(2));
+        check(parkingLot.parkVehicle("Car_1", 1), "car parks");
+        check(spotOf(parkingLot, "Car_1").equals("0/2/5"), "gate level is ignored, exit row first");
+        for (int i = 1; i <= 3; i++) {
+            check(parkingLot.parkVehicle("Bus_" + i), "bus parks");
+        }
+        check(spotOf(parkingLot, "Bus_1").equals("0/2/15"), "bus takes the exit row");
+        check(spotOf(parkingLot, "Bus_2").equals("0/3/15"), "tie between rows goes past the exit row");
+        check(spotOf(parkingLot, "Bus_3").equals("0/1/15"), "then the row before the exit row");
+        for (int i = 0; i < 15; i++) {
+            check(parkingLot.parkVehicle("Motorcycle_" + i), "motorcycle parks");
+        }
+        check(spotOf(parkingLot, "Motorcycle_13").equals("0/2/14"), "exit row fills up first");
+        check(spotOf(parkingLot, "Motorcycle_14").equals("0/3/0"), "then the next nearest row");
+    }
+    
+    private static void verifyLeastLoadedLevel() {
+        ParkingLot parkingLot = new ParkingLot(3, 2, 8, new LeastLoadedLevelStrategy());
+        int[] perLevel = new int[3];
+        for (int i = 0; i < 9; i++) {
+            check(parkingLot.parkVehicle("Car_" + i), "car parks");
+            perLevel[parkingLot.getParkedSpots("Car_" + i).get(0).getLevel()]++;
+        }
+        check(perLevel[0] == 3 && perLevel[1] == 3 && perLevel[2] == 3, "cars spread evenly over levels");
+    }
+    
+    private static String spotOf(ParkingLot parkingLot, String plate) {
+        Spot spot = parkingLot.getParkedSpots(plate).get(0);
+        return spot.getLevel() + "/" + spot.getRow() + "/" + spot.getSpotNumber();
+    }
+    
+    private static int longestRun(boolean[] free, int width, int row) {
+        int longest = 0;
+        int current = 0;
+        for (int spot = 0; spot < width; spot++) {
+            current = free[row * width + spot] ? current + 1 : 0;
+            longest = Math.max(longest, current);
+        }
+        return longest;
+    }
+    
+    private static int firstRow(boolean[] free, int width, int length, int fromRow) {
+        for (int row = Math.max(0, fromRow); row < free.length / width; row++) {
+            if (longestRun(free, width, row) >= length) {
+                return row;
+            }
+        }
+        return -1;
+    }
+    
+    private static int lastRow(boolean[] free, int width, int length, int toRow) {
+        for (int row = Math.min(toRow, free.length / width - 1); row >= 0; row--) {
+            if (longestRun(free, width, row) >= length) {
+                return row;
+            }
+        }
+        return -1;
+    }
+    
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+}
\ No newline at end of file
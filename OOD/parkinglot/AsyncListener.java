@@ -0,0 +1,131 @@
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Buffers events in a bounded queue and replays them to a delegate on a background
+ * thread, so gate threads never wait on the delegate. When the buffer is full the
+ * event is dropped and counted rather than blocking the gate. An event the delegate
+ * throws on is counted as failed, and the worker carries on with the next one.
+ */
+public class AsyncListener implements ParkingLotListener, AutoCloseable {
+    private final ParkingLotListener delegate;
+    private final BlockingQueue<Event> queue;
+    private final AtomicLong droppedEvents = new AtomicLong();
+    private final AtomicLong failedEvents = new AtomicLong();
+    private volatile RuntimeException lastFailure;
+    private final Thread worker;
+    private volatile boolean closed;
+    
+    public AsyncListener(ParkingLotListener delegate) {
+        this(delegate, 8192);
+    }
+    
+    public AsyncListener(ParkingLotListener delegate, int capacity) {
+        this.delegate = delegate;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.worker = new Thread(this::drain, "parking-lot-listener");
+        worker.setDaemon(true);
+        worker.start();
+    }
+    
+    @Override
+    public void onParked(String licensePlate, List<Spot> spots) {
+        enqueue(new Event(ParkingStatus.PARKED, licensePlate, spots));
+    }
+    
+    @Override
+    public void onUnparked(String licensePlate, List<Spot> spots) {
+        enqueue(new Event(ParkingStatus.UNPARKED, licensePlate, spots));
+    }
+    
+    @Override
+    public void onRejected(String licensePlate, ParkingStatus reason) {
+        enqueue(new Event(reason, licensePlate, Collections.emptyList()));
+    }
+    
+    public long getDroppedEvents() {
+        return droppedEvents.get();
+    }
+    
+    public long getFailedEvents() {
+        return failedEvents.get();
+    }
+    
+    /**
+     * What the delegate last threw, or null if it never has.
+     */
+    public RuntimeException getLastFailure() {
+        return lastFailure;
+    }
+    
+    /**
+     * Stops accepting events and waits until everything already buffered has been
+     * delivered to the delegate.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private void enqueue(Event event) {
+        if (closed || !queue.offer(event)) {
+            droppedEvents.incrementAndGet();
+        }
+    }
+    
+    private void drain() {
+        List<Event> batch = new ArrayList<>();
+        try {
+            while (!closed || !queue.isEmpty()) {
+                Event first = queue.poll(50, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch);
+                for (Event event : batch) {
+                    try {
+                        dispatch(event);
+                    } catch (RuntimeException e) {
+                        // One bad event must not stop delivery of the rest
+                        lastFailure = e;
+                        failedEvents.incrementAndGet();
+                    }
+                }
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private void dispatch(Event event) {
+        if (event.status == ParkingStatus.PARKED) {
+            delegate.onParked(event.licensePlate, event.spots);
+        } else if (event.status == ParkingStatus.UNPARKED) {
+            delegate.onUnparked(event.licensePlate, event.spots);
+        } else {
+            delegate.onRejected(event.licensePlate, event.status);
+        }
+    }
+    
+    private static class Event {
+        final ParkingStatus status;
+        final String licensePlate;
+        final List<Spot> spots;
+        
+        Event(ParkingStatus status, String licensePlate, List<Spot> spots) {
+            this.status = status;
+            this.licensePlate = licensePlate;
+            this.spots = spots;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,47 @@
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class AsyncListenerTest {
+    public static void main(String[] args) {
+        AtomicInteger delivered = new AtomicInteger();
+        ParkingLotListener flaky = new ParkingLotListener() {
+            @Override
+            public void onParked(String licensePlate, List<Spot> spots) {
+                if (licensePlate.endsWith("7")) {
+                    throw new IllegalStateException("cannot log " + licensePlate);
+                }
+                delivered.incrementAndGet();
+            }
+            
+            @Override
+            public void onUnparked(String licensePlate, List<Spot> spots) {
+                delivered.incrementAndGet();
+            }
+            
+            @Override
+            public void onRejected(String licensePlate, ParkingStatus reason) {
+                delivered.incrementAndGet();
+            }
+        };
+        AsyncListener listener = new AsyncListener(flaky);
+        for (int i = 0; i < 100; i++) {
+            listener.onParked("Car_" + i, Collections.emptyList());
+        }
+        listener.onUnparked("Car_1", Collections.emptyList());
+        listener.close();
+        // Car_7, Car_17, ..., Car_97 throw; everything after them still arrives
+        check(listener.getFailedEvents() == 10, "failed events: " + listener.getFailedEvents());
+        check(delivered.get() == 91, "delivered events: " + delivered.get());
+        check(listener.getLastFailure().getMessage().equals("cannot log Car_97"), "wrong last failure");
+        check(listener.getDroppedEvents() == 0, "events dropped");
+        
+        System.out.println("=== Async Listener Test ===");
+        System.out.println("PASSED");
+    }
+    
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+}
\ No newline at end of file
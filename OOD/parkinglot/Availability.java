@@ -0,0 +1,67 @@
+/**
+ * Immutable free/capacity counts per SpotType for a lot, level or row.
+ */
+public class Availability {
+    private static final SpotType[] SPOT_TYPES = SpotType.values();
+    
+    private final int[] free;
+    private final int[] capacity;
+    
+    public Availability(int[] free, int[] capacity) {
+        this.free = free;
+        this.capacity = capacity;
+    }
+    
+    public int getFree(SpotType spotType) {
+        return free[spotType.ordinal()];
+    }
+    
+    public int getCapacity(SpotType spotType) {
+        return capacity[spotType.ordinal()];
+    }
+    
+    public int getOccupied(SpotType spotType) {
+        return getCapacity(spotType) - getFree(spotType);
+    }
+    
+    public int getTotalFree() {
+        int total = 0;
+        for (int count : free) {
+            total += count;
+        }
+        return total;
+    }
+    
+    public int getTotalCapacity() {
+        int total = 0;
+        for (int count : capacity) {
+            total += count;
+        }
+        return total;
+    }
+    
+    /**
+     * Adds the counts of other to this snapshot's counts.
+     */
+    public Availability plus(Availability other) {
+        int[] sumFree = new int[SPOT_TYPES.length];
+        int[] sumCapacity = new int[SPOT_TYPES.length];
+        for (int i = 0; i < SPOT_TYPES.length; i++) {
+            sumFree[i] = free[i] + other.free[i];
+            sumCapacity[i] = capacity[i] + other.capacity[i];
+        }
+        return new Availability(sumFree, sumCapacity);
+    }
+    
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (SpotType spotType : SPOT_TYPES) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(spotType).append(' ').append(getFree(spotType)).append('/').append(getCapacity(spotType));
+        }
+        return sb.toString();
+    }
+}
\ No newline at end of file
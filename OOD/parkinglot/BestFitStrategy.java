@@ -0,0 +1,29 @@
+/**
+ * Puts a single-spot vehicle in the smallest spot type it fits that still has room,
+ * so motorcycles and cars stop taking the LARGE spots buses need.
+ */
+public class BestFitStrategy implements AllocationStrategy {
+    private static final SpotType[] SPOT_TYPES = SpotType.values();
+    
+    @Override
+    public int findSpots(Level level, Vehicle vehicle) {
+        if (vehicle.getSpotsNeeded() > 1) {
+            return level.freeLargeRuns().findRun(vehicle.getSpotsNeeded());
+        }
+        // SpotType is declared smallest first
+        for (SpotType type : SPOT_TYPES) {
+            if (!vehicle.canFitInSpotType(type) || level.freeSpots(type).isEmpty()) {
+                continue;
+            }
+            return type == SpotType.LARGE ? findLargeSpot(level) : level.freeSpots(type).nextSetBit(0);
+        }
+        return -1;
+    }
+    
+    /**
+     * Picks the LARGE spot for a single-spot vehicle once every smaller type is full.
+     */
+    protected int findLargeSpot(Level level) {
+        return level.freeSpots(SpotType.LARGE).nextSetBit(0);
+    }
+}
\ No newline at end of file
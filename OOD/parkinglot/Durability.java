@@ -0,0 +1,8 @@
+public enum Durability {
+    // Every record is forced to disk before its park or unpark returns
+    SYNC,
+    // Callers wait for disk, but one force covers every record written while the previous one ran
+    GROUP_COMMIT,
+    // Callers never wait; a background thread forces the log every few milliseconds
+    ASYNC
+}
\ No newline at end of file
@@ -0,0 +1,25 @@
+/**
+ * Takes the lowest free spot id of any type the vehicle fits, which fills each level
+ * row by row from the gate's level onwards. This is the lot's default.
+ */
+public class FirstFitStrategy implements AllocationStrategy {
+    private static final SpotType[] SPOT_TYPES = SpotType.values();
+    
+    @Override
+    public int findSpots(Level level, Vehicle vehicle) {
+        if (vehicle.getSpotsNeeded() > 1) {
+            return level.freeLargeRuns().findRun(vehicle.getSpotsNeeded());
+        }
+        int best = -1;
+        for (SpotType type : SPOT_TYPES) {
+            if (!vehicle.canFitInSpotType(type)) {
+                continue;
+            }
+            int candidate = level.freeSpots(type).nextSetBit(0);
+            if (candidate != -1 && (best == -1 || candidate < best)) {
+                best = candidate;
+            }
+        }
+        return best;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,15 @@
+/**
+ * Best fit that also keeps LARGE runs whole: when a single-spot vehicle has to take
+ * a LARGE spot, it goes to the row whose longest free run is already the shortest,
+ * leaving the long runs in other rows for buses.
+ */
+public class FragmentationAwareStrategy extends BestFitStrategy {
+    @Override
+    protected int findLargeSpot(Level level) {
+        int row = level.freeLargeRuns().mostFragmentedRow();
+        if (row == -1) {
+            return -1;
+        }
+        return level.freeSpots(SpotType.LARGE).nextSetBit(row * level.getSpotsPerRow());
+    }
+}
\ No newline at end of file
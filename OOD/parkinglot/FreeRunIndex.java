@@ -0,0 +1,194 @@
+import java.util.Arrays;
+
+/**
+ * Tracks maximal runs of free spots in every row. Each row is a segment tree
+ * storing, per node, the free prefix, free suffix and longest free run, and a
+ * max tree over rows answers "which row first holds a run of n" in O(log rows)
+ * and "is there any such row" in O(1). Run lengths are stored as chars to halve
+ * the footprint, which caps a row at 65535 spots. A min tree over the rows'
+ * longest runs finds the most fragmented row, the cheapest place to put a
+ * single vehicle without breaking up a run.
+ */
+public class FreeRunIndex {
+    private final int width;
+    private final int leaves;
+    private final int rowLeaves;
+    private final char[] prefix;
+    private final char[] suffix;
+    private final char[] best;
+    private final int[] rowBest;
+    private final int[] rowFragment;
+
+    public FreeRunIndex(int rows, int width) {
+        if (width > Character.MAX_VALUE) {
+            throw new IllegalArgumentException("Row width must be at most " + (int) Character.MAX_VALUE);
+        }
+        this.width = width;
+        this.leaves = Integer.highestOneBit(Math.max(1, width - 1)) << 1;
+        this.rowLeaves = Integer.highestOneBit(Math.max(1, rows - 1)) << 1;
+        this.prefix = new char[rows * 2 * leaves];
+        this.suffix = new char[rows * 2 * leaves];
+        this.best = new char[rows * 2 * leaves];
+        this.rowBest = new int[2 * rowLeaves];
+        this.rowFragment = new int[2 * rowLeaves];
+        Arrays.fill(rowFragment, Integer.MAX_VALUE);
+    }
+
+    public int maxRun() {
+        return rowBest[1];
+    }
+
+    public int maxRun(int row) {
+        return best[base(row) + 1];
+    }
+
+    public void set(int row, int pos, boolean free) {
+        int base = base(row);
+        int node = leaves + pos;
+        char value = free ? (char) 1 : (char) 0;
+        if (best[base + node] == value) {
+            return;
+        }
+        prefix[base + node] = value;
+        suffix[base + node] = value;
+        best[base + node] = value;
+        int length = 1;
+        for (node >>>= 1; node > 0; node >>>= 1) {
+            pull(base, node, length);
+            length <<= 1;
+        }
+
+        int r = rowLeaves + row;
+        rowBest[r] = best[base + 1];
+        rowFragment[r] = best[base + 1] == 0 ? Integer.MAX_VALUE : best[base + 1];
+        for (r >>>= 1; r > 0; r >>>= 1) {
+            rowBest[r] = Math.max(rowBest[2 * r], rowBest[2 * r + 1]);
+            rowFragment[r] = Math.min(rowFragment[2 * r], rowFragment[2 * r + 1]);
+        }
+    }
+
+    // Combine the two children of node, each covering childLength leaves
+    private void pull(int base, int node, int childLength) {
+        int left = base + 2 * node;
+        int right = left + 1;
+        int at = base + node;
+        prefix[at] = (char) (prefix[left] == childLength ? childLength + prefix[right] : prefix[left]);
+        suffix[at] = (char) (suffix[right] == childLength ? childLength + suffix[left] : suffix[right]);
+        best[at] = (char) Math.max(Math.max(best[left], best[right]), suffix[left] + prefix[right]);
+    }
+
+    /**
+     * Returns the start of the leftmost free run of at least length spots in the
+     * lowest such row as row * width + pos, or -1 when no row has one.
+     */
+    public int findRun(int length) {
+        if (length <= 0 || rowBest[1] < length) {
+            return -1;
+        }
+        int r = 1;
+        while (r < rowLeaves) {
+            r = rowBest[2 * r] >= length ? 2 * r : 2 * r + 1;
+        }
+        int row = r - rowLeaves;
+        return row * width + findRunInRow(row, length);
+    }
+
+    /**
+     * Returns the lowest row at or after fromRow holding a free run of at least
+     * length spots, or -1 when there is none.
+     */
+    public int firstRow(int length, int fromRow) {
+        if (length <= 0 || rowBest[1] < length || fromRow >= rowLeaves) {
+            return -1;
+        }
+        int r = rowLeaves + Math.max(0, fromRow);
+        if (rowBest[r] < length) {
+            // Climb until a right sibling holds the run, then descend to its leftmost such row
+            while (true) {
+                if ((r & 1) == 0 && rowBest[r + 1] >= length) {
+                    r++;
+                    break;
+                }
+                r >>>= 1;
+                if (r == 1) {
+                    return -1;
+                }
+            }
+            while (r < rowLeaves) {
+                r = rowBest[2 * r] >= length ? 2 * r : 2 * r + 1;
+            }
+        }
+        return r - rowLeaves;
+    }
+
+    /**
+     * Returns the highest row at or before toRow holding a free run of at least
+     * length spots, or -1 when there is none.
+     */
+    public int lastRow(int length, int toRow) {
+        if (length <= 0 || rowBest[1] < length || toRow < 0) {
+            return -1;
+        }
+        int r = rowLeaves + Math.min(rowLeaves - 1, toRow);
+        if (rowBest[r] < length) {
+            while (true) {
+                if ((r & 1) == 1 && rowBest[r - 1] >= length) {
+                    r--;
+                    break;
+                }
+                r >>>= 1;
+                if (r == 1) {
+                    return -1;
+                }
+            }
+            while (r < rowLeaves) {
+                r = rowBest[2 * r + 1] >= length ? 2 * r + 1 : 2 * r;
+            }
+        }
+        return r - rowLeaves;
+    }
+
+    /**
+     * Returns the row whose longest free run is the shortest among rows with any
+     * free spot, or -1 when every row is full. Ties go to the lowest row.
+     */
+    public int mostFragmentedRow() {
+        if (rowFragment[1] == Integer.MAX_VALUE) {
+            return -1;
+        }
+        int r = 1;
+        while (r < rowLeaves) {
+            r = rowFragment[2 * r] == rowFragment[r] ? 2 * r : 2 * r + 1;
+        }
+        return r - rowLeaves;
+    }
+
+    /**
+     * Returns the position of the leftmost free run of at least length spots in
+     * the row. The caller must know the row has one.
+     */
+    public int findRunInRow(int row, int length) {
+        int base = base(row);
+        int node = 1;
+        int start = 0;
+        int childLength = leaves >>> 1;
+        while (node < leaves) {
+            int left = base + 2 * node;
+            int right = left + 1;
+            if (best[left] >= length) {
+                node = 2 * node;
+            } else if (suffix[left] + prefix[right] >= length) {
+                return start + childLength - suffix[left];
+            } else {
+                node = 2 * node + 1;
+                start += childLength;
+            }
+            childLength >>>= 1;
+        }
+        return start;
+    }
+
+    private int base(int row) {
+        return row * 2 * leaves;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,136 @@
+/**
+ * Hierarchical bitset of free spot ids. Each layer keeps one bit per non-empty
+ * word of the layer below, so finding the lowest free id is O(log64 n)
+ * regardless of how many spots are already taken.
+ */
+public class FreeSpotIndex {
+    private final long[][] layers;
+    private final int size;
+    private int count;
+
+    public FreeSpotIndex(int size) {
+        this.size = size;
+        int depth = 1;
+        int words = wordsFor(size);
+        while (words > 1) {
+            words = wordsFor(words);
+            depth++;
+        }
+        this.layers = new long[depth][];
+        int bits = size;
+        for (int d = 0; d < depth; d++) {
+            layers[d] = new long[wordsFor(bits)];
+            bits = layers[d].length;
+        }
+    }
+
+    private static int wordsFor(int bits) {
+        return Math.max(1, (bits + 63) >>> 6);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    public boolean get(int id) {
+        return (layers[0][id >>> 6] & (1L << id)) != 0;
+    }
+
+    public void set(int id) {
+        if (get(id)) {
+            return;
+        }
+        count++;
+        int bit = id;
+        for (int d = 0; d < layers.length; d++) {
+            int w = bit >>> 6;
+            boolean wasEmpty = layers[d][w] == 0;
+            layers[d][w] |= 1L << bit;
+            if (!wasEmpty) {
+                return;
+            }
+            bit = w;
+        }
+    }
+
+    public void clear(int id) {
+        if (!get(id)) {
+            return;
+        }
+        count--;
+        int bit = id;
+        for (int d = 0; d < layers.length; d++) {
+            int w = bit >>> 6;
+            layers[d][w] &= ~(1L << bit);
+            if (layers[d][w] != 0) {
+                return;
+            }
+            bit = w;
+        }
+    }
+
+    /**
+     * Returns the lowest free id that is >= from, or -1 if there is none.
+     */
+    public int nextSetBit(int from) {
+        if (from < 0 || from >= size || count == 0) {
+            return -1;
+        }
+        return next(0, from);
+    }
+
+    private int next(int depth, int from) {
+        long[] words = layers[depth];
+        int w = from >>> 6;
+        if (w >= words.length) {
+            return -1;
+        }
+        long bits = words[w] & (-1L << from);
+        if (bits != 0) {
+            return (w << 6) + Long.numberOfTrailingZeros(bits);
+        }
+        if (depth + 1 == layers.length) {
+            return -1;
+        }
+        int nextWord = next(depth + 1, w + 1);
+        if (nextWord == -1) {
+            return -1;
+        }
+        return (nextWord << 6) + Long.numberOfTrailingZeros(words[nextWord]);
+    }
+
+    /**
+     * Returns the highest free id that is <= from, or -1 if there is none.
+     */
+    public int previousSetBit(int from) {
+        if (from < 0 || count == 0) {
+            return -1;
+        }
+        return previous(0, Math.min(from, size - 1));
+    }
+
+    private int previous(int depth, int from) {
+        long[] words = layers[depth];
+        int w = from >>> 6;
+        long bits = words[w] & (-1L >>> (63 - (from & 63)));
+        if (bits != 0) {
+            return (w << 6) + 63 - Long.numberOfLeadingZeros(bits);
+        }
+        if (depth + 1 == layers.length || w == 0) {
+            return -1;
+        }
+        int previousWord = previous(depth + 1, w - 1);
+        if (previousWord == -1) {
+            return -1;
+        }
+        return (previousWord << 6) + 63 - Long.numberOfLeadingZeros(words[previousWord]);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,47 @@
+/**
+ * Spreads vehicles across levels: each vehicle tries the level with the most free
+ * spots it fits first, read from the levels' counters without locking, and then
+ * picks spots on that level with the wrapped strategy.
+ */
+public class LeastLoadedLevelStrategy implements AllocationStrategy {
+    private static final SpotType[] SPOT_TYPES = SpotType.values();
+    
+    private final AllocationStrategy spotStrategy;
+    
+    public LeastLoadedLevelStrategy() {
+        this(new FirstFitStrategy());
+    }
+    
+    public LeastLoadedLevelStrategy(AllocationStrategy spotStrategy) {
+        this.spotStrategy = spotStrategy;
+    }
+    
+    @Override
+    public int[] levelOrder(Level[] levels, Vehicle vehicle, int preferredLevel) {
+        int[] order = AllocationStrategy.super.levelOrder(levels, vehicle, preferredLevel);
+        int[] free = new int[levels.length];
+        for (Level level : levels) {
+            for (SpotType type : SPOT_TYPES) {
+                if (vehicle.canFitInSpotType(type)) {
+                    free[level.getLevelNumber()] += level.getAvailableSpots(type);
+                }
+            }
+        }
+        // Insertion sort keeps the gate's wrap-around order among equally loaded levels
+        for (int i = 1; i < order.length; i++) {
+            int level = order[i];
+            int j = i - 1;
+            while (j >= 0 && free[order[j]] < free[level]) {
+                order[j + 1] = order[j];
+                j--;
+            }
+            order[j + 1] = level;
+        }
+        return order;
+    }
+    
+    @Override
+    public int findSpots(Level level, Vehicle vehicle) {
+        return spotStrategy.findSpots(level, vehicle);
+    }
+}
\ No newline at end of file
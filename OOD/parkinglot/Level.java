@@ -0,0 +1,383 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class Level {
+    // Occupancy is claimed with a CAS on the spot's array slot so a spot can never be double-booked
+    private static final VarHandle OCCUPANTS = MethodHandles.arrayElementVarHandle(Vehicle[].class);
+    private static final SpotType[] SPOT_TYPES = SpotType.values();
+    // Free counts for all spot types share one long, so a single atomic read is a consistent snapshot
+    private static final int LEVEL_COUNT_BITS = 21;
+    private static final int ROW_COUNT_BITS = 16;
+    // Results of parkVehicle and tryParkVehicle that are not a SpotLocation
+    public static final long NONE = 0;
+    public static final long CONTENDED = -1;
+    
+    private final int levelNumber;
+    private final int numRows;
+    private final int spotsPerRow;
+    // Spot state lives in flat arrays indexed by row * spotsPerRow + spot; Spot is only a view
+    private final byte[] spotTypes;
+    private final Vehicle[] occupants;
+    private final Map<SpotType, FreeSpotIndex> freeSpots;
+    private final FreeRunIndex freeLargeRuns;
+    private final ReentrantLock lock = new ReentrantLock();
+    // Spots released without holding the level lock, folded into the indexes by the next
+    // lock holder; a plain int stack behind its own monitor, held only to push or pop,
+    // so an unpark never waits for an allocation and boxes nothing
+    private final Object pendingLock = new Object();
+    private int[] pendingFrees = new int[64];
+    private int pendingCount;
+    private final AtomicLong freeCounts = new AtomicLong();
+    private final AtomicLongArray rowFreeCounts;
+    private long capacityCounts;
+    private final long[] rowCapacityCounts;
+    private final AllocationStrategy strategy;
+    
+    public Level(int levelNumber, int numRows, int spotsPerRow) {
+        this(levelNumber, numRows, spotsPerRow, new FirstFitStrategy());
+    }
+    
+    public Level(int levelNumber, int numRows, int spotsPerRow, AllocationStrategy strategy) {
+        if ((long) numRows * spotsPerRow >= 1L << LEVEL_COUNT_BITS) {
+            throw new IllegalArgumentException("A level can hold at most " + ((1 << LEVEL_COUNT_BITS) - 1) + " spots");
+        }
+        // Each row's counts are packed the same way, in narrower fields
+        if (spotsPerRow >= 1 << ROW_COUNT_BITS) {
+            throw new IllegalArgumentException("A row can hold at most " + ((1 << ROW_COUNT_BITS) - 1) + " spots");
+        }
+        this.levelNumber = levelNumber;
+        this.numRows = numRows;
+        this.spotsPerRow = spotsPerRow;
+        this.spotTypes = new byte[numRows * spotsPerRow];
+        this.occupants = new Vehicle[numRows * spotsPerRow];
+        this.freeSpots = new EnumMap<>(SpotType.class);
+        for (SpotType type : SPOT_TYPES) {
+            freeSpots.put(type, new FreeSpotIndex(numRows * spotsPerRow));
+        }
+        this.freeLargeRuns = new FreeRunIndex(numRows, spotsPerRow);
+        this.rowFreeCounts = new AtomicLongArray(numRows);
+        this.rowCapacityCounts = new long[numRows];
+        this.strategy = strategy;
+        
+        initializeSpots();
+    }
+    
+    private void initializeSpots() {
+        int motorcycleEnd = spotsPerRow / 4;
+        int compactEnd = motorcycleEnd + (spotsPerRow / 4) * 2;
+        
+        for (int row = 0; row < numRows; row++) {
+            for (int spot = 0; spot < spotsPerRow; spot++) {
+                SpotType spotType;
+                if (spot < motorcycleEnd) {
+                    spotType = SpotType.MOTORCYCLE;
+                } else if (spot < compactEnd) {
+                    spotType = SpotType.COMPACT;
+                } else {
+                    spotType = SpotType.LARGE;
+                }
+                int id = row * spotsPerRow + spot;
+                spotTypes[id] = (byte) spotType.ordinal();
+                markFree(id);
+                rowCapacityCounts[row] += 1L << (spotType.ordinal() * ROW_COUNT_BITS);
+                capacityCounts += 1L << (spotType.ordinal() * LEVEL_COUNT_BITS);
+            }
+            rowFreeCounts.set(row, rowCapacityCounts[row]);
+        }
+        freeCounts.set(capacityCounts);
+    }
+    
+    public int getLevelNumber() {
+        return levelNumber;
+    }
+    
+    public int getNumRows() {
+        return numRows;
+    }
+    
+    public int getSpotsPerRow() {
+        return spotsPerRow;
+    }
+    
+    public int getAvailableSpots(SpotType spotType) {
+        return unpack(freeCounts.get(), spotType.ordinal(), LEVEL_COUNT_BITS);
+    }
+    
+    public Availability getAvailability() {
+        return availability(freeCounts.get(), capacityCounts, LEVEL_COUNT_BITS);
+    }
+    
+    public Availability getAvailability(int row) {
+        return availability(rowFreeCounts.get(row), rowCapacityCounts[row], ROW_COUNT_BITS);
+    }
+    
+    public Spot getSpot(int row, int spot) {
+        return new Spot(this, row * spotsPerRow + spot);
+    }
+    
+    public SpotType getSpotType(int id) {
+        return SPOT_TYPES[spotTypes[id]];
+    }
+    
+    public Vehicle getVehicle(int id) {
+        return (Vehicle) OCCUPANTS.getVolatile(occupants, id);
+    }
+    
+    public boolean occupy(int id, Vehicle vehicle) {
+        return OCCUPANTS.compareAndSet(occupants, id, null, vehicle);
+    }
+    
+    public Vehicle release(int id) {
+        return (Vehicle) OCCUPANTS.getAndSet(occupants, id, null);
+    }
+    
+    /**
+     * Frees the spot only if it still holds the given vehicle.
+     */
+    public boolean release(int id, Vehicle vehicle) {
+        return OCCUPANTS.compareAndSet(occupants, id, vehicle, null);
+    }
+    
+    /**
+     * Finds and occupies spots for the vehicle on this level as one step under the
+     * level lock. Returns the packed SpotLocation of the run, or NONE when the level
+     * has no room for it.
+     */
+    public long parkVehicle(Vehicle vehicle) {
+        lock.lock();
+        try {
+            return claimSpots(vehicle);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Places every vehicle whose placement is still NONE, holding the level lock once
+     * for the whole batch. Returns how many vehicles were placed on this level.
+     */
+    public int parkVehicles(Vehicle[] vehicles, long[] placements) {
+        int placed = 0;
+        lock.lock();
+        try {
+            drainPendingFrees();
+            for (int i = 0; i < vehicles.length; i++) {
+                if (vehicles[i] == null || placements[i] != NONE) {
+                    continue;
+                }
+                long location = claimSpots(vehicles[i]);
+                if (location != NONE) {
+                    placements[i] = location;
+                    placed++;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        return placed;
+    }
+    
+    /**
+     * Same as parkVehicle, but returns CONTENDED instead of waiting when another gate
+     * is already allocating on this level.
+     */
+    public long tryParkVehicle(Vehicle vehicle) {
+        if (!lock.tryLock()) {
+            return CONTENDED;
+        }
+        try {
+            return claimSpots(vehicle);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Releases the vehicle's run without waiting for the level lock. The spots are
+     * free as soon as this returns; the indexes pick them up on the next allocation.
+     */
+    public void unparkVehicle(long location) {
+        releaseRun(location);
+        tryDrainPendingFrees();
+    }
+    
+    /**
+     * Releases locations[from] to locations[to - 1], all on this level, and folds
+     * them into the indexes at most once.
+     */
+    public void unparkVehicles(long[] locations, int from, int to) {
+        for (int i = from; i < to; i++) {
+            releaseRun(locations[i]);
+        }
+        tryDrainPendingFrees();
+    }
+    
+    // A run never crosses a row, so its free counts change in one step per spot type
+    private void releaseRun(long location) {
+        int start = SpotLocation.start(location);
+        int end = start + SpotLocation.length(location);
+        int runStart = start;
+        for (int id = start; id < end; id++) {
+            release(id);
+            if (!sameCounter(runStart, id)) {
+                adjustFreeCounts(runStart, id - runStart);
+                runStart = id;
+            }
+        }
+        adjustFreeCounts(runStart, end - runStart);
+        // Pushed only once released, so a drain never indexes a spot that is still held
+        synchronized (pendingLock) {
+            if (pendingCount + end - start > pendingFrees.length) {
+                pendingFrees = Arrays.copyOf(pendingFrees, Math.max(pendingFrees.length * 2, pendingCount + end - start));
+            }
+            for (int id = start; id < end; id++) {
+                pendingFrees[pendingCount++] = id;
+            }
+        }
+    }
+    
+    private void tryDrainPendingFrees() {
+        if (lock.tryLock()) {
+            try {
+                drainPendingFrees();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+    
+    private long claimSpots(Vehicle vehicle) {
+        drainPendingFrees();
+        int needed = vehicle.getSpotsNeeded();
+        while (true) {
+            int start = strategy.findSpots(this, vehicle);
+            if (start == -1) {
+                return NONE;
+            }
+            int conflict = reserve(start, needed, vehicle);
+            if (conflict == -1) {
+                commit(start, needed);
+                return SpotLocation.pack(levelNumber, start, vehicle.getType().getId(), needed);
+            }
+            // Someone took the spot through the Spot API directly; drop it from the index and retry
+            markOccupied(conflict);
+        }
+    }
+    
+    /**
+     * Puts a vehicle back on exactly the spots it held before a restart.
+     */
+    public void restoreVehicle(Vehicle vehicle, int start, int length) {
+        lock.lock();
+        try {
+            drainPendingFrees();
+            int conflict = reserve(start, length, vehicle);
+            if (conflict != -1) {
+                throw new IllegalStateException("Cannot restore " + vehicle.getLicensePlate()
+                        + ": spot " + conflict + " on level " + levelNumber + " is taken");
+            }
+            commit(start, length);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Views of the spots a packed location covers on this level.
+     */
+    public List<Spot> getSpots(long location) {
+        int start = SpotLocation.start(location);
+        int length = SpotLocation.length(location);
+        List<Spot> spots = new ArrayList<>(length);
+        for (int id = start; id < start + length; id++) {
+            spots.add(new Spot(this, id));
+        }
+        return spots;
+    }
+    
+    // Caller holds the lock and has reserved the spots
+    private void commit(int start, int needed) {
+        for (int id = start; id < start + needed; id++) {
+            markOccupied(id);
+        }
+        adjustFreeCounts(start, -needed);
+    }
+    
+    // Reserve-then-commit: claim every spot in order and roll back if any is already taken,
+    // so a multi-spot vehicle ends up holding either its whole run or nothing
+    private int reserve(int start, int needed, Vehicle vehicle) {
+        for (int id = start; id < start + needed; id++) {
+            if (!occupy(id, vehicle)) {
+                for (int claimed = id - 1; claimed >= start; claimed--) {
+                    release(claimed, vehicle);
+                }
+                return id;
+            }
+        }
+        return -1;
+    }
+    
+    // Caller holds the level lock
+    private void drainPendingFrees() {
+        synchronized (pendingLock) {
+            while (pendingCount > 0) {
+                markFree(pendingFrees[--pendingCount]);
+            }
+        }
+    }
+    
+    // Free spots of one type, for the allocation strategy; only valid under the lock
+    FreeSpotIndex freeSpots(SpotType spotType) {
+        return freeSpots.get(spotType);
+    }
+    
+    // Free LARGE runs per row, for the allocation strategy; only valid under the lock
+    FreeRunIndex freeLargeRuns() {
+        return freeLargeRuns;
+    }
+    
+    private boolean sameCounter(int id, int other) {
+        return id / spotsPerRow == other / spotsPerRow && spotTypes[id] == spotTypes[other];
+    }
+    
+    // Adds delta to the free count of the spot's type in its row and in the level
+    private void adjustFreeCounts(int id, int delta) {
+        int type = spotTypes[id];
+        rowFreeCounts.getAndAdd(id / spotsPerRow, (long) delta << (type * ROW_COUNT_BITS));
+        freeCounts.getAndAdd((long) delta << (type * LEVEL_COUNT_BITS));
+    }
+    
+    private static int unpack(long counts, int type, int bits) {
+        return (int) (counts >>> (type * bits)) & ((1 << bits) - 1);
+    }
+    
+    private static Availability availability(long free, long capacity, int bits) {
+        int[] freeByType = new int[SPOT_TYPES.length];
+        int[] capacityByType = new int[SPOT_TYPES.length];
+        for (int type = 0; type < SPOT_TYPES.length; type++) {
+            freeByType[type] = unpack(free, type, bits);
+            capacityByType[type] = unpack(capacity, type, bits);
+        }
+        return new Availability(freeByType, capacityByType);
+    }
+    
+    private void markFree(int id) {
+        SpotType spotType = getSpotType(id);
+        freeSpots.get(spotType).set(id);
+        if (spotType == SpotType.LARGE) {
+            freeLargeRuns.set(id / spotsPerRow, id % spotsPerRow, true);
+        }
+    }
+    
+    private void markOccupied(int id) {
+        SpotType spotType = getSpotType(id);
+        freeSpots.get(spotType).clear(id);
+        if (spotType == SpotType.LARGE) {
+            freeLargeRuns.set(id / spotsPerRow, id % spotsPerRow, false);
+        }
+    }
+}
\ No newline at end of file
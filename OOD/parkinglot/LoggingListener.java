@@ -0,0 +1,55 @@
+import java.io.PrintStream;
+import java.util.*;
+
+/**
+ * Writes one line per event in the format ParkingLot used to print itself.
+ */
+public class LoggingListener implements ParkingLotListener {
+    private final PrintStream out;
+    
+    public LoggingListener(PrintStream out) {
+        this.out = out;
+    }
+    
+    @Override
+    public void onParked(String licensePlate, List<Spot> spots) {
+        out.println("Parked " + licensePlate + " at " + formatSpotLocation(spots));
+    }
+    
+    @Override
+    public void onUnparked(String licensePlate, List<Spot> spots) {
+        out.println("Unparked " + licensePlate + " from " + formatSpotLocation(spots));
+    }
+    
+    @Override
+    public void onRejected(String licensePlate, ParkingStatus reason) {
+        switch (reason) {
+            case ALREADY_PARKED:
+                out.println("Vehicle " + licensePlate + " is already parked");
+                break;
+            case NOT_PARKED:
+                out.println("Vehicle " + licensePlate + " is not parked");
+                break;
+            case INVALID_VEHICLE:
+                out.println("Invalid vehicle type for " + licensePlate);
+                break;
+            case NO_SPACE:
+                out.println("No available spots for " + licensePlate);
+                break;
+            default:
+                out.println("Rejected " + licensePlate + ": " + reason);
+        }
+    }
+    
+    private static String formatSpotLocation(List<Spot> spots) {
+        if (spots.size() == 1) {
+            Spot spot = spots.get(0);
+            return "level " + spot.getLevel() + ", row " + spot.getRow() + ", spot " + spot.getSpotNumber();
+        } else {
+            Spot first = spots.get(0);
+            Spot last = spots.get(spots.size() - 1);
+            return "level " + first.getLevel() + ", row " + first.getRow() + ", spots " + 
+                   first.getSpotNumber() + "-" + last.getSpotNumber();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,66 @@
+/**
+ * Parks every vehicle as close to the exit as possible. The exit is on level 0, so
+ * lower levels are always tried first whatever the gate, and on each level the
+ * ramp meets the rows at exitRow: the nearest row wins, then the lowest spot in it.
+ */
+public class NearestExitStrategy implements AllocationStrategy {
+    private static final SpotType[] SPOT_TYPES = SpotType.values();
+    
+    private final int exitRow;
+    
+    public NearestExitStrategy() {
+        this(0);
+    }
+    
+    public NearestExitStrategy(int exitRow) {
+        if (exitRow < 0) {
+            throw new IllegalArgumentException("Exit row must not be negative");
+        }
+        this.exitRow = exitRow;
+    }
+    
+    @Override
+    public int[] levelOrder(Level[] levels, Vehicle vehicle, int preferredLevel) {
+        return AllocationStrategy.super.levelOrder(levels, vehicle, 0);
+    }
+    
+    @Override
+    public int findSpots(Level level, Vehicle vehicle) {
+        int width = level.getSpotsPerRow();
+        int exit = Math.min(exitRow, level.getNumRows() - 1);
+        if (vehicle.getSpotsNeeded() > 1) {
+            FreeRunIndex runs = level.freeLargeRuns();
+            int after = runs.firstRow(vehicle.getSpotsNeeded(), exit);
+            int before = runs.lastRow(vehicle.getSpotsNeeded(), exit - 1);
+            int row = before != -1 && (after == -1 || exit - before < after - exit) ? before : after;
+            return row == -1 ? -1 : row * width + runs.findRunInRow(row, vehicle.getSpotsNeeded());
+        }
+        int best = -1;
+        for (SpotType type : SPOT_TYPES) {
+            if (!vehicle.canFitInSpotType(type)) {
+                continue;
+            }
+            FreeSpotIndex free = level.freeSpots(type);
+            // Nearest at or past the exit row, and nearest before it (lowest spot in that row)
+            int after = free.nextSetBit(exit * width);
+            int before = free.previousSetBit(exit * width - 1);
+            if (before != -1) {
+                before = free.nextSetBit(before / width * width);
+            }
+            best = nearer(best, nearer(after, before, exit, width), exit, width);
+        }
+        return best;
+    }
+    
+    private static int nearer(int id, int other, int exit, int width) {
+        if (id == -1 || other == -1) {
+            return id == -1 ? other : id;
+        }
+        return distance(other, exit, width) < distance(id, exit, width) ? other : id;
+    }
+    
+    // Rows away from the exit dominate; the spot's position along its row breaks ties
+    private static long distance(int id, int exit, int width) {
+        return (long) Math.abs(id / width - exit) * width + id % width;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,37 @@
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Incremental sweep over one lot for vehicles parked longer than a fixed limit.
+ * Each poll reads only the entry times between the previous cutoff and the new
+ * one, so polling every few seconds costs the vehicles that crossed the limit
+ * meanwhile rather than a scan of the lot. The first poll reports everything
+ * already over the limit. A vehicle whose park was still in flight when the
+ * cutoff passed its entry time is not reported.
+ */
+public class OverstayCursor {
+    private final ParkingLot lot;
+    private final long limitMillis;
+    private long cutoff = Long.MIN_VALUE;
+    
+    OverstayCursor(ParkingLot lot, Duration limit) {
+        if (limit.isNegative()) {
+            throw new IllegalArgumentException("Overstay limit must not be negative");
+        }
+        this.lot = lot;
+        this.limitMillis = limit.toMillis();
+    }
+    
+    /**
+     * Returns the still-parked vehicles that went over the limit since the last
+     * poll, oldest first.
+     */
+    public synchronized List<ParkingSession> poll() {
+        long now = lot.currentMillis();
+        // Never move backwards, even if the clock does
+        long next = Math.max(cutoff, now - limitMillis);
+        List<ParkingSession> crossed = lot.sessionsEntered(cutoff, next, now);
+        cutoff = next;
+        return crossed;
+    }
+}
\ No newline at end of file
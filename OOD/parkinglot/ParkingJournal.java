@@ -0,0 +1,640 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of park and unpark events with periodic binary snapshots, so a
+ * ParkingLot can be rebuilt after a restart from the latest snapshot plus the log
+ * written since.
+ *
+ * The directory holds segments named journal-N.log and snapshots named
+ * snapshot-N.bin. A snapshot with number N captures the state at the start of
+ * segment N, so recovery loads it and replays segments N and later. Each record is
+ * framed as [int length][body][int crc32]; a torn or corrupt record ends replay.
+ *
+ * Once a write, force or snapshot fails, every later append and awaitDurable
+ * throws that failure, so nothing is acknowledged past a log the journal can no
+ * longer vouch for; recover into a new lot from a new journal to go on.
+ */
+public class ParkingJournal implements AutoCloseable {
+    private static final byte PARK = 1;
+    private static final byte UNPARK = 2;
+    private static final int SNAPSHOT_MAGIC = 0x504c5332;
+    // Far above any real plate, and keeps the largest record well inside the write buffer
+    static final int MAX_PLATE_BYTES = 1 << 10;
+    private static final long ASYNC_FLUSH_MILLIS = 10;
+    
+    private final Path directory;
+    private final Durability durability;
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final ReentrantLock forceLock = new ReentrantLock();
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(1 << 16);
+    private final CRC32 crc = new CRC32();
+    // Level occupancy as of the last appended record, which is what a snapshot writes: per level,
+    // the plate whose run starts at each spot id, and its packed location and entry time at
+    // [2 * id] and [2 * id + 1]. Sized from the lot on recovery.
+    private String[][] occupants;
+    private long[][] placements;
+    private final ScheduledExecutorService background;
+    private FileChannel channel;
+    private long segment;
+    private volatile long appendedSeq;
+    private volatile long durableSeq;
+    private boolean recovered;
+    private volatile IOException failure;
+    
+    public ParkingJournal(Path directory, Durability durability) throws IOException {
+        this(directory, durability, 0);
+    }
+    
+    /**
+     * @param snapshotIntervalMillis how often to write a snapshot and drop older
+     *        segments, or 0 to snapshot only when snapshot() is called
+     */
+    public ParkingJournal(Path directory, Durability durability, long snapshotIntervalMillis) throws IOException {
+        this.directory = directory;
+        this.durability = durability;
+        Files.createDirectories(directory);
+        if (durability == Durability.ASYNC || snapshotIntervalMillis > 0) {
+            background = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "parking-journal");
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            background = null;
+        }
+        if (durability == Durability.ASYNC) {
+            background.scheduleWithFixedDelay(this::flushQuietly, ASYNC_FLUSH_MILLIS, ASYNC_FLUSH_MILLIS,
+                    TimeUnit.MILLISECONDS);
+        }
+        if (snapshotIntervalMillis > 0) {
+            background.scheduleWithFixedDelay(this::snapshotQuietly, snapshotIntervalMillis, snapshotIntervalMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+    
+    /**
+     * Rebuilds the lot from the latest snapshot and the log after it, then attaches
+     * this journal so every later park and unpark is recorded. The lot must be empty
+     * and have the same dimensions as the one that wrote the journal.
+     */
+    public void recover(ParkingLot lot) throws IOException {
+        appendLock.lock();
+        try {
+            if (recovered) {
+                throw new IllegalStateException("Journal is already attached to a lot");
+            }
+            occupants = new String[lot.levelCount()][lot.spotsPerLevel()];
+            placements = new long[lot.levelCount()][2 * lot.spotsPerLevel()];
+            long snapshotSegment = latest("snapshot-", ".bin");
+            if (snapshotSegment >= 0) {
+                readSnapshot(snapshotPath(snapshotSegment));
+            }
+            long lastSegment = snapshotSegment;
+            for (long n : segments("journal-", ".log")) {
+                if (n >= snapshotSegment) {
+                    replay(segmentPath(n));
+                    lastSegment = Math.max(lastSegment, n);
+                }
+            }
+            for (int level = 0; level < occupants.length; level++) {
+                for (int id = 0; id < occupants[level].length; id++) {
+                    if (occupants[level][id] != null) {
+                        lot.restoreVehicle(occupants[level][id], placements[level][2 * id],
+                                placements[level][2 * id + 1]);
+                    }
+                }
+            }
+            // Never append after a possibly torn tail; start a fresh segment instead
+            segment = lastSegment + 1;
+            channel = openSegment(segment);
+            recovered = true;
+        } finally {
+            appendLock.unlock();
+        }
+        lot.setJournal(this);
+    }
+    
+    public Durability getDurability() {
+        return durability;
+    }
+    
+    /**
+     * Appends a park record for the vehicle's packed SpotLocation and entry time and
+     * returns its sequence number for awaitDurable.
+     */
+    public long appendPark(String licensePlate, long location, long entryMillis) {
+        appendLock.lock();
+        try {
+            long seq = append(PARK, licensePlate, location, entryMillis);
+            place(licensePlate, location, entryMillis);
+            return seq;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+    
+    /**
+     * Appends an unpark record for the vehicle leaving the given packed
+     * SpotLocation and returns its sequence number for awaitDurable.
+     */
+    public long appendUnpark(String licensePlate, long location) {
+        appendLock.lock();
+        try {
+            long seq = append(UNPARK, licensePlate, location, 0);
+            clear(location);
+            return seq;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+    
+    /**
+     * Appends a park record for every vehicle of a batch with a location, that is a
+     * positive locations[i], and returns the sequence number of the last, or 0 when
+     * none has one. Every plate is checked before anything is written, and should a
+     * record still fail, the ones written before it are taken back with unpark
+     * records, so the log never keeps part of a batch the lot rolled back.
+     */
+    public long appendParks(String[] licensePlates, long[] locations, long entryMillis) {
+        appendLock.lock();
+        try {
+            for (int i = 0; i < licensePlates.length; i++) {
+                if (locations[i] > 0) {
+                    checkPlate(licensePlates[i]);
+                }
+            }
+            long seq = 0;
+            int i = 0;
+            try {
+                for (; i < licensePlates.length; i++) {
+                    if (locations[i] > 0) {
+                        seq = appendPark(licensePlates[i], locations[i], entryMillis);
+                    }
+                }
+                return seq;
+            } catch (RuntimeException e) {
+                for (int j = 0; j < i; j++) {
+                    if (locations[j] > 0 && !takeBack(e, UNPARK, licensePlates[j], locations[j], 0)) {
+                        break;
+                    }
+                }
+                throw e;
+            }
+        } finally {
+            appendLock.unlock();
+        }
+    }
+    
+    /**
+     * Appends an unpark record for every vehicle of a batch with a positive
+     * locations[i] and returns the sequence number of the last, or 0 when none has
+     * one. As with appendParks, a failed record takes back the ones before it.
+     */
+    public long appendUnparks(String[] licensePlates, long[] locations) {
+        appendLock.lock();
+        try {
+            for (int i = 0; i < licensePlates.length; i++) {
+                if (locations[i] > 0) {
+                    checkPlate(licensePlates[i]);
+                }
+            }
+            long seq = 0;
+            int i = 0;
+            try {
+                for (; i < licensePlates.length; i++) {
+                    if (locations[i] > 0) {
+                        seq = appendUnpark(licensePlates[i], locations[i]);
+                    }
+                }
+                return seq;
+            } catch (RuntimeException e) {
+                for (int j = 0; j < i; j++) {
+                    // clear() leaves the entry time in placements, so the park can be written again as it was
+                    long location = locations[j];
+                    if (location > 0 && !takeBack(e, PARK, licensePlates[j], location,
+                            placements[SpotLocation.level(location)][2 * SpotLocation.start(location) + 1])) {
+                        break;
+                    }
+                }
+                throw e;
+            }
+        } finally {
+            appendLock.unlock();
+        }
+    }
+    
+    /**
+     * Blocks until the record with the given sequence number is on disk, as far as
+     * the durability mode asks for; returns at once in ASYNC mode.
+     */
+    public void awaitDurable(long seq) {
+        checkFailure();
+        if (durability == Durability.ASYNC || durableSeq >= seq) {
+            return;
+        }
+        try {
+            forceUpTo(seq);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    /**
+     * Starts a new segment, writes the state as of that point as a snapshot and
+     * deletes the segments and snapshots it makes obsolete.
+     */
+    public void snapshot() throws IOException {
+        String[][] occupantsCopy;
+        long[][] placementsCopy;
+        long snapshotSegment;
+        forceLock.lock();
+        try {
+            appendLock.lock();
+            try {
+                if (channel == null) {
+                    throw new IllegalStateException("Journal is not recovered or already closed");
+                }
+                if (failure != null) {
+                    throw failure;
+                }
+                try {
+                    flushBuffer();
+                    channel.force(false);
+                    durableSeq = appendedSeq;
+                    channel.close();
+                    segment++;
+                    channel = openSegment(segment);
+                } catch (IOException e) {
+                    throw fail(e);
+                }
+                snapshotSegment = segment;
+                occupantsCopy = new String[occupants.length][];
+                placementsCopy = new long[placements.length][];
+                for (int level = 0; level < occupants.length; level++) {
+                    occupantsCopy[level] = occupants[level].clone();
+                    placementsCopy[level] = placements[level].clone();
+                }
+            } finally {
+                appendLock.unlock();
+            }
+        } finally {
+            forceLock.unlock();
+        }
+        writeSnapshot(snapshotSegment, occupantsCopy, placementsCopy);
+        for (long n : segments("journal-", ".log")) {
+            if (n < snapshotSegment) {
+                Files.deleteIfExists(segmentPath(n));
+            }
+        }
+        for (long n : segments("snapshot-", ".bin")) {
+            if (n < snapshotSegment) {
+                Files.deleteIfExists(snapshotPath(n));
+            }
+        }
+    }
+    
+    @Override
+    public void close() throws IOException {
+        if (background != null) {
+            background.shutdown();
+            try {
+                background.awaitTermination(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        forceLock.lock();
+        try {
+            appendLock.lock();
+            try {
+                if (channel != null) {
+                    flushBuffer();
+                    channel.force(false);
+                    durableSeq = appendedSeq;
+                    channel.close();
+                    channel = null;
+                }
+            } finally {
+                appendLock.unlock();
+            }
+        } finally {
+            forceLock.unlock();
+        }
+    }
+    
+    // Caller holds appendLock
+    private long append(byte type, String licensePlate, long location, long entryMillis) {
+        if (channel == null) {
+            throw new IllegalStateException("Journal is not recovered or already closed");
+        }
+        checkFailure();
+        checkPlate(licensePlate);
+        byte[] plate = licensePlate.getBytes(StandardCharsets.UTF_8);
+        int bodyLength = 1 + 2 + plate.length + (type == PARK ? 16 : 8);
+        try {
+            if (writeBuffer.remaining() < bodyLength + 8) {
+                flushBuffer();
+            }
+            int bodyStart = writeBuffer.position() + 4;
+            writeBuffer.putInt(bodyLength);
+            writeBuffer.put(type);
+            writeBuffer.putShort((short) plate.length);
+            writeBuffer.put(plate);
+            writeBuffer.putLong(location);
+            if (type == PARK) {
+                writeBuffer.putLong(entryMillis);
+            }
+            crc.reset();
+            crc.update(writeBuffer.duplicate().position(bodyStart).limit(bodyStart + bodyLength));
+            writeBuffer.putInt((int) crc.getValue());
+            appendedSeq++;
+            if (durability == Durability.SYNC) {
+                flushBuffer();
+                channel.force(false);
+                durableSeq = appendedSeq;
+            }
+            return appendedSeq;
+        } catch (IOException e) {
+            throw new UncheckedIOException(fail(e));
+        }
+    }
+    
+    // Group commit: whoever gets the force lock forces every record written so far,
+    // so threads queued behind it usually find their record already durable
+    private void forceUpTo(long seq) throws IOException {
+        forceLock.lock();
+        try {
+            if (failure != null) {
+                throw failure;
+            }
+            if (durableSeq >= seq) {
+                return;
+            }
+            long upTo;
+            appendLock.lock();
+            try {
+                flushBuffer();
+                upTo = appendedSeq;
+            } catch (IOException e) {
+                throw fail(e);
+            } finally {
+                appendLock.unlock();
+            }
+            try {
+                channel.force(false);
+            } catch (IOException e) {
+                throw fail(e);
+            }
+            durableSeq = upTo;
+        } finally {
+            forceLock.unlock();
+        }
+    }
+    
+    // Caller holds appendLock
+    private void flushBuffer() throws IOException {
+        writeBuffer.flip();
+        while (writeBuffer.hasRemaining()) {
+            channel.write(writeBuffer);
+        }
+        writeBuffer.clear();
+    }
+    
+    // Background failures have no caller to throw to; fail() keeps them for the next append
+    private void flushQuietly() {
+        try {
+            long seq = appendedSeq;
+            if (channel != null && durableSeq < seq) {
+                forceUpTo(seq);
+            }
+        } catch (IOException e) {
+            fail(e);
+        } catch (RuntimeException e) {
+            fail(new IOException("Background flush failed", e));
+        }
+    }
+    
+    private void snapshotQuietly() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            snapshot();
+        } catch (IOException e) {
+            fail(e);
+        } catch (RuntimeException e) {
+            fail(new IOException("Background snapshot failed", e));
+        }
+    }
+    
+    // Keeps the first failure, which is the one that explains the rest
+    private IOException fail(IOException e) {
+        synchronized (this) {
+            if (failure == null) {
+                failure = e;
+            }
+            return failure;
+        }
+    }
+    
+    // No char takes more than three bytes in UTF-8, so a short plate is never encoded here
+    private static void checkPlate(String licensePlate) {
+        if (licensePlate.length() * 3 > MAX_PLATE_BYTES) {
+            int length = licensePlate.getBytes(StandardCharsets.UTF_8).length;
+            if (length > MAX_PLATE_BYTES) {
+                throw new IllegalArgumentException("Plate of " + length + " bytes is longer than the journal takes");
+            }
+        }
+    }
+    
+    // Writes one compensating record for a failed batch and returns whether it went in;
+    // if not, the log holds part of the batch, so the journal is failed for good
+    private boolean takeBack(RuntimeException cause, byte type, String licensePlate, long location,
+            long entryMillis) {
+        try {
+            if (type == PARK) {
+                appendPark(licensePlate, location, entryMillis);
+            } else {
+                appendUnpark(licensePlate, location);
+            }
+            return true;
+        } catch (RuntimeException e) {
+            cause.addSuppressed(e);
+            fail(new IOException("Could not take back part of a failed batch", e));
+            return false;
+        }
+    }
+    
+    private void checkFailure() {
+        IOException current = failure;
+        if (current != null) {
+            throw new UncheckedIOException("Journal failed earlier and takes no more records", current);
+        }
+    }
+    
+    // Caller holds appendLock, or is recovering
+    private void place(String licensePlate, long location, long entryMillis) {
+        int level = SpotLocation.level(location);
+        int id = SpotLocation.start(location);
+        occupants[level][id] = licensePlate;
+        placements[level][2 * id] = location;
+        placements[level][2 * id + 1] = entryMillis;
+    }
+    
+    private void clear(long location) {
+        occupants[SpotLocation.level(location)][SpotLocation.start(location)] = null;
+    }
+    
+    // A record or snapshot from a lot of other dimensions would index past the arrays
+    private void checkBounds(long location, Path path) throws IOException {
+        int level = SpotLocation.level(location);
+        if (level >= occupants.length || SpotLocation.start(location) >= occupants[level].length) {
+            throw new IOException(path + " was written by a lot with more levels or spots than this one");
+        }
+    }
+    
+    private void replay(Path path) throws IOException {
+        ByteBuffer log = ByteBuffer.wrap(Files.readAllBytes(path));
+        CRC32 check = new CRC32();
+        while (log.remaining() >= 4) {
+            int bodyLength = log.getInt();
+            if (bodyLength < 11 || log.remaining() < bodyLength + 4) {
+                return;
+            }
+            int bodyStart = log.position();
+            check.reset();
+            check.update(log.duplicate().limit(bodyStart + bodyLength));
+            byte type = log.get();
+            byte[] plate = new byte[log.getShort() & 0xffff];
+            log.get(plate);
+            long location = log.getLong();
+            long entryMillis = type == PARK ? log.getLong() : 0;
+            log.position(bodyStart + bodyLength);
+            if (log.getInt() != (int) check.getValue()) {
+                return;
+            }
+            checkBounds(location, path);
+            if (type == PARK) {
+                place(new String(plate, StandardCharsets.UTF_8), location, entryMillis);
+            } else {
+                clear(location);
+            }
+        }
+    }
+    
+    // Level by level, the occupied runs in spot order: [int count] then per run
+    // [long location][long entry time][short length][plate]
+    private void writeSnapshot(long snapshotSegment, String[][] occupantsCopy, long[][] placementsCopy)
+            throws IOException {
+        Path tmp = directory.resolve("snapshot-" + snapshotSegment + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+            buffer.putInt(SNAPSHOT_MAGIC);
+            buffer.putInt(occupantsCopy.length);
+            for (int level = 0; level < occupantsCopy.length; level++) {
+                int count = 0;
+                for (String occupant : occupantsCopy[level]) {
+                    if (occupant != null) {
+                        count++;
+                    }
+                }
+                if (buffer.remaining() < 4) {
+                    writeFully(out, buffer);
+                }
+                buffer.putInt(count);
+                for (int id = 0; id < occupantsCopy[level].length; id++) {
+                    if (occupantsCopy[level][id] == null) {
+                        continue;
+                    }
+                    byte[] plate = occupantsCopy[level][id].getBytes(StandardCharsets.UTF_8);
+                    if (buffer.remaining() < plate.length + 18) {
+                        writeFully(out, buffer);
+                    }
+                    buffer.putLong(placementsCopy[level][2 * id]);
+                    buffer.putLong(placementsCopy[level][2 * id + 1]);
+                    buffer.putShort((short) plate.length);
+                    buffer.put(plate);
+                }
+            }
+            writeFully(out, buffer);
+            out.force(false);
+        }
+        Files.move(tmp, snapshotPath(snapshotSegment), StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    private void readSnapshot(Path path) throws IOException {
+        ByteBuffer snapshot = ByteBuffer.wrap(Files.readAllBytes(path));
+        if (snapshot.getInt() != SNAPSHOT_MAGIC) {
+            throw new IOException("Not a parking lot snapshot: " + path);
+        }
+        int levels = snapshot.getInt();
+        if (levels > occupants.length) {
+            throw new IOException(path + " was written by a lot with more levels than this one");
+        }
+        for (int level = 0; level < levels; level++) {
+            int count = snapshot.getInt();
+            for (int i = 0; i < count; i++) {
+                long location = snapshot.getLong();
+                long entryMillis = snapshot.getLong();
+                byte[] plate = new byte[snapshot.getShort() & 0xffff];
+                snapshot.get(plate);
+                checkBounds(location, path);
+                place(new String(plate, StandardCharsets.UTF_8), location, entryMillis);
+            }
+        }
+    }
+    
+    private static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+    
+    private FileChannel openSegment(long n) throws IOException {
+        return FileChannel.open(segmentPath(n), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+    
+    private Path segmentPath(long n) {
+        return directory.resolve("journal-" + n + ".log");
+    }
+    
+    private Path snapshotPath(long n) {
+        return directory.resolve("snapshot-" + n + ".bin");
+    }
+    
+    private long latest(String prefix, String suffix) throws IOException {
+        List<Long> found = segments(prefix, suffix);
+        return found.isEmpty() ? -1 : found.get(found.size() - 1);
+    }
+    
+    private List<Long> segments(String prefix, String suffix) throws IOException {
+        List<Long> found = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*" + suffix)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    found.add(Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())));
+                } catch (NumberFormatException e) {
+                    // Not one of ours
+                }
+            }
+        }
+        Collections.sort(found);
+        return found;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,115 @@
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+public class ParkingJournalBenchmark {
+    private static final int LEVELS = 20;
+    private static final int ROWS = 50;
+    private static final int SPOTS_PER_ROW = 100;
+    private static final int TAIL_EVENTS = 20_000;
+    private static final int OPERATIONS_PER_GATE = 2_000;
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("=== Parking Journal Benchmark ===");
+        System.out.println("Lot: " + LEVELS + " levels x " + ROWS + " rows x " + SPOTS_PER_ROW + " spots");
+        System.out.println();
+
+        Path directory = Files.createTempDirectory("parking-journal-bench");
+        try {
+            int parked = buildJournal(directory);
+            for (int i = 0; i < 3; i++) {
+                recover(directory);
+            }
+            long start = System.nanoTime();
+            ParkingLot lot = recover(directory);
+            double millis = (System.nanoTime() - start) / 1e6;
+            int recovered = LEVELS * ROWS * SPOTS_PER_ROW - lot.getAvailability().getTotalFree();
+            System.out.printf("Recovered %d occupied spots (snapshot + %d-event tail) in %.1f ms%n",
+                    recovered, TAIL_EVENTS, millis);
+            if (recovered != parked) {
+                throw new AssertionError("Recovered " + recovered + " occupied spots, expected " + parked);
+            }
+        } finally {
+            deleteRecursively(directory);
+        }
+
+        System.out.println();
+        System.out.println("Park + unpark throughput by durability mode, 4 gates");
+        for (Durability durability : Durability.values()) {
+            System.out.printf("%-14s %12.0f ops/sec%n", durability, runGates(durability, 4));
+        }
+    }
+
+    // Fills the lot through the journal, snapshots, then leaves a tail of park/unpark events
+    private static int buildJournal(Path directory) throws IOException {
+        ParkingLot lot = new ParkingLot(LEVELS, ROWS, SPOTS_PER_ROW);
+        try (ParkingJournal journal = new ParkingJournal(directory, Durability.ASYNC)) {
+            journal.recover(lot);
+            List<String> batch = new ArrayList<>();
+            for (int i = 0; i < LEVELS * ROWS * SPOTS_PER_ROW * 9 / 10; i++) {
+                batch.add((i % 4 == 0 ? "Motorcycle_" : "Car_") + i);
+                if (batch.size() == 1000) {
+                    lot.parkVehicles(batch);
+                    batch.clear();
+                }
+            }
+            lot.parkVehicles(batch);
+            journal.snapshot();
+            for (int i = 0; i < TAIL_EVENTS / 2; i++) {
+                lot.unParkVehicle("Car_" + (i * 4 + 1));
+                lot.parkVehicle("Car_tail_" + i);
+            }
+        }
+        return LEVELS * ROWS * SPOTS_PER_ROW - lot.getAvailability().getTotalFree();
+    }
+
+    private static ParkingLot recover(Path directory) throws IOException {
+        ParkingLot lot = new ParkingLot(LEVELS, ROWS, SPOTS_PER_ROW);
+        try (ParkingJournal journal = new ParkingJournal(directory, Durability.ASYNC)) {
+            journal.recover(lot);
+        }
+        return lot;
+    }
+
+    private static double runGates(Durability durability, int gates) throws Exception {
+        Path directory = Files.createTempDirectory("parking-journal-gates");
+        ExecutorService pool = Executors.newFixedThreadPool(gates);
+        try (ParkingJournal journal = new ParkingJournal(directory, durability)) {
+            ParkingLot lot = new ParkingLot(LEVELS, ROWS, SPOTS_PER_ROW);
+            journal.recover(lot);
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> results = new ArrayList<>();
+            for (int g = 0; g < gates; g++) {
+                int gate = g;
+                results.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < OPERATIONS_PER_GATE; i++) {
+                        String plate = "Car_gate" + gate + "_" + i;
+                        lot.parkVehicle(plate, gate);
+                        lot.unParkVehicle(plate);
+                    }
+                    return null;
+                }));
+            }
+            long begin = System.nanoTime();
+            start.countDown();
+            for (Future<?> result : results) {
+                result.get();
+            }
+            return 2.0 * OPERATIONS_PER_GATE * gates / ((System.nanoTime() - begin) / 1e9);
+        } finally {
+            pool.shutdown();
+            deleteRecursively(directory);
+        }
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+}
\ No newline at end of file
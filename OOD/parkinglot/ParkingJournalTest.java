@@ -0,0 +1,235 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.util.*;
+
+public class ParkingJournalTest {
+    private static ParkingLot expected;
+    
+    public static void main(String[] args) throws IOException {
+        System.out.println("=== Parking Journal Test ===");
+        for (Durability durability : Durability.values()) {
+            Path directory = Files.createTempDirectory("parking-journal");
+            try {
+                List<String> plates = runGates(directory, durability);
+                
+                ParkingLot recovered = new ParkingLot(2, 2, 20);
+                String leaving = null;
+                try (ParkingJournal journal = new ParkingJournal(directory, durability)) {
+                    journal.recover(recovered);
+                    check(sameOccupancy(expected, recovered, plates), durability + ": recovered lot differs");
+                    
+                    // The recovered lot keeps journaling into a fresh segment
+                    for (String plate : plates) {
+                        if (!recovered.getParkedSpots(plate).isEmpty()) {
+                            leaving = plate;
+                        }
+                    }
+                    check(leaving != null && recovered.unParkVehicle(leaving), durability + ": nothing recovered");
+                }
+                ParkingLot again = new ParkingLot(2, 2, 20);
+                try (ParkingJournal journal = new ParkingJournal(directory, durability)) {
+                    journal.recover(again);
+                    check(again.getParkedSpots(leaving).isEmpty(), durability + ": unpark after recovery was lost");
+                }
+                System.out.println(durability + ": PASSED");
+            } finally {
+                deleteRecursively(directory);
+            }
+        }
+        
+        Path directory = Files.createTempDirectory("parking-journal");
+        try {
+            List<String> plates = runGates(directory, Durability.SYNC);
+            // A crash halfway through a write leaves a partial record at the tail
+            Path tail = Files.list(directory).filter(p -> p.toString().endsWith(".log")).sorted().reduce((a, b) -> b).get();
+            Files.write(tail, new byte[] {0, 0, 0, 40, 1, 0}, StandardOpenOption.APPEND);
+            ParkingLot recovered = new ParkingLot(2, 2, 20);
+            try (ParkingJournal journal = new ParkingJournal(directory, Durability.SYNC)) {
+                journal.recover(recovered);
+                check(sameOccupancy(expected, recovered, plates), "torn tail: recovered lot differs");
+            }
+            System.out.println("Torn tail: PASSED");
+        } finally {
+            deleteRecursively(directory);
+        }
+        
+        directory = Files.createTempDirectory("parking-journal");
+        try {
+            verifyFailedAppends(directory);
+            System.out.println("Failed append: PASSED");
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+    
+    // A journal that cannot append must leave the lot as it was before the call
+    private static void verifyFailedAppends(Path directory) throws IOException {
+        ParkingLot lot = new ParkingLot(1, 2, 20);
+        List<String> plates = new ArrayList<>(Arrays.asList("Car_1", "Car_2", "Car_3", "Car_4", "Car_5", "Car_6",
+                "Motorcycle_3", "Bus_1"));
+        try (FailingJournal journal = new FailingJournal(directory)) {
+            journal.recover(lot);
+            check(lot.parkVehicle("Car_1") && lot.parkVehicle("Bus_1"), "parks before the failure were refused");
+            String before = lot.getAvailability().toString();
+            
+            journal.failing = true;
+            check(throwsUncheckedIO(() -> lot.parkVehicle("Car_2")), "failed park was not reported");
+            check(lot.getParkedSpots("Car_2").isEmpty(), "failed park left the vehicle parked");
+            check(throwsUncheckedIO(() -> lot.parkVehicles(Arrays.asList("Car_3", "Motorcycle_3"))),
+                    "failed batch park was not reported");
+            check(lot.getParkedSpots("Car_3").isEmpty() && lot.getParkedSpots("Motorcycle_3").isEmpty(),
+                    "failed batch park left vehicles parked");
+            check(throwsUncheckedIO(() -> lot.unParkVehicle("Car_1")), "failed unpark was not reported");
+            check(throwsUncheckedIO(() -> lot.unParkVehicles(Arrays.asList("Car_1", "Bus_1"))),
+                    "failed batch unpark was not reported");
+            check(!lot.getParkedSpots("Car_1").isEmpty() && !lot.getParkedSpots("Bus_1").isEmpty(),
+                    "failed unpark let a vehicle go");
+            check(lot.getAvailability().toString().equals(before), "failed calls changed availability");
+            
+            // Nothing is left reserved, so the same plates go through once the journal works again
+            journal.failing = false;
+            check(lot.parkVehicle("Car_2"), "plate of a failed park stayed reserved");
+            check(lot.parkVehicles(Arrays.asList("Car_3", "Motorcycle_3")).get(1).getStatus() == ParkingStatus.PARKED,
+                    "plates of a failed batch park stayed reserved");
+            check(lot.unParkVehicle("Car_1"), "vehicle of a failed unpark could not leave");
+            
+            String longPlate = "Car_" + "9".repeat(ParkingJournal.MAX_PLATE_BYTES);
+            check(throwsIllegalArgument(() -> lot.parkVehicle(longPlate, VehicleSize.CAR)),
+                    "over-long plate was journaled");
+            check(lot.getParkedSpots(longPlate).isEmpty(), "over-long plate was parked");
+            
+            // A batch that fails partway must leave no record of the plates before the failure
+            check(throwsIllegalArgument(() -> lot.parkVehicles(Arrays.asList("Car_4", longPlate))),
+                    "over-long plate in a batch was journaled");
+            check(lot.getParkedSpots("Car_4").isEmpty(), "failed batch park left the first vehicle parked");
+            journal.failIn = 2;
+            check(throwsUncheckedIO(() -> lot.parkVehicles(Arrays.asList("Car_5", "Car_6"))),
+                    "batch park failing on its second record was not reported");
+            check(lot.getParkedSpots("Car_5").isEmpty(), "batch park failing on its second record parked the first");
+            journal.failIn = 2;
+            check(throwsUncheckedIO(() -> lot.unParkVehicles(Arrays.asList("Car_2", "Bus_1"))),
+                    "batch unpark failing on its second record was not reported");
+            check(!lot.getParkedSpots("Car_2").isEmpty(), "batch unpark failing on its second record let the first go");
+            plates.add(longPlate);
+        }
+        ParkingLot recovered = new ParkingLot(1, 2, 20);
+        try (ParkingJournal journal = new ParkingJournal(directory, Durability.SYNC)) {
+            journal.recover(recovered);
+            check(sameOccupancy(lot, recovered, plates), "failed appends: recovered lot differs");
+        }
+    }
+    
+    private static boolean throwsUncheckedIO(Runnable call) {
+        try {
+            call.run();
+            return false;
+        } catch (UncheckedIOException e) {
+            return true;
+        }
+    }
+    
+    private static boolean throwsIllegalArgument(Runnable call) {
+        try {
+            call.run();
+            return false;
+        } catch (IllegalArgumentException e) {
+            return true;
+        }
+    }
+    
+    // Fails every append while failing is set, as a full or lost disk would, and the
+    // failIn-th append from when failIn is set
+    private static class FailingJournal extends ParkingJournal {
+        volatile boolean failing;
+        volatile int failIn;
+        
+        FailingJournal(Path directory) throws IOException {
+            super(directory, Durability.SYNC);
+        }
+        
+        @Override
+        public long appendPark(String licensePlate, long location, long entryMillis) {
+            failIfAsked();
+            return super.appendPark(licensePlate, location, entryMillis);
+        }
+        
+        @Override
+        public long appendUnpark(String licensePlate, long location) {
+            failIfAsked();
+            return super.appendUnpark(licensePlate, location);
+        }
+        
+        private void failIfAsked() {
+            if (failing || failIn > 0 && --failIn == 0) {
+                throw new UncheckedIOException(new IOException("No space left on device"));
+            }
+        }
+    }
+    
+    // Parks and unparks a mix of vehicles with a snapshot halfway, leaving the journal open
+    // on purpose as if the process died; returns every plate used
+    private static List<String> runGates(Path directory, Durability durability) throws IOException {
+        expected = new ParkingLot(2, 2, 20);
+        ParkingJournal journal = new ParkingJournal(directory, durability);
+        journal.recover(expected);
+        List<String> plates = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            plates.add("Motorcycle_" + i);
+            plates.add("Car_" + i);
+            plates.add("Bus_" + i);
+        }
+        Random random = new Random(7);
+        for (int i = 0; i < 400; i++) {
+            String plate = plates.get(random.nextInt(plates.size()));
+            if (random.nextBoolean()) {
+                expected.parkVehicle(plate, random.nextInt(2));
+            } else {
+                expected.unParkVehicle(plate);
+            }
+            if (i == 200) {
+                journal.snapshot();
+            }
+        }
+        expected.parkVehicles(Arrays.asList("Car_batch_1", "Bus_0", "Motorcycle_batch_1"));
+        expected.unParkVehicles(Arrays.asList("Car_batch_1"));
+        plates.add("Car_batch_1");
+        plates.add("Motorcycle_batch_1");
+        if (durability == Durability.ASYNC) {
+            // ASYNC may lose the newest records on a crash, so only compare after a clean close
+            journal.close();
+        }
+        return plates;
+    }
+    
+    private static boolean sameOccupancy(ParkingLot a, ParkingLot b, List<String> plates) {
+        for (String plate : plates) {
+            List<Spot> left = a.getParkedSpots(plate);
+            List<Spot> right = b.getParkedSpots(plate);
+            if (left.size() != right.size()) {
+                return false;
+            }
+            for (int i = 0; i < left.size(); i++) {
+                if (left.get(i).getLevel() != right.get(i).getLevel() || left.get(i).getId() != right.get(i).getId()) {
+                    return false;
+                }
+            }
+        }
+        return a.getAvailability().toString().equals(b.getAvailability().toString());
+    }
+    
+    private static void deleteRecursively(Path directory) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+    
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+}
\ No newline at end of file
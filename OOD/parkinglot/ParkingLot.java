@@ -1,154 +1,512 @@
+import java.time.Clock;
+import java.time.Duration;
 import java.util.*;
 
 public class ParkingLot {
     private int levels;
     private int numRows;
     private int spotsPerRow;
-    private Spot[][][] spots;
-    private Map<String, Vehicle> parkedVehicles;
-    private Map<String, List<Spot>> vehicleSpots;
+    private Level[] parkingLevels;
+    private AllocationStrategy allocationStrategy;
+    private VehicleTypeRegistry vehicleTypes;
+    // Plate -> packed SpotLocation; RESERVED while a park or unpark of the plate is in flight
+    private PlateTable plates;
+    // Parked plates by entry time, for overstay queries
+    private SessionIndex sessions;
+    private volatile Clock clock = Clock.systemUTC();
+    private volatile ParkingLotListener listener;
+    private volatile ParkingJournal journal;
     
     public ParkingLot(int levels, int numRows, int spotsPerRow) {
+        this(levels, numRows, spotsPerRow, new FirstFitStrategy());
+    }
+    
+    /**
+     * Creates a lot whose levels and spots are chosen by the given strategy instead
+     * of first fit.
+     */
+    public ParkingLot(int levels, int numRows, int spotsPerRow, AllocationStrategy allocationStrategy) {
+        if (levels < 1 || levels > SpotLocation.MAX_LEVELS) {
+            throw new IllegalArgumentException("A lot needs between 1 and " + SpotLocation.MAX_LEVELS + " levels");
+        }
         this.levels = levels;
         this.numRows = numRows;
         this.spotsPerRow = spotsPerRow;
-        this.spots = new Spot[levels][numRows][spotsPerRow];
-        this.parkedVehicles = new HashMap<>();
-        this.vehicleSpots = new HashMap<>();
-        
-        initializeSpots();
-    }
-    
-    private void initializeSpots() {
-        int motorcycleEnd = spotsPerRow / 4;
-        int compactEnd = motorcycleEnd + (spotsPerRow / 4) * 2;
-        
+        this.parkingLevels = new Level[levels];
+        this.allocationStrategy = allocationStrategy;
+        this.vehicleTypes = VehicleTypeRegistry.withDefaults();
+        // Each level guards its own spots, so gates on different levels never share a lock
         for (int level = 0; level < levels; level++) {
-            for (int row = 0; row < numRows; row++) {
-                for (int spot = 0; spot < spotsPerRow; spot++) {
-                    SpotType spotType;
-                    if (spot < motorcycleEnd) {
-                        spotType = SpotType.MOTORCYCLE;
-                    } else if (spot < compactEnd) {
-                        spotType = SpotType.COMPACT;
-                    } else {
-                        spotType = SpotType.LARGE;
-                    }
-                    spots[level][row][spot] = new Spot(level, row, spot, spotType);
-                }
-            }
+            parkingLevels[level] = new Level(level, numRows, spotsPerRow, allocationStrategy);
         }
+        this.plates = new PlateTable();
+        this.sessions = new SessionIndex(plates);
+    }
+    
+    /**
+     * Registers the listener that receives every park, unpark and rejection, or
+     * removes it when null. With no listener the lot does no event work at all.
+     */
+    public void setListener(ParkingLotListener listener) {
+        this.listener = listener;
+    }
+    
+    /**
+     * Sets the clock that stamps entries and exits; tests pass a fixed or offset
+     * clock. Sessions already open keep the entry time they were given.
+     */
+    public void setClock(Clock clock) {
+        this.clock = Objects.requireNonNull(clock);
+    }
+    
+    /**
+     * The types plates are classified into. Register new vehicle types here before
+     * parking them; a lot recovering a journal must register the same types in the
+     * same order, since the journal records type ids.
+     */
+    public VehicleTypeRegistry getVehicleTypes() {
+        return vehicleTypes;
     }
     
     public boolean parkVehicle(String licensePlate) {
-        if (parkedVehicles.containsKey(licensePlate)) {
-            System.out.println("Vehicle " + licensePlate + " is already parked");
+        return parkVehicle(licensePlate, 0);
+    }
+    
+    /**
+     * Parks the vehicle as the first registered type of the given size, whatever
+     * its plate looks like.
+     */
+    public boolean parkVehicle(String licensePlate, VehicleSize size) {
+        return parkVehicle(licensePlate, vehicleTypes.get(size), 0);
+    }
+    
+    /**
+     * Parks the vehicle as the given type instead of classifying its plate; look a
+     * type up by id with getVehicleTypes().get(id). The type must be one of this
+     * lot's, since its id indexes the lot's per-type counts.
+     */
+    public boolean parkVehicle(String licensePlate, VehicleType type, int preferredLevel) {
+        if (type == null) {
+            fireRejected(licensePlate, ParkingStatus.INVALID_VEHICLE);
             return false;
         }
-        
-        Vehicle vehicle = createVehicle(licensePlate);
-        if (vehicle == null) {
-            System.out.println("Invalid vehicle type for " + licensePlate);
-            return false;
+        if (vehicleTypes.get(type.getId()) != type) {
+            throw new IllegalArgumentException(type.getName() + " is not registered with this lot");
+        }
+        return park(licensePlate, type, preferredLevel) == ParkingStatus.PARKED;
+    }
+    
+    /**
+     * Parks the vehicle on the first level with room, in the order the allocation
+     * strategy gives; by default that starts at preferredLevel and wraps around.
+     * Gates on different levels pass their own level so they do not contend for the
+     * same level lock.
+     */
+    public boolean parkVehicle(String licensePlate, int preferredLevel) {
+        return park(licensePlate, null, preferredLevel) == ParkingStatus.PARKED;
+    }
+    
+    /**
+     * Parks the vehicle as parkVehicle(licensePlate, preferredLevel) does and says
+     * how it went: PARKED, or the NO_SPACE, ALREADY_PARKED or INVALID_VEHICLE it was
+     * rejected with.
+     */
+    public ParkingStatus parkVehicleWithStatus(String licensePlate, int preferredLevel) {
+        return park(licensePlate, null, preferredLevel);
+    }
+    
+    // A null type means classify the plate
+    private ParkingStatus park(String licensePlate, VehicleType type, int preferredLevel) {
+        // Resolve the type before touching the table, so invalid plates cost no garbage
+        if (type == null) {
+            type = vehicleTypes.resolve(licensePlate);
+            if (type == null) {
+                // An explicitly typed park may still hold the plate
+                ParkingStatus reason = plates.get(licensePlate) != PlateTable.ABSENT
+                        ? ParkingStatus.ALREADY_PARKED : ParkingStatus.INVALID_VEHICLE;
+                fireRejected(licensePlate, reason);
+                return reason;
+            }
         }
         
-        List<Spot> availableSpots = findAvailableSpots(vehicle);
-        if (availableSpots.isEmpty()) {
-            System.out.println("No available spots for " + licensePlate);
-            return false;
+        // Claim the plate first so two gates cannot park the same vehicle twice
+        long entryMillis = clock.millis();
+        if (!plates.reserve(licensePlate, entryMillis)) {
+            fireRejected(licensePlate, ParkingStatus.ALREADY_PARKED);
+            return ParkingStatus.ALREADY_PARKED;
         }
+        Vehicle vehicle = new Vehicle(licensePlate, type);
         
-        for (Spot spot : availableSpots) {
-            spot.parkVehicle(vehicle);
+        // First pass never waits: a level busy with another gate is skipped and only
+        // waited on if no uncontended level had room
+        int[] order = allocationStrategy.levelOrder(parkingLevels, vehicle, preferredLevel);
+        long location = Level.NONE;
+        boolean[] contended = null;
+        for (int i = 0; i < levels && location == Level.NONE; i++) {
+            int level = order[i];
+            long claimed = parkingLevels[level].tryParkVehicle(vehicle);
+            if (claimed != Level.CONTENDED) {
+                location = claimed;
+            } else {
+                if (contended == null) {
+                    contended = new boolean[levels];
+                }
+                contended[level] = true;
+            }
+        }
+        for (int i = 0; contended != null && i < levels && location == Level.NONE; i++) {
+            int level = order[i];
+            if (contended[level]) {
+                location = parkingLevels[level].parkVehicle(vehicle);
+            }
+        }
+        if (location == Level.NONE) {
+            plates.release(licensePlate);
+            fireRejected(licensePlate, ParkingStatus.NO_SPACE);
+            return ParkingStatus.NO_SPACE;
         }
         
-        parkedVehicles.put(licensePlate, vehicle);
-        vehicleSpots.put(licensePlate, availableSpots);
+        // Log before the vehicle becomes visible so its unpark is always logged after it
+        ParkingJournal currentJournal = journal;
+        if (currentJournal != null) {
+            try {
+                currentJournal.awaitDurable(currentJournal.appendPark(licensePlate, location, entryMillis));
+            } catch (RuntimeException e) {
+                // Not parked after all: free the spots and the plate before reporting the failure
+                parkingLevels[SpotLocation.level(location)].unparkVehicle(location);
+                plates.release(licensePlate);
+                throw e;
+            }
+        }
+        sessions.add(licensePlate, entryMillis);
+        plates.put(licensePlate, location);
         
-        System.out.println("Parked " + licensePlate + " at " + formatSpotLocation(availableSpots));
-        return true;
+        fireParked(licensePlate, location);
+        return ParkingStatus.PARKED;
     }
     
     public boolean unParkVehicle(String licensePlate) {
-        if (!parkedVehicles.containsKey(licensePlate)) {
-            System.out.println("Vehicle " + licensePlate + " is not parked");
-            return false;
+        return endSession(licensePlate) != null;
+    }
+    
+    /**
+     * Unparks the vehicle and returns its finished session, or null when the
+     * plate is not parked.
+     */
+    public ParkingSession endSession(String licensePlate) {
+        // Taking the location is the linearization point; a racing unpark sees none
+        long location = plates.take(licensePlate);
+        if (location == PlateTable.ABSENT) {
+            fireRejected(licensePlate, ParkingStatus.NOT_PARKED);
+            return null;
         }
+        long exitMillis = clock.millis();
         
-        List<Spot> occupiedSpots = vehicleSpots.get(licensePlate);
-        for (Spot spot : occupiedSpots) {
-            spot.unparkVehicle();
+        // Log before the spots are released so a later park of them is always logged after it
+        ParkingJournal currentJournal = journal;
+        if (currentJournal != null) {
+            try {
+                currentJournal.awaitDurable(currentJournal.appendUnpark(licensePlate, location));
+            } catch (RuntimeException e) {
+                // Still parked: hand the location back before reporting the failure
+                plates.put(licensePlate, location);
+                throw e;
+            }
         }
+        parkingLevels[SpotLocation.level(location)].unparkVehicle(location);
+        long entryMillis = plates.release(licensePlate);
+        sessions.remove(entryMillis);
         
-        parkedVehicles.remove(licensePlate);
-        vehicleSpots.remove(licensePlate);
-        
-        System.out.println("Unparked " + licensePlate + " from " + formatSpotLocation(occupiedSpots));
-        return true;
+        fireUnparked(licensePlate, location);
+        return sessionAt(licensePlate, location, entryMillis, exitMillis, true);
     }
     
-    private Vehicle createVehicle(String licensePlate) {
-        if (licensePlate.startsWith("Motorcycle_")) {
-            return new Motorcycle(licensePlate);
-        } else if (licensePlate.startsWith("Car_")) {
-            return new Car(licensePlate);
-        } else if (licensePlate.startsWith("Bus_")) {
-            return new Bus(licensePlate);
+    /**
+     * The open session of a parked vehicle, with its duration so far, or null when
+     * the plate is not parked.
+     */
+    public ParkingSession getSession(String licensePlate) {
+        long entryMillis = plates.getTime(licensePlate);
+        long location = plates.locationAt(licensePlate, entryMillis);
+        if (location == PlateTable.ABSENT || location == PlateTable.RESERVED) {
+            return null;
         }
-        return null;
+        return sessionAt(licensePlate, location, entryMillis, clock.millis(), false);
     }
     
-    private List<Spot> findAvailableSpots(Vehicle vehicle) {
-        List<Spot> result = new ArrayList<>();
+    /**
+     * Sessions of vehicles parked for longer than the limit, oldest first. Only
+     * the entry-time buckets older than the cutoff are read, so the cost follows
+     * the number of overstays, not the number of parked vehicles.
+     */
+    public List<ParkingSession> getParkedLongerThan(Duration limit) {
+        long now = clock.millis();
+        return sessionsEntered(Long.MIN_VALUE, now - limit.toMillis(), now);
+    }
+    
+    /**
+     * Starts an incremental sweep for vehicles parked longer than the limit; each
+     * poll of the cursor returns only the vehicles that crossed the limit since
+     * the previous poll.
+     */
+    public OverstayCursor overstays(Duration limit) {
+        return new OverstayCursor(this, limit);
+    }
+    
+    // Open sessions that entered in [fromMillis, toMillis), read at nowMillis
+    List<ParkingSession> sessionsEntered(long fromMillis, long toMillis, long nowMillis) {
+        List<ParkingSession> result = new ArrayList<>();
+        sessions.forEach(fromMillis, toMillis, (licensePlate, location, entryMillis) ->
+                result.add(sessionAt(licensePlate, location, entryMillis, nowMillis, false)));
+        // Buckets come in order; only entries within a bucket need sorting
+        result.sort(Comparator.comparing(ParkingSession::getEntryTime));
+        return result;
+    }
+    
+    long currentMillis() {
+        return clock.millis();
+    }
+    
+    private ParkingSession sessionAt(String licensePlate, long location, long entryMillis, long endMillis,
+            boolean ended) {
+        return new ParkingSession(licensePlate, vehicleTypes.get(SpotLocation.typeId(location)),
+                SpotLocation.level(location), entryMillis, endMillis, ended);
+    }
+    
+    public List<ParkingResult> parkVehicles(Collection<String> licensePlates) {
+        return parkVehicles(licensePlates, 0);
+    }
+    
+    /**
+     * Parks a batch of vehicles, taking each level lock once per batch instead of once
+     * per plate. Plates are placed in iteration order with the same strategy as
+     * parkVehicle, and results come back in that order. Levels are visited once, in
+     * the order the strategy gives for the first plate that needs a spot.
+     */
+    public List<ParkingResult> parkVehicles(Collection<String> licensePlates, int preferredLevel) {
+        int size = licensePlates.size();
+        String[] batch = licensePlates.toArray(new String[size]);
+        Vehicle[] vehicles = new Vehicle[size];
+        ParkingStatus[] statuses = new ParkingStatus[size];
+        long[] placements = new long[size];
+        // One clock read stamps the whole batch
+        long entryMillis = clock.millis();
         
-        if (vehicle instanceof Bus) {
-            return findConsecutiveLargeSpots(5);
-        } else {
-            for (int level = 0; level < levels; level++) {
-                for (int row = 0; row < numRows; row++) {
-                    for (int spot = 0; spot < spotsPerRow; spot++) {
-                        Spot currentSpot = spots[level][row][spot];
-                        if (currentSpot.isAvailable() && vehicle.canFitInSpot(currentSpot)) {
-                            result.add(currentSpot);
-                            return result;
+        int pending = 0;
+        for (int i = 0; i < size; i++) {
+            VehicleType type = vehicleTypes.resolve(batch[i]);
+            if (type == null) {
+                statuses[i] = plates.get(batch[i]) != PlateTable.ABSENT
+                        ? ParkingStatus.ALREADY_PARKED : ParkingStatus.INVALID_VEHICLE;
+            } else if (!plates.reserve(batch[i], entryMillis)) {
+                statuses[i] = ParkingStatus.ALREADY_PARKED;
+            } else {
+                vehicles[i] = new Vehicle(batch[i], type);
+                pending++;
+            }
+        }
+        
+        int[] order = null;
+        for (int i = 0; i < size && order == null; i++) {
+            if (vehicles[i] != null) {
+                order = allocationStrategy.levelOrder(parkingLevels, vehicles[i], preferredLevel);
+            }
+        }
+        for (int i = 0; i < levels && pending > 0; i++) {
+            pending -= parkingLevels[order[i]].parkVehicles(vehicles, placements);
+        }
+        
+        ParkingJournal currentJournal = journal;
+        if (currentJournal != null) {
+            try {
+                currentJournal.awaitDurable(currentJournal.appendParks(batch, placements, entryMillis));
+            } catch (RuntimeException e) {
+                // The whole batch fails: free every spot and plate it claimed
+                for (int i = 0; i < size; i++) {
+                    if (vehicles[i] != null) {
+                        if (placements[i] != Level.NONE) {
+                            parkingLevels[SpotLocation.level(placements[i])].unparkVehicle(placements[i]);
                         }
+                        plates.release(batch[i]);
                     }
                 }
+                throw e;
             }
         }
         
-        return result;
+        List<ParkingResult> results = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            if (placements[i] != Level.NONE) {
+                sessions.add(batch[i], entryMillis);
+                plates.put(batch[i], placements[i]);
+                results.add(new ParkingResult(batch[i], ParkingStatus.PARKED, spotsAt(placements[i])));
+                fireParked(batch[i], placements[i]);
+            } else if (vehicles[i] != null) {
+                plates.release(batch[i]);
+                results.add(new ParkingResult(batch[i], ParkingStatus.NO_SPACE, Collections.emptyList()));
+                fireRejected(batch[i], ParkingStatus.NO_SPACE);
+            } else {
+                results.add(new ParkingResult(batch[i], statuses[i], Collections.emptyList()));
+                fireRejected(batch[i], statuses[i]);
+            }
+        }
+        return results;
     }
     
-    private List<Spot> findConsecutiveLargeSpots(int needed) {
-        for (int level = 0; level < levels; level++) {
-            for (int row = 0; row < numRows; row++) {
-                List<Spot> consecutive = new ArrayList<>();
-                for (int spot = 0; spot < spotsPerRow; spot++) {
-                    Spot currentSpot = spots[level][row][spot];
-                    if (currentSpot.isAvailable() && currentSpot.getSpotType() == SpotType.LARGE) {
-                        consecutive.add(currentSpot);
-                        if (consecutive.size() == needed) {
-                            return consecutive;
-                        }
-                    } else {
-                        consecutive.clear();
+    /**
+     * Unparks a batch of vehicles, folding the freed spots into each level's indexes
+     * once per batch. Results come back in iteration order.
+     */
+    public List<ParkingResult> unParkVehicles(Collection<String> licensePlates) {
+        int size = licensePlates.size();
+        String[] batch = licensePlates.toArray(new String[size]);
+        long[] taken = new long[size];
+        int[] perLevel = new int[levels + 1];
+        for (int i = 0; i < size; i++) {
+            taken[i] = plates.take(batch[i]);
+            if (taken[i] != PlateTable.ABSENT) {
+                perLevel[SpotLocation.level(taken[i]) + 1]++;
+            }
+        }
+        ParkingJournal currentJournal = journal;
+        if (currentJournal != null) {
+            try {
+                currentJournal.awaitDurable(currentJournal.appendUnparks(batch, taken));
+            } catch (RuntimeException e) {
+                // The whole batch fails: every vehicle stays where it was
+                for (int i = 0; i < size; i++) {
+                    if (taken[i] != PlateTable.ABSENT) {
+                        plates.put(batch[i], taken[i]);
                     }
                 }
+                throw e;
+            }
+        }
+        
+        // Group the runs by level so each level releases its share in one call
+        for (int level = 0; level < levels; level++) {
+            perLevel[level + 1] += perLevel[level];
+        }
+        long[] byLevel = new long[perLevel[levels]];
+        int[] next = Arrays.copyOf(perLevel, levels);
+        for (long location : taken) {
+            if (location != PlateTable.ABSENT) {
+                byLevel[next[SpotLocation.level(location)]++] = location;
+            }
+        }
+        for (int level = 0; level < levels; level++) {
+            if (perLevel[level] < perLevel[level + 1]) {
+                parkingLevels[level].unparkVehicles(byLevel, perLevel[level], perLevel[level + 1]);
             }
         }
-        return new ArrayList<>();
+        
+        List<ParkingResult> results = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            if (taken[i] != PlateTable.ABSENT) {
+                sessions.remove(plates.release(batch[i]));
+                results.add(new ParkingResult(batch[i], ParkingStatus.UNPARKED, spotsAt(taken[i])));
+                fireUnparked(batch[i], taken[i]);
+            } else {
+                results.add(new ParkingResult(batch[i], ParkingStatus.NOT_PARKED, Collections.emptyList()));
+                fireRejected(batch[i], ParkingStatus.NOT_PARKED);
+            }
+        }
+        return results;
+    }
+    
+    /**
+     * Free spots of one type on one level, read from a maintained counter without
+     * touching the spots or taking any lock.
+     */
+    public int getAvailableSpots(int level, SpotType spotType) {
+        return parkingLevels[level].getAvailableSpots(spotType);
+    }
+    
+    /**
+     * Per-type counts for the whole lot. Each level's counts are one atomic read;
+     * levels are summed one after another.
+     */
+    public Availability getAvailability() {
+        Availability total = parkingLevels[0].getAvailability();
+        for (int level = 1; level < levels; level++) {
+            total = total.plus(parkingLevels[level].getAvailability());
+        }
+        return total;
+    }
+    
+    public Availability getAvailability(int level) {
+        return parkingLevels[level].getAvailability();
+    }
+    
+    public Availability getAvailability(int level, int row) {
+        return parkingLevels[level].getAvailability(row);
+    }
+    
+    public Spot getSpot(int level, int row, int spot) {
+        return parkingLevels[level].getSpot(row, spot);
+    }
+    
+    public List<Spot> getParkedSpots(String licensePlate) {
+        long location = plates.get(licensePlate);
+        if (location == PlateTable.ABSENT || location == PlateTable.RESERVED) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(spotsAt(location));
+    }
+    
+    // Spot views are built on demand; the lot itself only keeps the packed location
+    private List<Spot> spotsAt(long location) {
+        return parkingLevels[SpotLocation.level(location)].getSpots(location);
+    }
+    
+    // Dimensions ParkingJournal sizes its occupancy arrays by
+    int levelCount() {
+        return levels;
+    }
+    
+    int spotsPerLevel() {
+        return numRows * spotsPerRow;
+    }
+    
+    // Called by ParkingJournal once recovery has rebuilt this lot
+    void setJournal(ParkingJournal journal) {
+        this.journal = journal;
+    }
+    
+    // Places a recovered vehicle on the spots the journal recorded, without events or logging
+    void restoreVehicle(String licensePlate, long location, long entryMillis) {
+        VehicleType type = vehicleTypes.get(SpotLocation.typeId(location));
+        if (type == null) {
+            throw new IllegalStateException("Journal holds " + licensePlate + " of unregistered vehicle type "
+                    + SpotLocation.typeId(location));
+        }
+        if (!plates.reserve(licensePlate, entryMillis)) {
+            throw new IllegalStateException("Journal holds " + licensePlate + " twice");
+        }
+        parkingLevels[SpotLocation.level(location)].restoreVehicle(new Vehicle(licensePlate, type),
+                SpotLocation.start(location), SpotLocation.length(location));
+        sessions.add(licensePlate, entryMillis);
+        plates.put(licensePlate, location);
+    }
+    
+    private void fireParked(String licensePlate, long location) {
+        ParkingLotListener current = listener;
+        if (current != null) {
+            current.onParked(licensePlate, spotsAt(location));
+        }
+    }
+    
+    private void fireUnparked(String licensePlate, long location) {
+        ParkingLotListener current = listener;
+        if (current != null) {
+            current.onUnparked(licensePlate, spotsAt(location));
+        }
     }
     
-    private String formatSpotLocation(List<Spot> spots) {
-        if (spots.size() == 1) {
-            Spot spot = spots.get(0);
-            return "level " + spot.getLevel() + ", row " + spot.getRow() + ", spot " + spot.getSpotNumber();
-        } else {
-            Spot first = spots.get(0);
-            Spot last = spots.get(spots.size() - 1);
-            return "level " + first.getLevel() + ", row " + first.getRow() + ", spots " + 
-                   first.getSpotNumber() + "-" + last.getSpotNumber();
+    private void fireRejected(String licensePlate, ParkingStatus reason) {
+        ParkingLotListener current = listener;
+        if (current != null) {
+            current.onRejected(licensePlate, reason);
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,746 @@
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+public class ParkingLotBenchmark {
+    private static final int LEVELS = 10;
+    private static final int ROWS = 20;
+    private static final int SPOTS_PER_ROW = 100;
+    private static final int OPERATIONS = 20_000;
+    private static final double[] FILL_LEVELS = {0.0, 0.5, 0.9, 0.99};
+    private static final int PLATES = 100_000;
+    private static final int SESSIONS = 30_000;
+
+    public static void main(String[] args) {
+        System.out.println("=== Parking Lot Benchmark ===");
+        System.out.println("Lot: " + LEVELS + " levels x " + ROWS + " rows x " + SPOTS_PER_ROW + " spots");
+        System.out.println();
+
+        // Warm up both paths before measuring
+        for (int i = 0; i < 3; i++) {
+            for (double fill : FILL_LEVELS) {
+                runIndexed(fill);
+                runScan(fill);
+            }
+        }
+
+        System.out.printf("%-8s %16s %16s %10s%n", "fill", "lot ns/op", "scan-only ns/op", "speedup");
+        for (double fill : FILL_LEVELS) {
+            double indexed = runIndexed(fill);
+            double scan = runScan(fill);
+            System.out.printf("%-8s %16.1f %16.1f %9.1fx%n",
+                    (int) (fill * 100) + "%", indexed, scan, scan / indexed);
+        }
+
+        System.out.println();
+        System.out.println("Bus admission when every LARGE spot is taken (rejections)");
+        for (int i = 0; i < 3; i++) {
+            runBusRejectedIndexed();
+            runBusRejectedScan();
+        }
+        double indexed = runBusRejectedIndexed();
+        double scan = runBusRejectedScan();
+        System.out.printf("%-8s %16.1f %16.1f %9.1fx%n", "full", indexed, scan, scan / indexed);
+
+        System.out.println();
+        System.out.println("Gate throughput, one preferred level per gate");
+        System.out.printf("%-8s %16s%n", "gates", "ops/sec");
+        for (int gates : new int[] {1, 2, 4, 8}) {
+            runGates(gates);
+            System.out.printf("%-8d %16.0f%n", gates, runGates(gates));
+        }
+
+        System.out.println();
+        System.out.println("Contention: every gate prefers level 0, latency per park or unpark");
+        System.out.printf("%-8s %14s %14s %14s %14s%n", "gates", "lot avg ns", "lot p99 ns", "sync avg ns", "sync p99 ns");
+        for (int gates : new int[] {1, 4, 8}) {
+            runContention(gates, false);
+            runContention(gates, true);
+            long[] lot = runContention(gates, false);
+            long[] sync = runContention(gates, true);
+            System.out.printf("%-8d %14d %14d %14d %14d%n", gates, lot[0], lot[1], sync[0], sync[1]);
+        }
+
+        System.out.println();
+        System.out.println("Listener cost per park + unpark pair at 50% fill");
+        PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+        for (int i = 0; i < 3; i++) {
+            runWithListener(null);
+            runWithListener(new LoggingListener(discard));
+            try (AsyncListener async = new AsyncListener(new LoggingListener(discard))) {
+                runWithListener(async);
+            }
+        }
+        double none = runWithListener(null);
+        double console = runWithListener(new LoggingListener(discard));
+        double async;
+        long dropped;
+        try (AsyncListener listener = new AsyncListener(new LoggingListener(discard))) {
+            async = runWithListener(listener);
+            dropped = listener.getDroppedEvents();
+        }
+        System.out.printf("%-24s %10.1f ns/op%n", "no listener", none);
+        System.out.printf("%-24s %10.1f ns/op%n", "synchronous PrintStream", console);
+        System.out.printf("%-24s %10.1f ns/op (%d events dropped)%n", "async buffered", async, dropped);
+
+        System.out.println();
+        System.out.println("Entrance signs polling availability");
+        for (int i = 0; i < 3; i++) {
+            runSignQueries();
+            runWhilePolled(0);
+            runWhilePolled(4);
+        }
+        System.out.printf("%-28s %10.1f ns/query%n", "getAvailableSpots", runSignQueries());
+        System.out.printf("%-28s %10.1f ns/op%n", "park + unpark, no signs", runWhilePolled(0));
+        System.out.printf("%-28s %10.1f ns/op%n", "park + unpark, 4 signs", runWhilePolled(4));
+
+        System.out.println();
+        System.out.println("Convoy of 1000 plates: one call per plate vs one batch");
+        for (int i = 0; i < 3; i++) {
+            runConvoy(false);
+            runConvoy(true);
+        }
+        double single = runConvoy(false);
+        double batch = runConvoy(true);
+        System.out.printf("%-12s %12.0f events/sec%n", "per plate", single);
+        System.out.printf("%-12s %12.0f events/sec%n", "batched", batch);
+
+        System.out.println();
+        System.out.println("Plate classification, a quarter of the plates invalid");
+        for (int i = 0; i < 3; i++) {
+            runClassification(false);
+            runClassification(true);
+        }
+        double[] chained = runClassification(false);
+        double[] registry = runClassification(true);
+        System.out.printf("%-28s %10.1f ns/plate %8.1f bytes/plate%n", "startsWith chain + subclass", chained[0], chained[1]);
+        System.out.printf("%-28s %10.1f ns/plate %8.1f bytes/plate%n", "registry lookup", registry[0], registry[1]);
+        System.out.printf("%-28s %10.1f bytes/plate%n", "rejected invalid plate", rejectedPlateBytes());
+
+        System.out.println();
+        System.out.println("Plate bookkeeping for " + PLATES + " parked vehicles (10% buses)");
+        String[] plates = new String[PLATES];
+        Vehicle[] vehicles = new Vehicle[PLATES];
+        for (int i = 0; i < PLATES; i++) {
+            plates[i] = (i % 10 == 0 ? "Bus_" : "Car_") + i;
+            vehicles[i] = new Vehicle(plates[i], i % 10 == 0 ? VehicleType.BUS : VehicleType.CAR);
+        }
+        Level level = new Level(0, ROWS, SPOTS_PER_ROW);
+        long mapsBytes = retainedBytes(() -> legacyPlateMaps(plates, vehicles, level));
+        long tableBytes = retainedBytes(() -> plateTable(plates));
+        for (int i = 0; i < 3; i++) {
+            runLegacyPlateMaps(plates, vehicles, level);
+            runPlateTable(plates);
+        }
+        System.out.printf("%-28s %10.1f bytes/vehicle %10.1f ns/park+unpark%n", "two maps + spot lists",
+                mapsBytes / (double) PLATES, runLegacyPlateMaps(plates, vehicles, level));
+        System.out.printf("%-28s %10.1f bytes/vehicle %10.1f ns/park+unpark%n", "plate table",
+                tableBytes / (double) PLATES, runPlateTable(plates));
+
+        System.out.println();
+        System.out.println("Parking sessions, " + SESSIONS + " cars parked over 8 simulated hours");
+        for (int i = 0; i < 3; i++) {
+            runSessions();
+        }
+        double[] sessions = runSessions();
+        System.out.printf("%-28s %10.1f ns/op%n", "index add + remove", sessions[0]);
+        System.out.printf("%-28s %10.1f ns/op%n", "park + unpark", sessions[1]);
+        System.out.printf("%-28s %10.1f us/query (%d sessions)%n", "parked longer than 7h",
+                sessions[2] / 1000, (long) sessions[3]);
+        System.out.printf("%-28s %10.1f us/query%n", "scan of every plate", sessions[4] / 1000);
+        System.out.printf("%-28s %10.1f us/poll (%.1f sessions)%n", "overstay cursor, 1 min",
+                sessions[5] / 1000, sessions[6]);
+
+        System.out.println();
+        int memoryLevels = 25;
+        int memorySpots = memoryLevels * ROWS * SPOTS_PER_ROW;
+        System.out.println("Heap footprint for " + memorySpots + " spots");
+        long legacy = retainedBytes(() -> legacySpots(memoryLevels));
+        long compact = retainedBytes(() -> new Object[] {new byte[memorySpots], new Vehicle[memorySpots]});
+        long wholeLot = retainedBytes(() -> new ParkingLot(memoryLevels, ROWS, SPOTS_PER_ROW));
+        System.out.printf("%-28s %12d bytes %8.1f bytes/spot%n", "Spot[][][] objects", legacy, legacy / (double) memorySpots);
+        System.out.printf("%-28s %12d bytes %8.1f bytes/spot%n", "flat type + occupant arrays", compact, compact / (double) memorySpots);
+        System.out.printf("%-28s %12d bytes %8.1f bytes/spot%n", "ParkingLot incl. indexes", wholeLot, wholeLot / (double) memorySpots);
+    }
+
+    private static double runWithListener(ParkingLotListener listener) {
+        ParkingLot lot = new ParkingLot(LEVELS, ROWS, SPOTS_PER_ROW);
+        for (int i = 0; i < carCapacity() / 2; i++) {
+            lot.parkVehicle("Car_" + i);
+        }
+        lot.setListener(listener);
+        String plate = "Car_probe";
+        long start = System.nanoTime();
+        for (int i = 0; i < OPERATIONS; i++) {
+            lot.parkVehicle(plate);
+            lot.unParkVehicle(plate);
+        }
+        return (System.nanoTime() - start) / (double) OPERATIONS;
+    }
+
+    private static double runSignQueries() {
+        ParkingLot lot = new ParkingLot(LEVELS, ROWS, SPOTS_PER_ROW);
+        long sum = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < OPERATIONS * 10; i++) {
+            sum += lot.getAvailableSpots(i % LEVELS, SpotType.COMPACT);
+        }
+        double elapsed = System.nanoTime() - start;
+        if (sum < 0) {
+            throw new IllegalStateException();
+        }
+        return elapsed / (OPERATIONS * 10);
+    }
+
+    // Park + unpark cost on one gate while the given number of sign threads poll every level
+    private static double runWhilePolled(int signs) {
+        ParkingLot lot = new ParkingLot(LEVELS, ROWS, SPOTS_PER_ROW);
+        AtomicBoolean running = new AtomicBoolean(true);
+        List<Thread> pollers = new ArrayList<>();
+        for (int i = 0; i < signs; i++) {
+            Thread poller = new Thread(() -> {
+                while (running.get()) {
+                    for (int level = 0; level < LEVELS; level++) {
+                        lot.getAvailability(level);
+                    }
+                    Thread.yield();
+                }
+            });
+            poller.start();
+            pollers.add(poller);
+        }
+        String plate = "Car_probe";
+        long start = System.nanoTime();
+        for (int i = 0; i < OPERATIONS; i++) {
+            lot.parkVehicle(plate);
+            lot.unParkVehicle(plate);
+        }
+        double elapsed = System.nanoTime() - start;
+        running.set(false);
+        for (Thread poller : pollers) {
+            try {
+                poller.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return elapsed / OPERATIONS;
+    }
+
+    // Parks then unparks a convoy repeatedly; returns park + unpark events per second
+    private static double runConvoy(boolean batched) {
+        ParkingLot lot = new ParkingLot(LEVELS, ROWS, SPOTS_PER_ROW);
+        List<String> convoy = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            convoy.add((i % 20 == 0 ? "Bus_" : "Car_") + i);
+        }
+        int rounds = 50;
+        long start = System.nanoTime();
+        for (int round = 0; round < rounds; round++) {
+            if (batched) {
+                lot.parkVehicles(convoy);
+                lot.unParkVehicles(convoy);
+            } else {
+                for (String plate : convoy) {
+                    lot.parkVehicle(plate);
+                }
+                for (String plate : convoy) {
+                    lot.unParkVehicle(plate);
+                }
+            }
+        }
+        return 2.0 * rounds * convoy.size() / ((System.nanoTime() - start) / 1e9);
+    }
+
+    // Returns {ns, allocated bytes} per plate classified, the registry way or the original way
+    private static double[] runClassification(boolean registry) {
+        VehicleTypeRegistry types = VehicleTypeRegistry.withDefaults();
+        String[] plates = new String[1024];
+        String[] prefixes = {"Motorcycle_", "Car_", "Bus_", "Truck_"};
+        for (int i = 0; i < plates.length; i++) {
+            plates[i] = prefixes[i % prefixes.length] + i;
+        }
+        int rounds = 1000;
+        int found = 0;
+        long bytes = allocatedBytes();
+        long start = System.nanoTime();
+        for (int round = 0; round < rounds; round++) {
+            for (String plate : plates) {
+                Object type = registry ? types.resolve(plate) : legacyCreateVehicle(plate);
+                if (type != null) {
+                    found++;
+                }
+            }
+        }
+        double elapsed = System.nanoTime() - start;
+        bytes = allocatedBytes() - bytes;
+        if (found != rounds * plates.length * 3 / 4) {
+            throw new IllegalStateException("classified " + found + " plates");
+        }
+        int classified = rounds * plates.length;
+        return new double[] {elapsed / classified, bytes / (double) classified};
+    }
+
+    // The plate -> Vehicle and plate -> List<Spot> maps the lot kept before PlateTable
+    private static Object legacyPlateMaps(String[] plates, Vehicle[] vehicles, Level level) {
+        Map<String, Vehicle> parkedVehicles = new ConcurrentHashMap<>();
+        Map<String, List<Spot>> vehicleSpots = new ConcurrentHashMap<>();
+        for (int i = 0; i < plates.length; i++) {
+            parkedVehicles.put(plates[i], vehicles[i]);
+            vehicleSpots.put(plates[i], legacySpotList(vehicles[i], level));
+        }
+        return new Object[] {parkedVehicles, vehicleSpots};
+    }
+
+    private static List<Spot> legacySpotList(Vehicle vehicle, Level level) {
+        List<Spot> spots = new ArrayList<>(vehicle.getSpotsNeeded());
+        for (int id = 0; id < vehicle.getSpotsNeeded(); id++) {
+            spots.add(new Spot(level, id));
+        }
+        return spots;
+    }
+
+    private static Object plateTable(String[] plates) {
+        PlateTable table = new PlateTable();
+        for (String plate : plates) {
+            table.reserve(plate);
+            table.put(plate, SpotLocation.pack(0, 0, 1, 1));
+        }
+        return table;
+    }
+
+    // Unparks and re-parks every plate of a full lot, touching only the plate bookkeeping
+    private static double runLegacyPlateMaps(String[] plates, Vehicle[] vehicles, Level level) {
+        Map<String, Vehicle> parkedVehicles = new ConcurrentHashMap<>();
+        Map<String, List<Spot>> vehicleSpots = new ConcurrentHashMap<>();
+        for (int i = 0; i < plates.length; i++) {
+            parkedVehicles.put(plates[i], vehicles[i]);
+            vehicleSpots.put(plates[i], legacySpotList(vehicles[i], level));
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < plates.length; i++) {
+            vehicleSpots.remove(plates[i]);
+            parkedVehicles.remove(plates[i]);
+            if (parkedVehicles.containsKey(plates[i]) || parkedVehicles.putIfAbsent(plates[i], vehicles[i]) != null) {
+                throw new IllegalStateException(plates[i] + " still parked");
+            }
+            vehicleSpots.put(plates[i], legacySpotList(vehicles[i], level));
+        }
+        return (System.nanoTime() - start) / (double) plates.length;
+    }
+
+    private static double runPlateTable(String[] plates) {
+        PlateTable table = (PlateTable) plateTable(plates);
+        long start = System.nanoTime();
+        for (String plate : plates) {
+            long location = table.take(plate);
+            table.release(plate);
+            if (!table.reserve(plate)) {
+                throw new IllegalStateException(plate + " still parked");
+            }
+            table.put(plate, location);
+        }
+        return (System.nanoTime() - start) / (double) plates.length;
+    }
+
+    // Returns index add + remove ns, park + unpark ns, longer-than query ns and size, full scan ns,
+    // cursor poll ns and sessions per poll
+    private static double[] runSessions() {
+        SimulatedClock clock = new SimulatedClock();
+        ParkingLot lot = new ParkingLot(25, ROWS, SPOTS_PER_ROW);
+        lot.setClock(clock);
+        String[] plates = new String[SESSIONS];
+        long step = 8 * 3_600_000L / SESSIONS;
+        for (int i = 0; i < SESSIONS; i++) {
+            plates[i] = "Car_" + i;
+            lot.parkVehicle(plates[i]);
+            clock.millis += step;
+        }
+        double[] result = new double[7];
+        
+        SessionIndex index = new SessionIndex(new PlateTable());
+        long start = System.nanoTime();
+        for (int i = 0; i < OPERATIONS; i++) {
+            long entry = clock.millis + i * step;
+            index.add(plates[i], entry);
+            index.remove(entry);
+        }
+        result[0] = (System.nanoTime() - start) / (double) OPERATIONS;
+        
+        // Cars leave and come back while the clock runs, so the index keeps moving
+        start = System.nanoTime();
+        for (int i = 0; i < OPERATIONS; i++) {
+            String plate = "Car_visitor_" + (i & 1023);
+            lot.parkVehicle(plate);
+            lot.unParkVehicle(plate);
+            clock.millis += 10;
+        }
+        result[1] = (System.nanoTime() - start) / (double) OPERATIONS;
+        
+        int queries = 50;
+        start = System.nanoTime();
+        for (int i = 0; i < queries; i++) {
+            result[3] = lot.getParkedLongerThan(Duration.ofHours(7)).size();
+        }
+        result[2] = (System.nanoTime() - start) / (double) queries;
+        
+        // Without the index, finding the same vehicles means reading every session
+        start = System.nanoTime();
+        for (int i = 0; i < queries; i++) {
+            int over = 0;
+            for (String plate : plates) {
+                ParkingSession session = lot.getSession(plate);
+                if (session != null && session.getDuration().compareTo(Duration.ofHours(7)) > 0) {
+                    over++;
+                }
+            }
+            if (over != (int) result[3]) {
+                throw new IllegalStateException("scan found " + over + " overstays, index " + result[3]);
+            }
+        }
+        result[4] = (System.nanoTime() - start) / (double) queries;
+        
+        OverstayCursor cursor = lot.overstays(Duration.ofHours(7));
+        cursor.poll();
+        int polls = 200;
+        long reported = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < polls; i++) {
+            clock.millis += 60_000;
+            reported += cursor.poll().size();
+        }
+        result[5] = (System.nanoTime() - start) / (double) polls;
+        result[6] = reported / (double) polls;
+        return result;
+    }
+
+    // Garbage left by parkVehicle refusing a plate no vehicle type matches
+    private static double rejectedPlateBytes() {
+        ParkingLot lot = new ParkingLot(1, ROWS, SPOTS_PER_ROW);
+        for (int i = 0; i < 3; i++) {
+            lot.parkVehicle("Truck_1");
+        }
+        long bytes = allocatedBytes();
+        for (int i = 0; i < OPERATIONS; i++) {
+            lot.parkVehicle("Truck_1");
+        }
+        return (allocatedBytes() - bytes) / (double) OPERATIONS;
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
+
+    // The original plate classification, kept as the comparison baseline
+    private static Vehicle legacyCreateVehicle(String licensePlate) {
+        if (licensePlate.startsWith("Motorcycle_")) {
+            return new Motorcycle(licensePlate);
+        } else if (licensePlate.startsWith("Car_")) {
+            return new Car(licensePlate);
+        } else if (licensePlate.startsWith("Bus_")) {
+            return new Bus(licensePlate);
+        }
+        return null;
+    }
+
+    // Heap retained per copy, measured with several copies alive at once to drown out GC noise
+    private static long retainedBytes(Supplier<Object> allocation) {
+        Runtime runtime = Runtime.getRuntime();
+        Object[] copies = new Object[8];
+        long before = usedAfterGc(runtime);
+        for (int i = 0; i < copies.length; i++) {
+            copies[i] = allocation.get();
+        }
+        long after = usedAfterGc(runtime);
+        if (copies[copies.length - 1] == null) {
+            throw new IllegalStateException("allocation returned null");
+        }
+        return (after - before) / copies.length;
+    }
+
+    private static long usedAfterGc(Runtime runtime) {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    // Returns {average, p99} ns per operation; the synchronized variant serializes every
+    // gate through one monitor, the way callers had to before the lot was thread-safe
+    private static long[] runContention(int gates, boolean globalLock) {
+        try {
+            ParkingLot lot = new ParkingLot(LEVELS, ROWS, SPOTS_PER_ROW);
+            ExecutorService pool = Executors.newFixedThreadPool(gates);
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<long[]>> results = new ArrayList<>();
+            for (int g = 0; g < gates; g++) {
+                int gate = g;
+                results.add(pool.submit(() -> {
+                    String[] plates = new String[100];
+                    for (int i = 0; i < plates.length; i++) {
+                        plates[i] = (i % 10 == 0 ? "Bus_gate" : "Car_gate") + gate + "_" + i;
+                    }
+                    long[] samples = new long[OPERATIONS];
+                    int n = 0;
+                    start.await();
+                    while (n < OPERATIONS) {
+                        for (int i = 0; i < plates.length && n < OPERATIONS; i++, n++) {
+                            long begin = System.nanoTime();
+                            if (globalLock) {
+                                synchronized (lot) {
+                                    lot.parkVehicle(plates[i]);
+                                }
+                            } else {
+                                lot.parkVehicle(plates[i]);
+                            }
+                            samples[n] = System.nanoTime() - begin;
+                        }
+                        for (int i = 0; i < plates.length && n < OPERATIONS; i++, n++) {
+                            long begin = System.nanoTime();
+                            if (globalLock) {
+                                synchronized (lot) {
+                                    lot.unParkVehicle(plates[i]);
+                                }
+                            } else {
+                                lot.unParkVehicle(plates[i]);
+                            }
+                            samples[n] = System.nanoTime() - begin;
+                        }
+                    }
+                    return samples;
+                }));
+            }
+            start.countDown();
+            long[] all = new long[OPERATIONS * gates];
+            for (int g = 0; g < gates; g++) {
+                System.arraycopy(results.get(g).get(), 0, all, g * OPERATIONS, OPERATIONS);
+            }
+            pool.shutdown();
+            Arrays.sort(all);
+            long total = 0;
+            for (long sample : all) {
+                total += sample;
+            }
+            return new long[] {total / all.length, all[(int) (all.length * 0.99)]};
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Each gate parks and unparks its own plates on its own level; returns total ops/sec
+    private static double runGates(int gates) {
+        try {
+            ParkingLot lot = new ParkingLot(LEVELS, ROWS, SPOTS_PER_ROW);
+            ExecutorService pool = Executors.newFixedThreadPool(gates);
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> results = new ArrayList<>();
+            for (int g = 0; g < gates; g++) {
+                int gate = g;
+                results.add(pool.submit(() -> {
+                    String[] plates = new String[100];
+                    for (int i = 0; i < plates.length; i++) {
+                        plates[i] = "Car_gate" + gate + "_" + i;
+                    }
+                    start.await();
+                    for (int i = 0; i < OPERATIONS; i += plates.length) {
+                        for (String plate : plates) {
+                            lot.parkVehicle(plate, gate % LEVELS);
+                        }
+                        for (String plate : plates) {
+                            lot.unParkVehicle(plate);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            long begin = System.nanoTime();
+            start.countDown();
+            for (Future<?> result : results) {
+                result.get();
+            }
+            long elapsed = System.nanoTime() - begin;
+            pool.shutdown();
+            return 2.0 * OPERATIONS * gates / (elapsed / 1e9);
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static int carCapacity() {
+        int motorcycleEnd = SPOTS_PER_ROW / 4;
+        return LEVELS * ROWS * (SPOTS_PER_ROW - motorcycleEnd);
+    }
+
+    // Average ns for one park + unpark pair once the lot holds fill * capacity cars
+    private static double runIndexed(double fill) {
+        ParkingLot lot = new ParkingLot(LEVELS, ROWS, SPOTS_PER_ROW);
+        int parked = (int) (carCapacity() * fill);
+        for (int i = 0; i < parked; i++) {
+            lot.parkVehicle("Car_" + i);
+        }
+        String plate = "Car_probe";
+        long start = System.nanoTime();
+        for (int i = 0; i < OPERATIONS; i++) {
+            lot.parkVehicle(plate);
+            lot.unParkVehicle(plate);
+        }
+        return (System.nanoTime() - start) / (double) OPERATIONS;
+    }
+
+    private static double runBusRejectedIndexed() {
+        ParkingLot lot = new ParkingLot(LEVELS, ROWS, SPOTS_PER_ROW);
+        for (int i = 0; i < carCapacity(); i++) {
+            lot.parkVehicle("Car_" + i);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < OPERATIONS; i++) {
+            lot.parkVehicle("Bus_probe");
+        }
+        return (System.nanoTime() - start) / (double) OPERATIONS;
+    }
+
+    private static double runBusRejectedScan() {
+        ScanBaseline lot = new ScanBaseline();
+        for (int i = 0; i < carCapacity(); i++) {
+            lot.park(new Car("Car_" + i));
+        }
+        long start = System.nanoTime();
+        int found = 0;
+        for (int i = 0; i < OPERATIONS; i++) {
+            found += lot.findRun(5).size();
+        }
+        if (found != 0) {
+            throw new IllegalStateException("Expected no free LARGE run");
+        }
+        return (System.nanoTime() - start) / (double) OPERATIONS;
+    }
+
+    private static double runScan(double fill) {
+        ScanBaseline lot = new ScanBaseline();
+        int parked = (int) (carCapacity() * fill);
+        for (int i = 0; i < parked; i++) {
+            lot.park(new Car("Car_" + i));
+        }
+        Vehicle probe = new Car("Car_probe");
+        long start = System.nanoTime();
+        for (int i = 0; i < OPERATIONS; i++) {
+            LegacySpot spot = lot.park(probe);
+            spot.vehicle = null;
+        }
+        return (System.nanoTime() - start) / (double) OPERATIONS;
+    }
+
+    // The original spot object: three ints, a type and a vehicle per spot
+    // A clock the benchmark moves by hand
+    private static class SimulatedClock extends Clock {
+        volatile long millis = 1_700_000_000_000L;
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long millis() {
+            return millis;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+    }
+
+    private static class LegacySpot {
+        final int level;
+        final int row;
+        final int spotNumber;
+        final SpotType spotType;
+        Vehicle vehicle;
+
+        LegacySpot(int level, int row, int spotNumber, SpotType spotType) {
+            this.level = level;
+            this.row = row;
+            this.spotNumber = spotNumber;
+            this.spotType = spotType;
+        }
+    }
+
+    private static LegacySpot[][][] legacySpots(int levels) {
+        LegacySpot[][][] spots = new LegacySpot[levels][ROWS][SPOTS_PER_ROW];
+        int motorcycleEnd = SPOTS_PER_ROW / 4;
+        int compactEnd = motorcycleEnd + (SPOTS_PER_ROW / 4) * 2;
+        for (int level = 0; level < levels; level++) {
+            for (int row = 0; row < ROWS; row++) {
+                for (int spot = 0; spot < SPOTS_PER_ROW; spot++) {
+                    SpotType spotType = spot < motorcycleEnd ? SpotType.MOTORCYCLE
+                            : spot < compactEnd ? SpotType.COMPACT : SpotType.LARGE;
+                    spots[level][row][spot] = new LegacySpot(level, row, spot, spotType);
+                }
+            }
+        }
+        return spots;
+    }
+
+    // The original first-fit triple loop over Spot objects, kept here as the comparison baseline
+    private static class ScanBaseline {
+        private final LegacySpot[][][] spots = legacySpots(LEVELS);
+
+        LegacySpot park(Vehicle vehicle) {
+            for (int level = 0; level < LEVELS; level++) {
+                for (int row = 0; row < ROWS; row++) {
+                    for (int spot = 0; spot < SPOTS_PER_ROW; spot++) {
+                        LegacySpot currentSpot = spots[level][row][spot];
+                        if (currentSpot.vehicle == null && vehicle.canFitInSpotType(currentSpot.spotType)) {
+                            currentSpot.vehicle = vehicle;
+                            return currentSpot;
+                        }
+                    }
+                }
+            }
+            return null;
+        }
+
+        List<LegacySpot> findRun(int needed) {
+            for (int level = 0; level < LEVELS; level++) {
+                for (int row = 0; row < ROWS; row++) {
+                    List<LegacySpot> consecutive = new ArrayList<>();
+                    for (int spot = 0; spot < SPOTS_PER_ROW; spot++) {
+                        LegacySpot currentSpot = spots[level][row][spot];
+                        if (currentSpot.vehicle == null && currentSpot.spotType == SpotType.LARGE) {
+                            consecutive.add(currentSpot);
+                            if (consecutive.size() == needed) {
+                                return consecutive;
+                            }
+                        } else {
+                            consecutive.clear();
+                        }
+                    }
+                }
+            }
+            return new ArrayList<>();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,288 @@
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Routes parking across many garages, each one a ParkingLot shard. A global plate
+ * index records which lot holds each plate, so a plate can only be parked once in
+ * the whole cluster and an unpark goes straight to the right lot. A vehicle turned
+ * away by a full lot is offered to the other lots, nearest first; one turned away
+ * for any other reason is not.
+ *
+ * Shards share nothing but the plate index, which is itself segmented, so gates at
+ * different garages do not contend. With executorPerShard every lot also gets its
+ * own thread and the async methods queue work on it, so a lot only ever sees one
+ * caller and its level locks stay uncontended.
+ *
+ * Each lot keeps its own listener and journal; a lot that turns a vehicle away
+ * still reports NO_SPACE to its listener even when a neighbour then takes it.
+ */
+public class ParkingLotCluster implements AutoCloseable {
+    private final ParkingLot[] lots;
+    // overflowOrder[home] lists every lot by distance from home, home first
+    private final int[][] overflowOrder;
+    // Plate -> lot index + 1; RESERVED while a park or unpark of the plate is in flight
+    private final PlateTable plates = new PlateTable();
+    private final ExecutorService[] executors;
+    
+    /**
+     * Lots are listed in route order: lot i overflows to i - 1 and i + 1 first.
+     */
+    public ParkingLotCluster(List<ParkingLot> lots) {
+        this(lots, routeDistances(lots.size()), false);
+    }
+    
+    /**
+     * @param distances distances[i][j] is how far lot j is from lot i, used to pick
+     *        where an overflowing vehicle goes next
+     * @param executorPerShard give every lot its own thread for the async methods
+     */
+    public ParkingLotCluster(List<ParkingLot> lots, double[][] distances, boolean executorPerShard) {
+        if (lots.isEmpty()) {
+            throw new IllegalArgumentException("A cluster needs at least one lot");
+        }
+        if (distances.length != lots.size()) {
+            throw new IllegalArgumentException("Need a row of distances for every lot");
+        }
+        this.lots = lots.toArray(new ParkingLot[0]);
+        this.overflowOrder = new int[this.lots.length][];
+        for (int home = 0; home < this.lots.length; home++) {
+            if (distances[home].length != this.lots.length) {
+                throw new IllegalArgumentException("Need a distance to every lot from lot " + home);
+            }
+            overflowOrder[home] = byDistance(home, distances[home]);
+        }
+        if (executorPerShard) {
+            executors = new ExecutorService[this.lots.length];
+            for (int i = 0; i < executors.length; i++) {
+                String name = "parking-lot-shard-" + i;
+                executors[i] = Executors.newSingleThreadExecutor(r -> {
+                    Thread thread = new Thread(r, name);
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+        } else {
+            executors = null;
+        }
+    }
+    
+    private static double[][] routeDistances(int size) {
+        double[][] distances = new double[size][size];
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                distances[i][j] = Math.abs(i - j);
+            }
+        }
+        return distances;
+    }
+    
+    // Stable sort keeps lower lot numbers first among equally distant lots
+    private static int[] byDistance(int home, double[] distances) {
+        Integer[] order = new Integer[distances.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingDouble((Integer lot) -> lot == home ? -1 : distances[lot]));
+        int[] result = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            result[i] = order[i];
+        }
+        return result;
+    }
+    
+    public int size() {
+        return lots.length;
+    }
+    
+    public ParkingLot getLot(int lot) {
+        return lots[lot];
+    }
+    
+    /**
+     * Returns the lot holding the plate, or -1 when it is not parked anywhere.
+     */
+    public int getLot(String licensePlate) {
+        long lot = plates.get(licensePlate);
+        return lot == PlateTable.ABSENT || lot == PlateTable.RESERVED ? -1 : (int) lot - 1;
+    }
+    
+    /**
+     * Parks at a lot picked from the plate's hash, overflowing to its neighbours.
+     */
+    public boolean parkVehicle(String licensePlate) {
+        return parkVehicle(licensePlate, Math.floorMod(licensePlate.hashCode(), lots.length));
+    }
+    
+    /**
+     * Parks at the given lot, or at the nearest other lot with room when it is full.
+     * Returns false when the plate is already parked in the cluster, is not a known
+     * vehicle type, or no lot has room.
+     */
+    public boolean parkVehicle(String licensePlate, int lot) {
+        if (!reserve(licensePlate, lot)) {
+            return false;
+        }
+        int parkedOn = -1;
+        try {
+            for (int shard : overflowOrder[lot]) {
+                ParkingStatus status = lots[shard].parkVehicleWithStatus(licensePlate, 0);
+                if (status == ParkingStatus.PARKED) {
+                    parkedOn = shard;
+                    break;
+                }
+                if (status != ParkingStatus.NO_SPACE) {
+                    break;
+                }
+            }
+        } finally {
+            settle(licensePlate, parkedOn);
+        }
+        return parkedOn != -1;
+    }
+    
+    /**
+     * Unparks the vehicle from the lot the index holds it in. Returns false when the
+     * plate is not parked in the cluster, or when that lot does not hold it, e.g.
+     * because it was unparked from the lot directly.
+     */
+    public boolean unParkVehicle(String licensePlate) {
+        long lot = plates.take(licensePlate);
+        if (lot == PlateTable.ABSENT) {
+            return false;
+        }
+        boolean unparked = false;
+        try {
+            unparked = lots[(int) lot - 1].unParkVehicle(licensePlate);
+        } finally {
+            settleUnpark(licensePlate, lot, unparked);
+        }
+        return unparked;
+    }
+    
+    /**
+     * Same as parkVehicle, run on the lots' own threads: the home lot's thread tries
+     * first and hands the vehicle to the next lot's thread when full.
+     */
+    public CompletableFuture<Boolean> parkVehicleAsync(String licensePlate, int lot) {
+        requireExecutors();
+        if (!reserve(licensePlate, lot)) {
+            return CompletableFuture.completedFuture(false);
+        }
+        CompletableFuture<Integer> parkedOn;
+        try {
+            parkedOn = parkOn(licensePlate, overflowOrder[lot], 0);
+        } catch (RuntimeException e) {
+            // A shut down executor refuses the first hop outright
+            plates.release(licensePlate);
+            throw e;
+        }
+        // Settled however the chain ends, so a lot that throws cannot strand the reservation
+        return parkedOn.whenComplete((shard, failure) -> settle(licensePlate, failure == null ? shard : -1))
+                .thenApply(shard -> shard != -1);
+    }
+    
+    // Completes with the lot that took the vehicle, or -1 once one refused it for a reason other than NO_SPACE
+    private CompletableFuture<Integer> parkOn(String licensePlate, int[] order, int attempt) {
+        if (attempt == order.length) {
+            return CompletableFuture.completedFuture(-1);
+        }
+        int shard = order[attempt];
+        return CompletableFuture.supplyAsync(() -> lots[shard].parkVehicleWithStatus(licensePlate, 0), executors[shard])
+                .thenCompose(status -> {
+                    if (status == ParkingStatus.PARKED) {
+                        return CompletableFuture.completedFuture(shard);
+                    }
+                    if (status != ParkingStatus.NO_SPACE) {
+                        return CompletableFuture.completedFuture(-1);
+                    }
+                    return parkOn(licensePlate, order, attempt + 1);
+                });
+    }
+    
+    // Ends an unpark's take: frees the plate once the lot let the vehicle go, otherwise
+    // points the index back at the lot
+    private void settleUnpark(String licensePlate, long lot, boolean unparked) {
+        if (unparked) {
+            plates.release(licensePlate);
+        } else {
+            plates.put(licensePlate, lot);
+        }
+    }
+    
+    // Ends a park's reservation: records the lot it went to, or frees the plate when shard is -1
+    private void settle(String licensePlate, int shard) {
+        if (shard != -1) {
+            plates.put(licensePlate, shard + 1);
+        } else {
+            plates.release(licensePlate);
+        }
+    }
+    
+    public CompletableFuture<Boolean> unParkVehicleAsync(String licensePlate) {
+        requireExecutors();
+        long lot = plates.take(licensePlate);
+        if (lot == PlateTable.ABSENT) {
+            return CompletableFuture.completedFuture(false);
+        }
+        int shard = (int) lot - 1;
+        try {
+            return CompletableFuture.supplyAsync(() -> lots[shard].unParkVehicle(licensePlate), executors[shard])
+                    .whenComplete((unparked, failure) -> settleUnpark(licensePlate, lot,
+                            failure == null && unparked));
+        } catch (RuntimeException e) {
+            settleUnpark(licensePlate, lot, false);
+            throw e;
+        }
+    }
+    
+    /**
+     * Per-type counts summed over every lot.
+     */
+    public Availability getAvailability() {
+        Availability total = lots[0].getAvailability();
+        for (int lot = 1; lot < lots.length; lot++) {
+            total = total.plus(lots[lot].getAvailability());
+        }
+        return total;
+    }
+    
+    /**
+     * Stops the shard threads once the work already queued on them has run.
+     */
+    @Override
+    public void close() {
+        if (executors == null) {
+            return;
+        }
+        for (ExecutorService executor : executors) {
+            executor.shutdown();
+        }
+        try {
+            for (ExecutorService executor : executors) {
+                executor.awaitTermination(10, TimeUnit.SECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    // Claims the plate cluster-wide; plates no lot type matches are refused before any overflow
+    private boolean reserve(String licensePlate, int lot) {
+        if (lot < 0 || lot >= lots.length) {
+            throw new IllegalArgumentException("No lot " + lot);
+        }
+        if (lots[lot].getVehicleTypes().resolve(licensePlate) == null) {
+            return false;
+        }
+        return plates.reserve(licensePlate);
+    }
+    
+    private void requireExecutors() {
+        if (executors == null) {
+            throw new IllegalStateException("Cluster was created without shard executors");
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,119 @@
+import java.util.*;
+import java.util.concurrent.*;
+
+public class ParkingLotClusterBenchmark {
+    private static final int LEVELS = 4;
+    private static final int ROWS = 10;
+    private static final int SPOTS_PER_ROW = 100;
+    private static final int OPERATIONS_PER_SHARD = 200_000;
+    private static final int WINDOW = 1_000;
+    
+    public static void main(String[] args) throws Exception {
+        System.out.println("=== Parking Lot Cluster Benchmark ===");
+        System.out.println("Each shard: " + LEVELS + " levels x " + ROWS + " rows x " + SPOTS_PER_ROW
+                + " spots, half full; " + Runtime.getRuntime().availableProcessors() + " CPUs available");
+        System.out.println("Aggregate throughput can only scale up to the number of CPUs");
+        System.out.println();
+        
+        int[] shardCounts = {1, 2, 4, 8};
+        for (int shards : shardCounts) {
+            runGates(shards);
+            runExecutors(shards);
+        }
+        System.out.printf("%-8s %18s %10s %18s %10s%n", "shards", "gate threads/sec", "scaling", "shard executors/sec",
+                "scaling");
+        double gateBase = 0;
+        double executorBase = 0;
+        for (int shards : shardCounts) {
+            double gates = runGates(shards);
+            double executors = runExecutors(shards);
+            if (shards == 1) {
+                gateBase = gates;
+                executorBase = executors;
+            }
+            System.out.printf("%-8d %18.0f %9.2fx %18.0f %9.2fx%n", shards, gates, gates / gateBase, executors,
+                    executors / executorBase);
+        }
+    }
+    
+    // One gate thread per garage, each parking and unparking at its own lot through the cluster
+    private static double runGates(int shards) throws Exception {
+        ParkingLotCluster cluster = new ParkingLotCluster(halfFullLots(shards));
+        ExecutorService gates = Executors.newFixedThreadPool(shards);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> results = new ArrayList<>();
+            for (int s = 0; s < shards; s++) {
+                int shard = s;
+                results.add(gates.submit(() -> {
+                    String[] plates = plates(shard);
+                    start.await();
+                    for (int i = 0; i < OPERATIONS_PER_SHARD / 2; i++) {
+                        String plate = plates[i % plates.length];
+                        cluster.parkVehicle(plate, shard);
+                        cluster.unParkVehicle(plate);
+                    }
+                    return null;
+                }));
+            }
+            long begin = System.nanoTime();
+            start.countDown();
+            for (Future<?> result : results) {
+                result.get();
+            }
+            return (double) OPERATIONS_PER_SHARD * shards / ((System.nanoTime() - begin) / 1e9);
+        } finally {
+            gates.shutdown();
+        }
+    }
+    
+    // Work queued on each lot's own thread, a window of operations in flight per shard
+    private static double runExecutors(int shards) throws Exception {
+        double[][] distances = new double[shards][shards];
+        try (ParkingLotCluster cluster = new ParkingLotCluster(halfFullLots(shards), distances, true)) {
+            String[][] plates = new String[shards][];
+            for (int shard = 0; shard < shards; shard++) {
+                plates[shard] = plates(shard);
+            }
+            long begin = System.nanoTime();
+            List<CompletableFuture<Boolean>> window = new ArrayList<>();
+            for (int i = 0; i < OPERATIONS_PER_SHARD / 2; i += WINDOW) {
+                for (int shard = 0; shard < shards; shard++) {
+                    for (int j = i; j < i + WINDOW; j++) {
+                        window.add(cluster.parkVehicleAsync(plates[shard][j % WINDOW], shard));
+                    }
+                }
+                CompletableFuture.allOf(window.toArray(new CompletableFuture<?>[0])).join();
+                window.clear();
+                for (int shard = 0; shard < shards; shard++) {
+                    for (int j = i; j < i + WINDOW; j++) {
+                        window.add(cluster.unParkVehicleAsync(plates[shard][j % WINDOW]));
+                    }
+                }
+                CompletableFuture.allOf(window.toArray(new CompletableFuture<?>[0])).join();
+                window.clear();
+            }
+            return (double) OPERATIONS_PER_SHARD * shards / ((System.nanoTime() - begin) / 1e9);
+        }
+    }
+    
+    private static List<ParkingLot> halfFullLots(int shards) {
+        List<ParkingLot> lots = new ArrayList<>();
+        for (int shard = 0; shard < shards; shard++) {
+            ParkingLot lot = new ParkingLot(LEVELS, ROWS, SPOTS_PER_ROW);
+            for (int i = 0; i < LEVELS * ROWS * SPOTS_PER_ROW * 3 / 8; i++) {
+                lot.parkVehicle("Car_resident_" + shard + "_" + i);
+            }
+            lots.add(lot);
+        }
+        return lots;
+    }
+    
+    private static String[] plates(int shard) {
+        String[] plates = new String[WINDOW];
+        for (int i = 0; i < plates.length; i++) {
+            plates[i] = (i % 10 == 0 ? "Bus_" : "Car_") + shard + "_" + i;
+        }
+        return plates;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,179 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ParkingLotClusterTest {
+    public static void main(String[] args) throws Exception {
+        verifyOverflow();
+        verifyAsync();
+        verifyOnlyFullLotsOverflow();
+        verifyFailingLot();
+        verifyConcurrentGates();
+        
+        System.out.println("=== Parking Lot Cluster Test ===");
+        System.out.println("PASSED");
+    }
+    
+    private static void verifyOverflow() {
+        // Each lot is one row of 4: one motorcycle, two compact and one large spot
+        ParkingLotCluster cluster = new ParkingLotCluster(lots(4, 1, 1, 4));
+        for (int i = 0; i < 3; i++) {
+            check(cluster.parkVehicle("Car_" + i, 2), "car parks");
+        }
+        check(cluster.getLot("Car_0") == 2 && cluster.getLot("Car_2") == 2, "home lot fills first");
+        check(cluster.parkVehicle("Car_3", 2) && cluster.getLot("Car_3") == 1, "overflow goes to the nearer lot");
+        check(!cluster.parkVehicle("Car_3", 0), "plate cannot park twice in the cluster");
+        check(!cluster.parkVehicle("Truck_1", 2), "unknown vehicles are not offered around");
+        check(cluster.getLot(0).getAvailability().getTotalFree() == 4, "invalid plate touched another lot");
+        
+        check(cluster.unParkVehicle("Car_3"), "overflowed car unparks");
+        check(cluster.getLot("Car_3") == -1 && cluster.getLot(1).getAvailability().getTotalFree() == 4,
+                "unpark went to the lot that held the car");
+        check(!cluster.unParkVehicle("Car_3"), "plate unparked twice");
+        
+        // Fill everything, then one more car has nowhere to go
+        int parked = 3;
+        while (cluster.parkVehicle("Car_fill_" + parked, 0)) {
+            parked++;
+        }
+        check(parked == 4 * 3, "every compact and large spot in the cluster is used");
+        check(cluster.getAvailability().getTotalFree() == 4, "only motorcycle spots are left");
+    }
+    
+    private static void verifyAsync() throws Exception {
+        double[][] distances = {{0, 5, 1}, {5, 0, 2}, {1, 2, 0}};
+        try (ParkingLotCluster cluster = new ParkingLotCluster(lots(3, 1, 1, 4), distances, true)) {
+            for (int i = 0; i < 3; i++) {
+                check(cluster.parkVehicleAsync("Car_" + i, 0).get(), "car parks");
+            }
+            check(cluster.parkVehicleAsync("Car_3", 0).get() && cluster.getLot("Car_3") == 2,
+                    "overflow follows the distance table");
+            check(!cluster.parkVehicleAsync("Car_3", 1).get(), "plate cannot park twice");
+            check(cluster.unParkVehicleAsync("Car_3").get() && cluster.getLot("Car_3") == -1, "async unpark");
+            check(!cluster.unParkVehicleAsync("Car_3").get(), "plate unparked twice");
+        }
+    }
+    
+    // A plate a lot already holds is refused there, not parked a second time next door
+    private static void verifyOnlyFullLotsOverflow() throws Exception {
+        try (ParkingLotCluster cluster = new ParkingLotCluster(lots(2, 1, 1, 4), routeDistances(2), true)) {
+            check(cluster.getLot(0).parkVehicle("Car_1"), "car parks on the lot directly");
+            check(!cluster.parkVehicle("Car_1", 0), "plate held by the home lot was parked");
+            check(!cluster.parkVehicleAsync("Car_1", 0).get(), "plate held by the home lot was parked async");
+            check(cluster.getLot(1).getAvailability().getTotalFree() == 4, "ALREADY_PARKED overflowed");
+            
+            // The refusals left nothing reserved in the cluster
+            check(cluster.getLot(0).unParkVehicle("Car_1"), "car leaves the lot directly");
+            check(cluster.parkVehicle("Car_1", 0) && cluster.getLot("Car_1") == 0, "plate stayed reserved");
+            
+            // An unpark the lot refuses is reported as refused and leaves the index as it was
+            check(cluster.getLot(0).unParkVehicle("Car_1"), "car leaves the lot directly");
+            check(!cluster.unParkVehicle("Car_1"), "unpark the lot refused was reported as done");
+            check(!cluster.unParkVehicleAsync("Car_1").get(), "async unpark the lot refused was reported as done");
+            check(cluster.getLot("Car_1") == 0, "refused unpark changed the index");
+        }
+    }
+    
+    // A lot that throws must not strand the plate's cluster reservation
+    private static void verifyFailingLot() throws Exception {
+        AtomicInteger failures = new AtomicInteger(2);
+        ParkingLot failing = new ParkingLot(1, 1, 4) {
+            @Override
+            public ParkingStatus parkVehicleWithStatus(String licensePlate, int preferredLevel) {
+                if (failures.getAndDecrement() > 0) {
+                    throw new IllegalStateException("lot is down");
+                }
+                return super.parkVehicleWithStatus(licensePlate, preferredLevel);
+            }
+        };
+        try (ParkingLotCluster cluster = new ParkingLotCluster(Arrays.asList(failing), routeDistances(1), true)) {
+            check(throwsIllegalState(() -> cluster.parkVehicle("Car_1", 0)), "failure was not reported");
+            try {
+                cluster.parkVehicleAsync("Car_1", 0).get();
+                check(false, "async failure was not reported");
+            } catch (ExecutionException e) {
+                check(e.getCause() instanceof IllegalStateException, "async failure was not the lot's");
+            }
+            check(cluster.getLot("Car_1") == -1, "failed park left the plate indexed");
+            check(cluster.parkVehicleAsync("Car_1", 0).get(), "failed park left the plate reserved");
+        }
+    }
+    
+    // Gates at every lot race on shared plates; the index and the lots must agree afterwards
+    private static void verifyConcurrentGates() throws Exception {
+        ParkingLotCluster cluster = new ParkingLotCluster(lots(4, 1, 2, 20));
+        List<String> plates = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            plates.add((i % 5 == 0 ? "Bus_" : "Car_") + i);
+        }
+        ExecutorService gates = Executors.newFixedThreadPool(8);
+        AtomicInteger net = new AtomicInteger();
+        List<Future<?>> results = new ArrayList<>();
+        for (int g = 0; g < 8; g++) {
+            int gate = g;
+            results.add(gates.submit(() -> {
+                Random random = new Random(gate);
+                for (int i = 0; i < 20_000; i++) {
+                    String plate = plates.get(random.nextInt(plates.size()));
+                    if (random.nextBoolean()) {
+                        if (cluster.parkVehicle(plate, gate % 4)) {
+                            net.incrementAndGet();
+                        }
+                    } else if (cluster.unParkVehicle(plate)) {
+                        net.decrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> result : results) {
+            result.get();
+        }
+        gates.shutdown();
+        
+        int parked = 0;
+        for (String plate : plates) {
+            int lot = cluster.getLot(plate);
+            for (int i = 0; i < cluster.size(); i++) {
+                check(cluster.getLot(i).getParkedSpots(plate).isEmpty() != (i == lot), "index disagrees with lot " + i);
+            }
+            if (lot != -1) {
+                parked++;
+            }
+        }
+        check(parked == net.get(), "parks minus unparks should equal parked vehicles");
+    }
+    
+    private static double[][] routeDistances(int size) {
+        double[][] distances = new double[size][size];
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                distances[i][j] = Math.abs(i - j);
+            }
+        }
+        return distances;
+    }
+    
+    private static boolean throwsIllegalState(Runnable call) {
+        try {
+            call.run();
+            return false;
+        } catch (IllegalStateException e) {
+            return true;
+        }
+    }
+    
+    private static List<ParkingLot> lots(int count, int levels, int rows, int spotsPerRow) {
+        List<ParkingLot> lots = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            lots.add(new ParkingLot(levels, rows, spotsPerRow));
+        }
+        return lots;
+    }
+    
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,19 @@
+import java.util.*;
+
+/**
+ * Receives parking events. Callbacks run on the gate thread that caused them, so
+ * anything slow (console, files, network) belongs behind an AsyncListener.
+ */
+public interface ParkingLotListener {
+    default void onParked(String licensePlate, List<Spot> spots) {
+    }
+    
+    default void onUnparked(String licensePlate, List<Spot> spots) {
+    }
+    
+    /**
+     * Called when a park or unpark is refused; reason is never PARKED or UNPARKED.
+     */
+    default void onRejected(String licensePlate, ParkingStatus reason) {
+    }
+}
\ No newline at end of file
@@ -0,0 +1,140 @@
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ParkingLotStressTest {
+    private static final int LEVELS = 3;
+    private static final int ROWS = 4;
+    private static final int SPOTS_PER_ROW = 20;
+    private static final int GATES = 8;
+    private static final int OPERATIONS_PER_GATE = 50_000;
+    
+    public static void main(String[] args) throws Exception {
+        ParkingLot parkingLot = new ParkingLot(LEVELS, ROWS, SPOTS_PER_ROW);
+        AtomicInteger parks = new AtomicInteger();
+        AtomicInteger unparks = new AtomicInteger();
+        
+        // Every gate draws from the same plates, so parks and unparks of one plate race
+        List<String> plates = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            plates.add("Motorcycle_" + i);
+            plates.add("Car_" + i);
+            plates.add("Bus_" + i);
+        }
+        
+        ExecutorService gates = Executors.newFixedThreadPool(GATES);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+        for (int g = 0; g < GATES; g++) {
+            int gate = g;
+            results.add(gates.submit(() -> {
+                start.await();
+                Random random = new Random(gate);
+                for (int i = 0; i < OPERATIONS_PER_GATE; i++) {
+                    String plate = plates.get(random.nextInt(plates.size()));
+                    if (random.nextBoolean()) {
+                        if (parkingLot.parkVehicle(plate, gate % LEVELS)) {
+                            parks.incrementAndGet();
+                        }
+                    } else if (parkingLot.unParkVehicle(plate)) {
+                        unparks.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> result : results) {
+            result.get();
+        }
+        gates.shutdown();
+        
+        int stillParked = verifyOccupancy(parkingLot, plates);
+        check(parks.get() - unparks.get() == stillParked,
+                "successful parks minus unparks should equal parked vehicles");
+        // The session index must agree with the lot after racing parks and unparks
+        check(parkingLot.getParkedLongerThan(Duration.ofDays(-1)).size() == stillParked,
+                "every parked vehicle should have exactly one open session");
+        
+        // Emptying the lot must leave every index able to hand out every spot again
+        for (String plate : plates) {
+            parkingLot.unParkVehicle(plate);
+        }
+        int motorcycles = 0;
+        while (parkingLot.parkVehicle("Motorcycle_refill_" + motorcycles)) {
+            motorcycles++;
+        }
+        check(motorcycles == LEVELS * ROWS * SPOTS_PER_ROW, "every spot should be free after unparking all");
+        
+        verifyBusRollback();
+        
+        System.out.println("=== Parking Lot Stress Test ===");
+        System.out.println(GATES + " gates x " + OPERATIONS_PER_GATE + " operations");
+        System.out.println("Parks: " + parks.get() + ", unparks: " + unparks.get() + ", still parked: " + stillParked);
+        System.out.println("PASSED");
+    }
+    
+    // Checks every spot against the plate -> spots view and returns how many vehicles are parked
+    private static int verifyOccupancy(ParkingLot parkingLot, List<String> plates) {
+        Map<Spot, String> owners = new HashMap<>();
+        int parked = 0;
+        for (String plate : plates) {
+            List<Spot> spots = parkingLot.getParkedSpots(plate);
+            if (spots.isEmpty()) {
+                continue;
+            }
+            parked++;
+            Spot first = spots.get(0);
+            for (int i = 0; i < spots.size(); i++) {
+                Spot spot = spots.get(i);
+                check(owners.put(spot, plate) == null, "spot booked twice: " + plate);
+                check(spot.getVehicle() != null && plate.equals(spot.getVehicle().getLicensePlate()),
+                        "spot does not hold " + plate);
+                check(spot.getLevel() == first.getLevel() && spot.getRow() == first.getRow()
+                        && spot.getSpotNumber() == first.getSpotNumber() + i, "run is not contiguous for " + plate);
+            }
+            check(spots.size() == (plate.startsWith("Bus_") ? 5 : 1), "wrong spot count for " + plate);
+        }
+        for (int level = 0; level < LEVELS; level++) {
+            for (int row = 0; row < ROWS; row++) {
+                for (int spot = 0; spot < SPOTS_PER_ROW; spot++) {
+                    Spot current = parkingLot.getSpot(level, row, spot);
+                    check(current.isAvailable() != owners.containsKey(current), "orphaned spot occupancy");
+                }
+                Availability counted = parkingLot.getAvailability(level, row);
+                for (SpotType spotType : SpotType.values()) {
+                    int free = 0;
+                    for (int spot = 0; spot < SPOTS_PER_ROW; spot++) {
+                        Spot current = parkingLot.getSpot(level, row, spot);
+                        if (current.getSpotType() == spotType && current.isAvailable()) {
+                            free++;
+                        }
+                    }
+                    check(counted.getFree(spotType) == free, "row counter disagrees with spots");
+                }
+            }
+        }
+        check(parkingLot.getAvailability().getTotalFree() == LEVELS * ROWS * SPOTS_PER_ROW - owners.size(),
+                "lot counter disagrees with spots");
+        return parked;
+    }
+    
+    // A spot taken behind the lot's back must make a bus release the part of the run it reserved
+    private static void verifyBusRollback() {
+        ParkingLot parkingLot = new ParkingLot(1, 1, 11);
+        Spot blocked = parkingLot.getSpot(0, 0, 8);
+        check(blocked.parkVehicle(new Car("Car_valet")), "valet should take the free spot");
+        check(!parkingLot.parkVehicle("Bus_1"), "bus should not fit around the valet car");
+        for (int spot = 6; spot < 11; spot++) {
+            check(spot == 8 || parkingLot.getSpot(0, 0, spot).isAvailable(), "bus left a partial booking");
+        }
+        blocked.unparkVehicle();
+    }
+    
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+}
\ No newline at end of file
@@ -1,6 +1,9 @@
+import java.util.*;
+
 public class ParkingLotTest {
     public static void main(String[] args) {
         ParkingLot parkingLot = new ParkingLot(1, 1, 11);
+        parkingLot.setListener(new LoggingListener(System.out));
         
         System.out.println("=== Parking Lot Test ===");
         System.out.println("Configuration: 1 level, 1 row, 11 spots per row");
@@ -16,5 +19,19 @@ public class ParkingLotTest {
         parkingLot.parkVehicle("Bus_1");
         parkingLot.unParkVehicle("Car_5");
         parkingLot.parkVehicle("Bus_1");
+        System.out.println("Availability: " + parkingLot.getAvailability());
+        
+        System.out.println();
+        System.out.println("=== Batch Test ===");
+        ParkingLot batchLot = new ParkingLot(1, 1, 11);
+        List<ParkingResult> parked = batchLot.parkVehicles(
+                Arrays.asList("Motorcycle_1", "Car_1", "Bus_1", "Car_1", "Truck_1", "Bus_2"));
+        for (ParkingResult result : parked) {
+            System.out.println(result.getLicensePlate() + ": " + result.getStatus());
+        }
+        List<ParkingResult> unparked = batchLot.unParkVehicles(Arrays.asList("Bus_1", "Bus_2"));
+        for (ParkingResult result : unparked) {
+            System.out.println(result.getLicensePlate() + ": " + result.getStatus());
+        }
     }
 }
\ No newline at end of file
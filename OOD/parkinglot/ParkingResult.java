@@ -0,0 +1,32 @@
+import java.util.*;
+
+public class ParkingResult {
+    private final String licensePlate;
+    private final ParkingStatus status;
+    private final List<Spot> spots;
+    
+    public ParkingResult(String licensePlate, ParkingStatus status, List<Spot> spots) {
+        this.licensePlate = licensePlate;
+        this.status = status;
+        this.spots = spots;
+    }
+    
+    public String getLicensePlate() {
+        return licensePlate;
+    }
+    
+    public ParkingStatus getStatus() {
+        return status;
+    }
+    
+    public boolean isSuccess() {
+        return status == ParkingStatus.PARKED || status == ParkingStatus.UNPARKED;
+    }
+    
+    /**
+     * Spots taken by a park or released by an unpark; empty when the request failed.
+     */
+    public List<Spot> getSpots() {
+        return spots;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,67 @@
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * One stay of a vehicle in the lot: when it entered and, once it has left, when
+ * it left. A session of a vehicle still parked measures its duration up to the
+ * moment the session was read.
+ */
+public class ParkingSession {
+    private final String licensePlate;
+    private final VehicleType vehicleType;
+    private final int level;
+    private final long entryMillis;
+    private final long endMillis;
+    private final boolean ended;
+    
+    public ParkingSession(String licensePlate, VehicleType vehicleType, int level, long entryMillis,
+            long endMillis, boolean ended) {
+        this.licensePlate = licensePlate;
+        this.vehicleType = vehicleType;
+        this.level = level;
+        this.entryMillis = entryMillis;
+        this.endMillis = endMillis;
+        this.ended = ended;
+    }
+    
+    public String getLicensePlate() {
+        return licensePlate;
+    }
+    
+    public VehicleType getVehicleType() {
+        return vehicleType;
+    }
+    
+    public int getLevel() {
+        return level;
+    }
+    
+    public Instant getEntryTime() {
+        return Instant.ofEpochMilli(entryMillis);
+    }
+    
+    /**
+     * The time the vehicle left, or null while it is still parked.
+     */
+    public Instant getExitTime() {
+        return ended ? Instant.ofEpochMilli(endMillis) : null;
+    }
+    
+    public boolean isEnded() {
+        return ended;
+    }
+    
+    /**
+     * Time from entry to exit, or to when the session was read if the vehicle is
+     * still parked. Never negative, even if the clock stepped back meanwhile.
+     */
+    public Duration getDuration() {
+        return Duration.ofMillis(Math.max(0, endMillis - entryMillis));
+    }
+    
+    @Override
+    public String toString() {
+        return licensePlate + " (" + vehicleType.getName() + ") on level " + level + " since " + getEntryTime()
+                + (ended ? " until " + getExitTime() : "") + ", " + getDuration();
+    }
+}
\ No newline at end of file
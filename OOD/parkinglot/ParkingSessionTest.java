@@ -0,0 +1,163 @@
+import java.io.IOException;
+import java.nio.file.*;
+import java.time.*;
+import java.util.*;
+
+public class ParkingSessionTest {
+    public static void main(String[] args) throws IOException {
+        verifyDurations();
+        verifyOverstays();
+        verifyCursor();
+        verifyRecovery();
+        
+        System.out.println("=== Parking Session Test ===");
+        System.out.println("PASSED");
+    }
+    
+    private static void verifyDurations() {
+        ManualClock clock = new ManualClock();
+        ParkingLot lot = new ParkingLot(1, 2, 10);
+        lot.setClock(clock);
+        
+        check(lot.parkVehicle("Car_1"), "car parks");
+        clock.advance(Duration.ofMinutes(95));
+        ParkingSession open = lot.getSession("Car_1");
+        check(open != null && !open.isEnded() && open.getExitTime() == null, "open session");
+        check(open.getDuration().equals(Duration.ofMinutes(95)), "open duration is " + open.getDuration());
+        check(open.getVehicleType() == VehicleType.CAR && open.getLevel() == 0, "session describes the car");
+        
+        clock.advance(Duration.ofMinutes(5));
+        ParkingSession done = lot.endSession("Car_1");
+        check(done != null && done.isEnded(), "unpark returns the finished session");
+        check(done.getDuration().equals(Duration.ofMinutes(100)), "finished duration is " + done.getDuration());
+        check(done.getExitTime().equals(done.getEntryTime().plus(Duration.ofMinutes(100))), "exit time");
+        check(lot.getSession("Car_1") == null && lot.endSession("Car_1") == null, "no session after unpark");
+        
+        // A plate back in the same millisecond is a new session, not two
+        check(lot.parkVehicle("Car_1") && lot.unParkVehicle("Car_1") && lot.parkVehicle("Car_1"), "car returns");
+        clock.advance(Duration.ofMinutes(1));
+        check(lot.getParkedLongerThan(Duration.ZERO).size() == 1, "returning plate reported twice");
+    }
+    
+    private static void verifyOverstays() {
+        ManualClock clock = new ManualClock();
+        ParkingLot lot = new ParkingLot(2, 4, 20);
+        lot.setClock(clock);
+        
+        // One car an hour, the last parked as a batch of three
+        for (int hour = 0; hour < 6; hour++) {
+            check(lot.parkVehicle("Car_" + hour), "car parks");
+            clock.advance(Duration.ofHours(1));
+        }
+        check(lot.parkVehicles(Arrays.asList("Car_a", "Bus_b", "Car_c")).size() == 3, "batch parks");
+        clock.advance(Duration.ofMinutes(30));
+        
+        check(plates(lot.getParkedLongerThan(Duration.ofHours(4))).equals(Arrays.asList("Car_0", "Car_1", "Car_2")),
+                "longer than 4h: " + plates(lot.getParkedLongerThan(Duration.ofHours(4))));
+        check(lot.getParkedLongerThan(Duration.ofMinutes(30)).size() == 6, "exactly 30 minutes is not longer");
+        check(lot.getParkedLongerThan(Duration.ofMinutes(29)).size() == 9, "everyone is over 29 minutes");
+        
+        check(lot.unParkVehicle("Car_0"), "car leaves");
+        check(lot.unParkVehicles(Arrays.asList("Car_1", "Bus_b")).size() == 2, "batch leaves");
+        check(plates(lot.getParkedLongerThan(Duration.ofHours(4))).equals(Arrays.asList("Car_2")),
+                "departed cars are not overstays");
+        check(lot.getParkedLongerThan(Duration.ofMinutes(29)).size() == 6, "batch unpark left sessions behind");
+    }
+    
+    private static void verifyCursor() {
+        ManualClock clock = new ManualClock();
+        ParkingLot lot = new ParkingLot(1, 4, 20);
+        lot.setClock(clock);
+        OverstayCursor cursor = lot.overstays(Duration.ofHours(2));
+        
+        for (int i = 0; i < 4; i++) {
+            check(lot.parkVehicle("Car_" + i), "car parks");
+            clock.advance(Duration.ofMinutes(45));
+        }
+        // Now 3h; Car_0 entered at 0 and Car_1 at 45m are over 2h
+        check(plates(cursor.poll()).equals(Arrays.asList("Car_0", "Car_1")), "first poll reports all overstays");
+        check(cursor.poll().isEmpty(), "nothing new without time passing");
+        
+        check(lot.unParkVehicle("Car_2"), "car leaves before going over");
+        clock.advance(Duration.ofMinutes(90));
+        check(plates(cursor.poll()).equals(Arrays.asList("Car_3")), "only newly crossed vehicles are reported");
+        
+        // A clock stepping back never reports a vehicle again
+        clock.advance(Duration.ofHours(-2));
+        check(cursor.poll().isEmpty(), "cursor moved backwards");
+    }
+    
+    private static void verifyRecovery() throws IOException {
+        ManualClock clock = new ManualClock();
+        Path directory = Files.createTempDirectory("parking-session");
+        try {
+            ParkingLot lot = new ParkingLot(1, 2, 10);
+            lot.setClock(clock);
+            Instant firstEntry;
+            try (ParkingJournal journal = new ParkingJournal(directory, Durability.SYNC)) {
+                journal.recover(lot);
+                check(lot.parkVehicle("Car_1"), "car parks");
+                firstEntry = lot.getSession("Car_1").getEntryTime();
+                clock.advance(Duration.ofHours(1));
+                journal.snapshot();
+                check(lot.parkVehicle("Car_2"), "car parks");
+            }
+            
+            ParkingLot recovered = new ParkingLot(1, 2, 10);
+            clock.advance(Duration.ofHours(1));
+            recovered.setClock(clock);
+            try (ParkingJournal journal = new ParkingJournal(directory, Durability.SYNC)) {
+                journal.recover(recovered);
+            }
+            check(recovered.getSession("Car_1").getEntryTime().equals(firstEntry), "snapshot kept the entry time");
+            check(recovered.getSession("Car_2").getDuration().equals(Duration.ofHours(1)), "log kept the entry time");
+            check(plates(recovered.getParkedLongerThan(Duration.ofMinutes(90))).equals(Arrays.asList("Car_1")),
+                    "recovered sessions are indexed");
+        } finally {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+                for (Path file : files) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(directory);
+        }
+    }
+    
+    private static List<String> plates(List<ParkingSession> sessions) {
+        List<String> plates = new ArrayList<>();
+        for (ParkingSession session : sessions) {
+            plates.add(session.getLicensePlate());
+        }
+        return plates;
+    }
+    
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+    
+    // A clock the test moves by hand
+    private static final class ManualClock extends Clock {
+        private Instant now = Instant.parse("2024-01-01T08:00:00Z");
+        
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+        
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+        
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+        
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,8 @@
+public enum ParkingStatus {
+    PARKED,
+    UNPARKED,
+    ALREADY_PARKED,
+    NOT_PARKED,
+    INVALID_VEHICLE,
+    NO_SPACE
+}
\ No newline at end of file
@@ -0,0 +1,272 @@
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Open-addressing map from license plate to the packed location of its vehicle
+ * (see SpotLocation) and the time it was reserved. Each segment is one String[] of
+ * plates and two long[]s, so a parked vehicle costs three array slots instead of
+ * map entries, a boxed value and a list, and every operation hashes the plate once.
+ *
+ * A plate keeps its slot after it leaves, so a returning plate lands on the same
+ * slot; slots of departed plates are dropped whenever a segment is rebuilt. The
+ * table is split into independently locked segments so gates working on
+ * different plates rarely meet.
+ */
+public class PlateTable {
+    public static final long ABSENT = 0;
+    // A park or unpark is in progress: the plate is taken but has no location yet
+    public static final long RESERVED = -1;
+    private static final int SEGMENT_BITS = 6;
+    private static final int MIN_CAPACITY = 16;
+    
+    private final Segment[] segments = new Segment[1 << SEGMENT_BITS];
+    
+    public PlateTable() {
+        this(0);
+    }
+    
+    public PlateTable(int expectedPlates) {
+        int perSegment = tableSize((expectedPlates >> SEGMENT_BITS) * 2);
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment(perSegment);
+        }
+    }
+    
+    /**
+     * Returns the plate's location, RESERVED while it is being parked or unparked,
+     * or ABSENT.
+     */
+    public long get(String plate) {
+        int hash = hash(plate);
+        Segment segment = segmentFor(hash);
+        segment.lock.lock();
+        try {
+            int slot = segment.find(plate, hash);
+            return slot == -1 ? ABSENT : segment.values[slot];
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+    
+    /**
+     * Marks an absent plate RESERVED. Returns false when the plate is already
+     * parked or reserved.
+     */
+    public boolean reserve(String plate) {
+        return reserve(plate, 0);
+    }
+    
+    /**
+     * Reserves the plate as reserve(plate) does and stamps it with a time that
+     * stays with the plate until it is released.
+     */
+    public boolean reserve(String plate, long time) {
+        int hash = hash(plate);
+        Segment segment = segmentFor(hash);
+        segment.lock.lock();
+        try {
+            int slot = segment.findOrInsert(plate, hash);
+            if (segment.values[slot] != ABSENT) {
+                return false;
+            }
+            segment.values[slot] = RESERVED;
+            segment.times[slot] = time;
+            segment.live++;
+            return true;
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+    
+    /**
+     * Stores the location of a plate this caller reserved.
+     */
+    public void put(String plate, long location) {
+        int hash = hash(plate);
+        Segment segment = segmentFor(hash);
+        segment.lock.lock();
+        try {
+            int slot = segment.find(plate, hash);
+            if (slot == -1 || segment.values[slot] != RESERVED) {
+                throw new IllegalStateException(plate + " is not reserved");
+            }
+            segment.values[slot] = location;
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+    
+    /**
+     * Returns the time the plate was reserved with, or 0 when it has none.
+     */
+    public long getTime(String plate) {
+        int hash = hash(plate);
+        Segment segment = segmentFor(hash);
+        segment.lock.lock();
+        try {
+            int slot = segment.find(plate, hash);
+            return slot == -1 ? 0 : segment.times[slot];
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+    
+    /**
+     * Returns what get(plate) would if the plate is stamped with exactly this
+     * time, otherwise ABSENT. Lets a caller holding an old (plate, time) pair tell
+     * whether it still describes the same stay.
+     */
+    public long locationAt(String plate, long time) {
+        int hash = hash(plate);
+        Segment segment = segmentFor(hash);
+        segment.lock.lock();
+        try {
+            int slot = segment.find(plate, hash);
+            return slot == -1 || segment.times[slot] != time ? ABSENT : segment.values[slot];
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+    
+    /**
+     * Sets a parked plate back to RESERVED and returns its location, or returns
+     * ABSENT when the plate has no location.
+     */
+    public long take(String plate) {
+        int hash = hash(plate);
+        Segment segment = segmentFor(hash);
+        segment.lock.lock();
+        try {
+            int slot = segment.find(plate, hash);
+            if (slot == -1 || segment.values[slot] == ABSENT || segment.values[slot] == RESERVED) {
+                return ABSENT;
+            }
+            long location = segment.values[slot];
+            segment.values[slot] = RESERVED;
+            return location;
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+    
+    /**
+     * Ends a reservation or a take, leaving the plate absent, and returns the
+     * time the plate was reserved with.
+     */
+    public long release(String plate) {
+        int hash = hash(plate);
+        Segment segment = segmentFor(hash);
+        segment.lock.lock();
+        try {
+            int slot = segment.find(plate, hash);
+            if (slot == -1 || segment.values[slot] == ABSENT) {
+                return 0;
+            }
+            segment.values[slot] = ABSENT;
+            segment.live--;
+            return segment.times[slot];
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+    
+    /**
+     * Plates currently parked or reserved, summed segment by segment.
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            segment.lock.lock();
+            try {
+                size += segment.live;
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return size;
+    }
+    
+    private static int tableSize(int slots) {
+        return Math.max(MIN_CAPACITY, Integer.highestOneBit(Math.max(1, slots - 1)) << 1);
+    }
+    
+    // Fibonacci hashing spreads String.hashCode's low-entropy bits; the top bits pick the segment
+    private static int hash(String plate) {
+        return plate.hashCode() * 0x9E3779B9;
+    }
+    
+    private Segment segmentFor(int hash) {
+        return segments[hash >>> (32 - SEGMENT_BITS)];
+    }
+    
+    private static final class Segment {
+        final ReentrantLock lock = new ReentrantLock();
+        String[] keys;
+        long[] values;
+        long[] times;
+        // Slots holding a plate, including departed ones
+        int used;
+        // Slots holding a parked or reserved plate
+        int live;
+        
+        Segment(int capacity) {
+            keys = new String[capacity];
+            values = new long[capacity];
+            times = new long[capacity];
+        }
+        
+        int find(String plate, int hash) {
+            int mask = keys.length - 1;
+            for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+                String key = keys[slot];
+                if (key == null) {
+                    return -1;
+                }
+                if (key.equals(plate)) {
+                    return slot;
+                }
+            }
+        }
+        
+        int findOrInsert(String plate, int hash) {
+            int slot = find(plate, hash);
+            if (slot != -1) {
+                return slot;
+            }
+            if ((used + 1) * 4 > keys.length * 3) {
+                rebuild();
+            }
+            int mask = keys.length - 1;
+            for (slot = hash & mask; keys[slot] != null; slot = (slot + 1) & mask) {
+            }
+            keys[slot] = plate;
+            used++;
+            return slot;
+        }
+        
+        // Drops departed plates and sizes the table to twice the live ones
+        private void rebuild() {
+            int capacity = tableSize((live + 1) * 2);
+            String[] oldKeys = keys;
+            long[] oldValues = values;
+            long[] oldTimes = times;
+            keys = new String[capacity];
+            values = new long[capacity];
+            times = new long[capacity];
+            used = 0;
+            int mask = capacity - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] == null || oldValues[i] == ABSENT) {
+                    continue;
+                }
+                int slot = hash(oldKeys[i]) & mask;
+                while (keys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+                times[slot] = oldTimes[i];
+                used++;
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,52 @@
+import java.util.*;
+
+public class PlateTableTest {
+    public static void main(String[] args) {
+        PlateTable table = new PlateTable();
+        Map<String, Long> model = new HashMap<>();
+        Random random = new Random(3);
+        // Plates churn through a pool far larger than what is parked, forcing rebuilds that drop departed plates
+        for (int step = 0; step < 1_000_000; step++) {
+            String plate = "Car_" + random.nextInt(step < 500_000 ? 200_000 : 2_000);
+            long location = SpotLocation.pack(random.nextInt(8), random.nextInt(1000), 1, 1);
+            Long current = model.get(plate);
+            if (current == null) {
+                check(table.get(plate) == PlateTable.ABSENT, "absent plate has a location");
+                check(table.take(plate) == PlateTable.ABSENT, "absent plate can be taken");
+                check(table.reserve(plate), "absent plate cannot be reserved");
+                check(!table.reserve(plate), "plate reserved twice");
+                check(table.get(plate) == PlateTable.RESERVED, "reserved plate is not reserved");
+                if (random.nextInt(4) == 0) {
+                    table.release(plate);
+                } else {
+                    table.put(plate, location);
+                    model.put(plate, location);
+                }
+            } else {
+                check(table.get(plate) == current, "wrong location for " + plate);
+                check(table.take(plate) == current, "take returned the wrong location");
+                check(table.take(plate) == PlateTable.ABSENT, "plate taken twice");
+                check(!table.reserve(plate), "taken plate reserved");
+                table.release(plate);
+                model.remove(plate);
+            }
+            if (step % 100_000 == 0) {
+                check(table.size() == model.size(), "size disagrees with the model");
+            }
+        }
+        for (Map.Entry<String, Long> entry : model.entrySet()) {
+            check(table.get(entry.getKey()) == entry.getValue(), "lost " + entry.getKey());
+        }
+        check(table.size() == model.size(), "size disagrees with the model");
+        
+        System.out.println("=== Plate Table Test ===");
+        System.out.println("Plates parked at the end: " + model.size());
+        System.out.println("PASSED");
+    }
+    
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+}
\ No newline at end of file
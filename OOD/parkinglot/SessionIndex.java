@@ -0,0 +1,191 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Parked plates grouped into fixed-width buckets by entry time, so "who entered
+ * before t" walks only the buckets before t and never the whole lot. The bucket
+ * of the current minute is cached, so a park appends to an array under one
+ * uncontended monitor, and it is kept even while empty so a quiet lot does not
+ * create and drop a bucket for every visit.
+ *
+ * An unpark only decrements its bucket's live count; the plate stays in the
+ * array until the bucket is compacted or empties out, and readers check every
+ * entry against the PlateTable, which stamps a plate with its entry time when
+ * the plate is reserved. A session must be added before its plate becomes
+ * visible in the table and removed only once the plate has been taken.
+ */
+class SessionIndex {
+    static final long DEFAULT_BUCKET_MILLIS = 60_000;
+    private static final int MIN_COMPACT = 64;
+    
+    interface Visitor {
+        void visit(String licensePlate, long location, long entryMillis);
+    }
+    
+    private final PlateTable table;
+    private final long bucketMillis;
+    private final ConcurrentSkipListMap<Long, Bucket> buckets = new ConcurrentSkipListMap<>();
+    private volatile Bucket current;
+    
+    SessionIndex(PlateTable table) {
+        this(table, DEFAULT_BUCKET_MILLIS);
+    }
+    
+    SessionIndex(PlateTable table, long bucketMillis) {
+        if (bucketMillis <= 0) {
+            throw new IllegalArgumentException("Bucket width must be positive");
+        }
+        this.table = table;
+        this.bucketMillis = bucketMillis;
+    }
+    
+    void add(String licensePlate, long entryMillis) {
+        long key = Math.floorDiv(entryMillis, bucketMillis);
+        Bucket cached = current;
+        if (cached != null && cached.key == key && cached.add(licensePlate, entryMillis)) {
+            return;
+        }
+        while (true) {
+            Bucket bucket = buckets.compute(key, (k, b) -> b == null || b.retired ? new Bucket(k) : b);
+            if (bucket.add(licensePlate, entryMillis)) {
+                // Only move the cache forward, so a late park cannot evict the busy bucket
+                if (cached == null || key >= cached.key) {
+                    current = bucket;
+                    if (cached != null && cached != bucket && cached.retireIfEmpty()) {
+                        buckets.remove(cached.key, cached);
+                    }
+                }
+                return;
+            }
+        }
+    }
+    
+    void remove(long entryMillis) {
+        long key = Math.floorDiv(entryMillis, bucketMillis);
+        // Most stays are short, so the session is usually in the cached bucket
+        Bucket cached = current;
+        Bucket bucket = cached != null && cached.key == key && !cached.retired ? cached : buckets.get(key);
+        if (bucket != null && bucket.leave()) {
+            buckets.remove(key, bucket);
+        }
+    }
+    
+    /**
+     * Visits every parked plate whose entry time is in [fromMillis, toMillis),
+     * oldest bucket first.
+     */
+    void forEach(long fromMillis, long toMillis, Visitor visitor) {
+        if (fromMillis >= toMillis) {
+            return;
+        }
+        long fromKey = Math.floorDiv(fromMillis, bucketMillis);
+        long toKey = Math.floorDiv(toMillis - 1, bucketMillis);
+        for (Bucket bucket : buckets.subMap(fromKey, true, toKey, true).values()) {
+            bucket.forEach(fromMillis, toMillis, visitor);
+        }
+    }
+    
+    int bucketCount() {
+        return buckets.size();
+    }
+    
+    private final class Bucket {
+        final long key;
+        String[] plates = new String[16];
+        long[] times = new long[16];
+        int size;
+        // Sessions added and not yet removed; size - live entries are stale
+        int live;
+        // Set when live drops to zero; a retired bucket takes no more entries
+        volatile boolean retired;
+        
+        Bucket(long key) {
+            this.key = key;
+        }
+        
+        synchronized boolean add(String licensePlate, long entryMillis) {
+            if (retired) {
+                return false;
+            }
+            if (size == plates.length) {
+                plates = Arrays.copyOf(plates, size * 2);
+                times = Arrays.copyOf(times, size * 2);
+            }
+            plates[size] = licensePlate;
+            times[size] = entryMillis;
+            size++;
+            live++;
+            return true;
+        }
+        
+        // Returns true when the bucket is now empty and retired
+        synchronized boolean leave() {
+            live--;
+            if (live == 0 && this != current) {
+                return retireIfEmpty();
+            }
+            // Amortized: at least half the entries are stale, so each leave pays O(1)
+            if (size >= MIN_COMPACT && size > 2 * live) {
+                compact();
+            }
+            return false;
+        }
+        
+        synchronized boolean retireIfEmpty() {
+            if (retired || live > 0) {
+                return false;
+            }
+            retired = true;
+            plates = null;
+            times = null;
+            return true;
+        }
+        
+        synchronized void forEach(long fromMillis, long toMillis, Visitor visitor) {
+            if (retired) {
+                return;
+            }
+            if (size > live) {
+                compact();
+            }
+            for (int i = 0; i < size; i++) {
+                long time = times[i];
+                if (time >= fromMillis && time < toMillis) {
+                    long location = table.locationAt(plates[i], time);
+                    // Skip plates still being parked or already being unparked
+                    if (location != PlateTable.ABSENT && location != PlateTable.RESERVED) {
+                        visitor.visit(plates[i], location, time);
+                    }
+                }
+            }
+        }
+        
+        // Drops entries whose plate has left; a plate that left and came back in the
+        // same millisecond matches twice, which only happens while more entries
+        // match than there are live sessions
+        private void compact() {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (table.locationAt(plates[i], times[i]) != PlateTable.ABSENT) {
+                    plates[kept] = plates[i];
+                    times[kept] = times[i];
+                    kept++;
+                }
+            }
+            if (kept > live) {
+                Set<String> seen = new HashSet<>();
+                int unique = 0;
+                for (int i = 0; i < kept; i++) {
+                    if (seen.add(plates[i])) {
+                        plates[unique] = plates[i];
+                        times[unique] = times[i];
+                        unique++;
+                    }
+                }
+                kept = unique;
+            }
+            Arrays.fill(plates, kept, size, null);
+            size = kept;
+        }
+    }
+}
\ No newline at end of file
@@ -1,53 +1,69 @@
+/**
+ * Lightweight view of one spot; the state itself lives in the owning Level's arrays.
+ */
 public class Spot {
-    private int level;
-    private int row;
-    private int spotNumber;
-    private SpotType spotType;
-    private Vehicle vehicle;
+    private final Level level;
+    private final int id;
     
-    public Spot(int level, int row, int spotNumber, SpotType spotType) {
+    public Spot(Level level, int id) {
         this.level = level;
-        this.row = row;
-        this.spotNumber = spotNumber;
-        this.spotType = spotType;
-        this.vehicle = null;
+        this.id = id;
     }
     
     public boolean isAvailable() {
-        return vehicle == null;
+        return level.getVehicle(id) == null;
     }
     
     public boolean parkVehicle(Vehicle v) {
-        if (!isAvailable()) {
-            return false;
-        }
-        this.vehicle = v;
-        return true;
+        return level.occupy(id, v);
     }
     
     public Vehicle unparkVehicle() {
-        Vehicle v = this.vehicle;
-        this.vehicle = null;
-        return v;
+        return level.release(id);
+    }
+    
+    /**
+     * Frees the spot only if it still holds the given vehicle.
+     */
+    public boolean unparkVehicle(Vehicle v) {
+        return level.release(id, v);
+    }
+    
+    public int getId() {
+        return id;
     }
     
     public int getLevel() {
-        return level;
+        return level.getLevelNumber();
     }
     
     public int getRow() {
-        return row;
+        return id / level.getSpotsPerRow();
     }
     
     public int getSpotNumber() {
-        return spotNumber;
+        return id % level.getSpotsPerRow();
     }
     
     public SpotType getSpotType() {
-        return spotType;
+        return level.getSpotType(id);
     }
     
     public Vehicle getVehicle() {
-        return vehicle;
+        return level.getVehicle(id);
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof Spot)) {
+            return false;
+        }
+        Spot other = (Spot) o;
+        return level == other.level && id == other.id;
+    }
+    
+    @Override
+    public int hashCode() {
+        return 31 * level.getLevelNumber() + id;
     }
 }
\ No newline at end of file
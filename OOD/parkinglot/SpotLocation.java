@@ -0,0 +1,32 @@
+/**
+ * Packs where a vehicle is parked into one long: level (16 bits), first spot id on
+ * the level (32 bits), vehicle type id (8 bits) and spot count (8 bits). A real
+ * location is always positive, since the count is at least one and levels stop
+ * below 32768, which leaves zero and the negatives free for sentinels.
+ */
+final class SpotLocation {
+    static final int MAX_LEVELS = Short.MAX_VALUE;
+    
+    private SpotLocation() {
+    }
+    
+    static long pack(int level, int start, int typeId, int length) {
+        return ((long) level << 48) | ((long) start << 16) | (typeId << 8) | length;
+    }
+    
+    static int level(long location) {
+        return (int) (location >>> 48);
+    }
+    
+    static int start(long location) {
+        return (int) (location >>> 16);
+    }
+    
+    static int typeId(long location) {
+        return (int) (location >>> 8) & 0xff;
+    }
+    
+    static int length(long location) {
+        return (int) (location & 0xff);
+    }
+}
\ No newline at end of file
@@ -1,20 +1,33 @@
-public abstract class Vehicle {
+public class Vehicle {
     protected String licensePlate;
-    protected VehicleSize size;
+    protected VehicleType type;
     
-    public Vehicle(String licensePlate, VehicleSize size) {
+    public Vehicle(String licensePlate, VehicleType type) {
         this.licensePlate = licensePlate;
-        this.size = size;
+        this.type = type;
     }
     
     public String getLicensePlate() {
         return licensePlate;
     }
     
+    public VehicleType getType() {
+        return type;
+    }
+    
     public VehicleSize getSize() {
-        return size;
+        return type.getSize();
+    }
+    
+    public int getSpotsNeeded() {
+        return type.getSpotsNeeded();
     }
     
-    public abstract int getSpotsNeeded();
-    public abstract boolean canFitInSpot(Spot spot);
+    public boolean canFitInSpotType(SpotType spotType) {
+        return type.canFitInSpotType(spotType);
+    }
+    
+    public boolean canFitInSpot(Spot spot) {
+        return canFitInSpotType(spot.getSpotType());
+    }
 }
\ No newline at end of file
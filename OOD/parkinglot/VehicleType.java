@@ -0,0 +1,61 @@
+/**
+ * How one kind of vehicle parks: how many adjacent spots it takes and which spot
+ * types it fits. Types are plain data, so a new kind of vehicle is registered with
+ * a VehicleTypeRegistry instead of being written as a Vehicle subclass.
+ */
+public final class VehicleType {
+    public static final VehicleType MOTORCYCLE = new VehicleType(0, "Motorcycle", VehicleSize.MOTORCYCLE, 1,
+            mask(SpotType.MOTORCYCLE, SpotType.COMPACT, SpotType.LARGE));
+    public static final VehicleType CAR = new VehicleType(1, "Car", VehicleSize.CAR, 1,
+            mask(SpotType.COMPACT, SpotType.LARGE));
+    public static final VehicleType BUS = new VehicleType(2, "Bus", VehicleSize.BUS, 5,
+            mask(SpotType.LARGE));
+    
+    private final int id;
+    private final String name;
+    private final VehicleSize size;
+    private final int spotsNeeded;
+    // One bit per SpotType ordinal the vehicle fits in
+    private final int spotTypeMask;
+    
+    VehicleType(int id, String name, VehicleSize size, int spotsNeeded, int spotTypeMask) {
+        this.id = id;
+        this.name = name;
+        this.size = size;
+        this.spotsNeeded = spotsNeeded;
+        this.spotTypeMask = spotTypeMask;
+    }
+    
+    static int mask(SpotType... spotTypes) {
+        int mask = 0;
+        for (SpotType spotType : spotTypes) {
+            mask |= 1 << spotType.ordinal();
+        }
+        return mask;
+    }
+    
+    public int getId() {
+        return id;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public VehicleSize getSize() {
+        return size;
+    }
+    
+    public int getSpotsNeeded() {
+        return spotsNeeded;
+    }
+    
+    public boolean canFitInSpotType(SpotType spotType) {
+        return (spotTypeMask & (1 << spotType.ordinal())) != 0;
+    }
+    
+    @Override
+    public String toString() {
+        return name;
+    }
+}
\ No newline at end of file
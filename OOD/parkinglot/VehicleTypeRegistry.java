@@ -0,0 +1,155 @@
+import java.util.Arrays;
+
+/**
+ * Resolves license plates to vehicle types by plate prefix. Prefixes are bucketed
+ * by their first character, so a plate is classified by one table lookup and
+ * usually a single startsWith, without allocating; when prefixes overlap the
+ * longest one wins.
+ *
+ * Registration is rare and copy-on-write; lookups read immutable snapshots and
+ * never lock.
+ */
+public class VehicleTypeRegistry {
+    // Type ids and spot counts are journaled in one byte each
+    private static final int MAX_TYPES = 256;
+    private static final int MAX_SPOTS_NEEDED = 255;
+    private static final int BUCKETS = 128;
+    
+    private volatile VehicleType[] types = new VehicleType[0];
+    // Prefixes by first character (masked to the table size), longest first within a bucket
+    private volatile Prefix[][] buckets = new Prefix[BUCKETS][];
+    
+    /**
+     * Returns a registry holding the built-in motorcycle, car and bus types under
+     * their "Motorcycle_", "Car_" and "Bus_" plate prefixes.
+     */
+    public static VehicleTypeRegistry withDefaults() {
+        VehicleTypeRegistry registry = new VehicleTypeRegistry();
+        registry.add(VehicleType.MOTORCYCLE, "Motorcycle_");
+        registry.add(VehicleType.CAR, "Car_");
+        registry.add(VehicleType.BUS, "Bus_");
+        return registry;
+    }
+    
+    /**
+     * Registers a new vehicle type for plates starting with platePrefix and returns
+     * it. A vehicle taking more than one spot must fit LARGE spots only, since those
+     * are the only spots tracked as runs.
+     */
+    public synchronized VehicleType register(String name, String platePrefix, VehicleSize size, int spotsNeeded,
+            SpotType... fits) {
+        if (spotsNeeded < 1 || spotsNeeded > MAX_SPOTS_NEEDED) {
+            throw new IllegalArgumentException("A vehicle needs between 1 and " + MAX_SPOTS_NEEDED + " spots");
+        }
+        if (fits.length == 0) {
+            throw new IllegalArgumentException("A vehicle must fit at least one spot type");
+        }
+        int mask = VehicleType.mask(fits);
+        if (spotsNeeded > 1 && mask != VehicleType.mask(SpotType.LARGE)) {
+            throw new IllegalArgumentException("Vehicles taking several spots can only use LARGE spots");
+        }
+        for (VehicleType type : types) {
+            if (type.getName().equals(name)) {
+                throw new IllegalArgumentException("Vehicle type " + name + " is already registered");
+            }
+        }
+        VehicleType type = new VehicleType(types.length, name, size, spotsNeeded, mask);
+        add(type, platePrefix);
+        return type;
+    }
+    
+    private synchronized void add(VehicleType type, String platePrefix) {
+        if (platePrefix.isEmpty()) {
+            throw new IllegalArgumentException("Plate prefix must not be empty");
+        }
+        if (type.getId() != types.length || types.length == MAX_TYPES) {
+            throw new IllegalArgumentException("Cannot register " + type + " as type " + type.getId());
+        }
+        int index = platePrefix.charAt(0) & (BUCKETS - 1);
+        Prefix[] bucket = buckets[index] == null ? new Prefix[0] : buckets[index];
+        for (Prefix prefix : bucket) {
+            if (prefix.prefix.equals(platePrefix)) {
+                throw new IllegalArgumentException("Plate prefix " + platePrefix + " already belongs to " + prefix.type);
+            }
+        }
+        Prefix[] grownBucket = Arrays.copyOf(bucket, bucket.length + 1);
+        grownBucket[bucket.length] = new Prefix(platePrefix, type);
+        Arrays.sort(grownBucket, (a, b) -> b.prefix.length() - a.prefix.length());
+        Prefix[][] grownBuckets = buckets.clone();
+        grownBuckets[index] = grownBucket;
+        
+        VehicleType[] grown = Arrays.copyOf(types, types.length + 1);
+        grown[type.getId()] = type;
+        types = grown;
+        buckets = grownBuckets;
+    }
+    
+    /**
+     * Returns the type whose plate prefix is the longest one the plate starts
+     * with, or null when no prefix matches.
+     */
+    public VehicleType resolve(CharSequence licensePlate) {
+        if (licensePlate.length() == 0) {
+            return null;
+        }
+        Prefix[] bucket = buckets[licensePlate.charAt(0) & (BUCKETS - 1)];
+        if (bucket == null) {
+            return null;
+        }
+        for (Prefix prefix : bucket) {
+            if (startsWith(licensePlate, prefix.prefix)) {
+                return prefix.type;
+            }
+        }
+        return null;
+    }
+    
+    private static boolean startsWith(CharSequence licensePlate, String prefix) {
+        if (licensePlate instanceof String) {
+            return ((String) licensePlate).startsWith(prefix);
+        }
+        if (licensePlate.length() < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (licensePlate.charAt(i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Returns the type with the given id, or null when no such type is registered.
+     */
+    public VehicleType get(int id) {
+        VehicleType[] current = types;
+        return id >= 0 && id < current.length ? current[id] : null;
+    }
+    
+    /**
+     * Returns the first registered type of the given size, or null when there is none.
+     */
+    public VehicleType get(VehicleSize size) {
+        for (VehicleType type : types) {
+            if (type.getSize() == size) {
+                return type;
+            }
+        }
+        return null;
+    }
+    
+    public int size() {
+        return types.length;
+    }
+    
+    private static final class Prefix {
+        final String prefix;
+        final VehicleType type;
+        
+        Prefix(String prefix, VehicleType type) {
+            this.prefix = prefix;
+            this.type = type;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,124 @@
+import java.nio.file.*;
+import java.util.*;
+
+public class VehicleTypeRegistryTest {
+    public static void main(String[] args) throws Exception {
+        verifyResolve();
+        verifyRegistration();
+        verifyRegisteredTypeParksAndRecovers();
+        verifyForeignTypeRejected();
+        
+        System.out.println("=== Vehicle Type Registry Test ===");
+        System.out.println("PASSED");
+    }
+    
+    private static void verifyResolve() {
+        VehicleTypeRegistry registry = VehicleTypeRegistry.withDefaults();
+        check(registry.resolve("Motorcycle_1") == VehicleType.MOTORCYCLE, "motorcycle plate");
+        check(registry.resolve("Car_1") == VehicleType.CAR, "car plate");
+        check(registry.resolve("Bus_1") == VehicleType.BUS, "bus plate");
+        check(registry.resolve("Car_") == VehicleType.CAR, "bare prefix");
+        check(registry.resolve("Car") == null, "partial prefix");
+        check(registry.resolve("Truck_1") == null, "unknown prefix");
+        check(registry.resolve("") == null, "empty plate");
+        check(registry.get(2) == VehicleType.BUS && registry.get(3) == null, "lookup by id");
+        check(registry.get(VehicleSize.CAR) == VehicleType.CAR, "lookup by size");
+    }
+    
+    private static void verifyRegistration() {
+        VehicleTypeRegistry registry = VehicleTypeRegistry.withDefaults();
+        VehicleType electric = registry.register("ElectricCar", "Car_EV_", VehicleSize.CAR, 1, SpotType.LARGE);
+        check(electric.getId() == 3, "new types get the next id");
+        check(registry.resolve("Car_EV_7") == electric, "longest prefix wins");
+        check(registry.resolve("Car_E") == VehicleType.CAR, "shorter prefix still matches");
+        check(!electric.canFitInSpotType(SpotType.COMPACT) && electric.canFitInSpotType(SpotType.LARGE),
+                "fit rules come from registration");
+        
+        expectRejected(() -> registry.register("Truck", "Car_", VehicleSize.BUS, 1, SpotType.LARGE), "taken prefix");
+        expectRejected(() -> registry.register("Car", "Auto_", VehicleSize.CAR, 1, SpotType.LARGE), "taken name");
+        expectRejected(() -> registry.register("Trailer", "Trailer_", VehicleSize.BUS, 3, SpotType.COMPACT),
+                "multi-spot vehicle outside LARGE spots");
+        expectRejected(() -> registry.register("Ghost", "Ghost_", VehicleSize.CAR, 1), "no spot types");
+    }
+    
+    private static void verifyRegisteredTypeParksAndRecovers() throws Exception {
+        Path directory = Files.createTempDirectory("vehicle-types");
+        try {
+            ParkingLot lot = newLot();
+            try (ParkingJournal journal = new ParkingJournal(directory, Durability.SYNC)) {
+                journal.recover(lot);
+                check(lot.parkVehicle("Truck_1"), "registered truck parks");
+                check(lot.getParkedSpots("Truck_1").size() == 3, "truck takes three spots");
+                check(lot.parkVehicle("VIP", VehicleSize.CAR), "explicit size skips classification");
+                check(!lot.parkVehicle("VIP2", null, 0), "missing type is rejected");
+                check(!lot.parkVehicle("Scooter_1"), "unregistered plate is rejected");
+            }
+            
+            ParkingLot recovered = newLot();
+            try (ParkingJournal journal = new ParkingJournal(directory, Durability.SYNC)) {
+                journal.recover(recovered);
+            }
+            check(locations(recovered, "Truck_1").equals(locations(lot, "Truck_1")), "truck recovered in place");
+            check(recovered.getParkedSpots("Truck_1").get(0).getVehicle().getType().getName().equals("Truck"),
+                    "truck recovered with its type");
+            check(recovered.getParkedSpots("VIP").get(0).getVehicle().getType() == VehicleType.CAR,
+                    "explicitly typed plate recovered with its type");
+        } finally {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+                for (Path file : files) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(directory);
+        }
+    }
+    
+    // A type from another registry may share an id with one of the lot's, or have none there
+    private static void verifyForeignTypeRejected() {
+        ParkingLot lot = newLot();
+        VehicleTypeRegistry other = VehicleTypeRegistry.withDefaults();
+        VehicleType van = other.register("Van", "Van_", VehicleSize.CAR, 1, SpotType.COMPACT);
+        VehicleType trailer = other.register("Trailer", "Trailer_", VehicleSize.BUS, 2, SpotType.LARGE);
+        String before = lot.getAvailability().toString();
+        for (VehicleType foreign : Arrays.asList(van, trailer)) {
+            try {
+                lot.parkVehicle("Foreign_1", foreign, 0);
+                throw new IllegalStateException(foreign.getName() + " from another registry was parked");
+            } catch (IllegalArgumentException expected) {
+                // Its id means nothing, or something else, to this lot
+            }
+        }
+        check(lot.getAvailability().toString().equals(before), "a foreign type changed availability");
+        check(lot.parkVehicle("Foreign_1", lot.getVehicleTypes().get(3), 0), "the lot's own type was refused");
+        check(lot.parkVehicle("Shared_1", VehicleType.CAR, 0), "a built-in type was refused");
+    }
+    
+    private static List<String> locations(ParkingLot lot, String plate) {
+        List<String> locations = new ArrayList<>();
+        for (Spot spot : lot.getParkedSpots(plate)) {
+            locations.add(spot.getLevel() + "/" + spot.getRow() + "/" + spot.getSpotNumber());
+        }
+        return locations;
+    }
+    
+    private static ParkingLot newLot() {
+        ParkingLot lot = new ParkingLot(1, 2, 20);
+        lot.getVehicleTypes().register("Truck", "Truck_", VehicleSize.BUS, 3, SpotType.LARGE);
+        return lot;
+    }
+    
+    private static void expectRejected(Runnable registration, String message) {
+        try {
+            registration.run();
+        } catch (IllegalArgumentException e) {
+            return;
+        }
+        throw new IllegalStateException("registration should fail: " + message);
+    }
+    
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+}
\ No newline at end of file
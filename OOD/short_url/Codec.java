@@ -1,95 +1,599 @@
-import java.util.concurrent.ConcurrentHashMap;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
-public class Codec {
+public class Codec implements AutoCloseable {
 
-    // Storage
-    private final ConcurrentHashMap<Long, String> idToLong = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<String, Long> longToId = new ConcurrentHashMap<>();
+    // Storage: long URL -> id and id -> long URL
+    private final UrlStore store;
+    // Hot long URLs by id, or null to always ask the store
+    private final DecodeCache cache;
+    // Every id issued, approximately, or null to look up any well-formed token
+    private final IdBloomFilter filter;
+    // Whether long URLs go through UrlCanonicalizer before dedup
+    private final boolean canonicalize;
 
-    private final AtomicLong counter;
+    // The allocator, which also adds every id it issues to the filter
+    private final IdAllocator ids;
+    private final LongSupplier nextId;
+    // Mappings encoded with a TTL by when they go, and the thread that sweeps them;
+    // both made by the first such encode
+    private volatile ExpiryWheel expiry;
+    private ScheduledExecutorService sweeper;
+    // What TTLs count from and the sweeper reads
+    private volatile Clock clock = Clock.systemUTC();
 
     private static final String BASE62 = "0123456789abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ";
     private static final int BASE = BASE62.length();
     private static final String DEFAULT_BASE_URL = "http://tinyurl.com/";
+    private static final char[] DIGITS = BASE62.toCharArray();
+    private static final char[] BASE_URL_CHARS = DEFAULT_BASE_URL.toCharArray();
+    private static final byte[] BASE_URL_BYTES = new byte[BASE_URL_CHARS.length];
+    // Char -> digit value, -1 for anything that is not a Base62 digit
+    private static final byte[] DIGIT_VALUES = new byte[128];
+    // 62^10 < 2^63 < 62^11, so no id needs more than 11 digits
+    static final int MAX_TOKEN_LENGTH = 11;
+    // URLs per bulk claim and bulk insert
+    static final int BATCH_SIZE = 16_384;
+    // File imports read this much at a time, cut back to the last whole line
+    static final int IMPORT_CHUNK_BYTES = 1 << 22;
+    // Mappings expire to within a tick; the wheel turns once in about 68 minutes
+    static final long EXPIRY_TICK_MILLIS = 1_000;
+    static final int EXPIRY_BUCKETS = 4096;
+
+    static {
+        Arrays.fill(DIGIT_VALUES, (byte) -1);
+        for (int i = 0; i < BASE; i++) {
+            DIGIT_VALUES[DIGITS[i]] = (byte) i;
+        }
+        for (int i = 0; i < BASE_URL_CHARS.length; i++) {
+            BASE_URL_BYTES[i] = (byte) BASE_URL_CHARS[i];
+        }
+    }
 
     public Codec() {
-        counter = new AtomicLong(1L);
+        this(new InMemoryUrlStore());
+    }
+
+    // Keeps the mappings in the given store, e.g. a MappedUrlStore to hold them off the
+    // heap and across restarts; numbering resumes where the store left off
+    public Codec(UrlStore store) {
+        this(store, null);
+    }
+
+    // Serves decodes of the most read short URLs from the cache, so skewed redirect
+    // traffic rarely reaches the store. Pays off in front of a MappedUrlStore; the
+    // heap store's get is already a single array read.
+    public Codec(UrlStore store, DecodeCache cache) {
+        this(store, cache, new Counter(store.firstUnusedId()));
+    }
+
+    // Takes ids from the allocator instead of a counter of its own, e.g. a
+    // LeasedIdAllocator shared with other Codecs so none of them issues a short URL
+    // another one did
+    public Codec(UrlStore store, DecodeCache cache, IdAllocator ids) {
+        this(store, cache, ids, null);
+    }
+
+    // Turns away tokens whose ids the filter never saw before they reach the cache or
+    // the store. Worth it when ids are sparse, leased or Snowflake; with the default
+    // counter the stores already reject ids past the last one issued. The filter is
+    // filled with the store's ids here, and with each new id before it is stored.
+    public Codec(UrlStore store, DecodeCache cache, IdAllocator ids, IdBloomFilter filter) {
+        this(store, cache, ids, filter, false);
+    }
+
+    // Canonicalizes each long URL before it is looked up or stored, so spellings that
+    // differ only in case, default port, trailing slash or parameter order share a
+    // short URL; decode then gives the canonical spelling. filter may be null.
+    public Codec(UrlStore store, DecodeCache cache, IdAllocator ids, IdBloomFilter filter, boolean canonicalize) {
+        this.store = store;
+        this.cache = cache;
+        this.filter = filter;
+        this.canonicalize = canonicalize;
+        if (filter == null) {
+            this.ids = ids;
+        } else {
+            store.forEachId(filter::add);
+            this.ids = new IdAllocator() {
+                @Override
+                public long nextId() {
+                    long id = ids.nextId();
+                    filter.add(id);
+                    return id;
+                }
+
+                @Override
+                public void nextIds(long[] batch, int from, int to) {
+                    ids.nextIds(batch, from, to);
+                    for (int i = from; i < to; i++) {
+                        filter.add(batch[i]);
+                    }
+                }
+            };
+        }
+        nextId = this.ids::nextId;
+    }
+
+    // Sets the clock TTLs count from and the sweeper checks them against; tests pass
+    // a fixed or offset clock. Set it before the first encode with a TTL.
+    public void setClock(Clock clock) {
+        this.clock = Objects.requireNonNull(clock);
     }
 
     public String encode(String longUrl) {
         // Encodes a URL to a shortened URL.
-        if (longUrl == null || longUrl.isEmpty()) {
-            throw new IllegalArgumentException("longUrl must be non-empty");
+        return shortUrl(idFor(longUrl));
+    }
+
+    // Encodes a URL whose mapping goes after ttlMillis: its short URL then decodes as
+    // unknown, and the long URL gets a new short URL if encoded again. Its id is never
+    // issued again. A URL that is already mapped keeps its short URL and its expiry.
+    // Needs a store that supports removal, such as InMemoryUrlStore.
+    public String encode(String longUrl, long ttlMillis) {
+        if (ttlMillis < 1) {
+            throw new IllegalArgumentException("ttlMillis must be positive");
         }
-        // Reuse existing mapping if present
-        Long existing = longToId.get(longUrl);
-        if (existing != null) {
-            return DEFAULT_BASE_URL + toBase62(existing);
+        if (!store.supportsRemoval()) {
+            throw new IllegalStateException(store.getClass().getSimpleName()
+                    + " cannot remove mappings, so it cannot take URLs with a TTL");
         }
+        ExpiryWheel wheel = expiry();
+        longUrl = key(longUrl);
+        long id = store.find(longUrl);
+        if (id == UrlStore.NONE) {
+            long[] created = {UrlStore.NONE};
+            id = store.putIfAbsent(longUrl, () -> created[0] = nextId.getAsLong());
+            if (id == created[0]) {
+                wheel.schedule(id, clock.millis() + ttlMillis);
+            }
+        }
+        return shortUrl(id);
+    }
 
-        // Create new mapping atomically for concurrent callers of the same URL
-        long id = longToId.computeIfAbsent(longUrl, k -> {
-            long newId = counter.getAndIncrement();
-            idToLong.put(newId, k);
-            return newId;
+    private ExpiryWheel expiry() {
+        ExpiryWheel wheel = expiry;
+        if (wheel != null) {
+            return wheel;
+        }
+        synchronized (this) {
+            if (expiry == null) {
+                sweeper = Executors.newSingleThreadScheduledExecutor(task -> {
+                    Thread thread = new Thread(task, "url-expiry");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                expiry = new ExpiryWheel(EXPIRY_TICK_MILLIS, EXPIRY_BUCKETS, clock.millis());
+                sweeper.scheduleWithFixedDelay(() -> sweep(clock.millis()), EXPIRY_TICK_MILLIS,
+                        EXPIRY_TICK_MILLIS, TimeUnit.MILLISECONDS);
+            }
+            return expiry;
+        }
+    }
+
+    // Removes the mappings due by nowMillis and returns how many; the sweeper calls
+    // this every tick
+    synchronized int sweep(long nowMillis) {
+        ExpiryWheel wheel = expiry;
+        if (wheel == null) {
+            return 0;
+        }
+        return wheel.advance(nowMillis, id -> {
+            store.remove(id);
+            if (cache != null) {
+                cache.invalidate(id);
+            }
+        });
+    }
+
+    // Encodes every URL, in parallel batches, and returns the short URLs in the order
+    // of the long ones. A batch looks each distinct URL up once, claims the ids of
+    // the new ones in one go and hands them to the store as one bulk insert.
+    public List<String> encodeAll(Iterable<String> longUrls) {
+        String[] urls;
+        if (longUrls instanceof Collection) {
+            urls = ((Collection<String>) longUrls).toArray(new String[0]);
+        } else {
+            List<String> all = new ArrayList<>();
+            longUrls.forEach(all::add);
+            urls = all.toArray(new String[0]);
+        }
+        String[] shortUrls = new String[urls.length];
+        IntStream.range(0, (urls.length + BATCH_SIZE - 1) / BATCH_SIZE).parallel().forEach(batch -> {
+            int from = batch * BATCH_SIZE;
+            int to = Math.min(urls.length, from + BATCH_SIZE);
+            long[] batchIds = idsFor(urls, from, to);
+            for (int i = from; i < to; i++) {
+                shortUrls[i] = shortUrl(batchIds[i - from]);
+            }
         });
+        return Arrays.asList(shortUrls);
+    }
+
+    public List<String> encodeAll(Stream<String> longUrls) {
+        return encodeAll((Iterable<String>) longUrls::iterator);
+    }
+
+    // Encodes a file of long URLs, one per line in UTF-8, and writes their short URLs
+    // to shortUrls line for line, or nowhere if it is null; blank lines are skipped.
+    // Chunks of whole lines are encoded in parallel like encodeAll's batches and
+    // written out in order, with only a few chunks in memory at once. Returns how
+    // many URLs were read.
+    public long importFile(Path longUrls, Path shortUrls) throws IOException {
+        try (FileChannel in = FileChannel.open(longUrls, StandardOpenOption.READ);
+                FileChannel out = shortUrls == null ? null : FileChannel.open(shortUrls, StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            int window = Runtime.getRuntime().availableProcessors() * 2;
+            ArrayDeque<CompletableFuture<ImportedChunk>> inFlight = new ArrayDeque<>();
+            long size = in.size();
+            long position = 0;
+            long imported = 0;
+            while (position < size || !inFlight.isEmpty()) {
+                if (position < size && inFlight.size() < window) {
+                    byte[] chunk = new byte[(int) Math.min(IMPORT_CHUNK_BYTES, size - position)];
+                    ByteBuffer buffer = ByteBuffer.wrap(chunk);
+                    while (buffer.hasRemaining()) {
+                        if (in.read(buffer, position + buffer.position()) < 0) {
+                            throw new IOException(longUrls + " shrank while it was read");
+                        }
+                    }
+                    int end = chunk.length;
+                    if (position + end < size) {
+                        while (end > 0 && chunk[end - 1] != '\n') {
+                            end--;
+                        }
+                        if (end == 0) {
+                            throw new IllegalArgumentException("Line at byte " + position + " is longer than "
+                                    + IMPORT_CHUNK_BYTES + " bytes");
+                        }
+                    }
+                    position += end;
+                    int length = end;
+                    inFlight.add(CompletableFuture.supplyAsync(() -> importChunk(chunk, length)));
+                    continue;
+                }
+                ImportedChunk done;
+                try {
+                    done = inFlight.remove().join();
+                } catch (CompletionException e) {
+                    inFlight.forEach(chunk -> chunk.cancel(false));
+                    throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+                }
+                imported += done.urls;
+                if (out != null) {
+                    ByteBuffer buffer = ByteBuffer.wrap(done.shortUrls, 0, done.length);
+                    while (buffer.hasRemaining()) {
+                        out.write(buffer);
+                    }
+                }
+            }
+            return imported;
+        }
+    }
+
+    // Encodes the lines of chunk[0, length) in batches, into short URL lines
+    private ImportedChunk importChunk(byte[] chunk, int length) {
+        List<String> lines = new ArrayList<>();
+        int start = 0;
+        while (start < length) {
+            int end = start;
+            while (end < length && chunk[end] != '\n') {
+                end++;
+            }
+            int lineEnd = end > start && chunk[end - 1] == '\r' ? end - 1 : end;
+            if (lineEnd > start) {
+                lines.add(new String(chunk, start, lineEnd - start, StandardCharsets.UTF_8));
+            }
+            start = end + 1;
+        }
+        String[] urls = lines.toArray(new String[0]);
+        byte[] shortUrls = new byte[urls.length * (BASE_URL_BYTES.length + MAX_TOKEN_LENGTH + 1)];
+        int written = 0;
+        for (int from = 0; from < urls.length; from += BATCH_SIZE) {
+            int to = Math.min(urls.length, from + BATCH_SIZE);
+            for (long id : idsFor(urls, from, to)) {
+                System.arraycopy(BASE_URL_BYTES, 0, shortUrls, written, BASE_URL_BYTES.length);
+                written += BASE_URL_BYTES.length;
+                written += toBase62(id, shortUrls, written);
+                shortUrls[written++] = '\n';
+            }
+        }
+        return new ImportedChunk(urls.length, shortUrls, written);
+    }
 
-        return DEFAULT_BASE_URL + toBase62(id);
+    // The ids of longUrls[from, to), storing the new ones
+    private long[] idsFor(String[] longUrls, int from, int to) {
+        long[] batchIds = new long[to - from];
+        // Distinct URLs, and where each first appears
+        String[] distinct = new String[to - from];
+        int[] distinctAt = new int[to - from];
+        int count = 0;
+        // Open addressing over the batch, hash -> index into distinct + 1, so the
+        // dedupe boxes nothing
+        int[] firsts = new int[Integer.highestOneBit(Math.max(1, to - from)) << 2];
+        int mask = firsts.length - 1;
+        for (int i = from; i < to; i++) {
+            String longUrl = key(longUrls[i]);
+            int slot = (int) DecodeCache.spread(longUrl.hashCode()) & mask;
+            while (firsts[slot] != 0 && !distinct[firsts[slot] - 1].equals(longUrl)) {
+                slot = (slot + 1) & mask;
+            }
+            if (firsts[slot] != 0) {
+                // A repeat; ids are positive, so this marks where to copy one from
+                batchIds[i - from] = -(distinctAt[firsts[slot] - 1] + 1);
+            } else {
+                firsts[slot] = count + 1;
+                distinct[count] = longUrl;
+                distinctAt[count++] = i - from;
+            }
+        }
+        long[] distinctIds = new long[count];
+        store.putAllIfAbsent(distinct, distinctIds, count, ids);
+        for (int j = 0; j < count; j++) {
+            batchIds[distinctAt[j]] = distinctIds[j];
+        }
+        for (int i = 0; i < batchIds.length; i++) {
+            if (batchIds[i] < 0) {
+                batchIds[i] = batchIds[(int) (-1 - batchIds[i])];
+            }
+        }
+        return batchIds;
+    }
+
+    private static String shortUrl(long id) {
+        // Sized exactly, so the only copies are this array and the String made from it
+        byte[] shortUrl = new byte[BASE_URL_BYTES.length + base62Length(id)];
+        System.arraycopy(BASE_URL_BYTES, 0, shortUrl, 0, BASE_URL_BYTES.length);
+        toBase62(id, shortUrl, BASE_URL_BYTES.length);
+        return new String(shortUrl, StandardCharsets.ISO_8859_1);
+    }
+
+    // Writes the short URL into dst at offset and returns its length; allocates
+    // nothing when the URL is already known. dst needs room for
+    // maxShortUrlLength() chars.
+    public int encode(String longUrl, char[] dst, int offset) {
+        long id = idFor(longUrl);
+        System.arraycopy(BASE_URL_CHARS, 0, dst, offset, BASE_URL_CHARS.length);
+        return BASE_URL_CHARS.length + toBase62(id, dst, offset + BASE_URL_CHARS.length);
     }
 
+    // Same as encode into a char[], as ASCII bytes for writing straight to a socket
+    public int encode(String longUrl, byte[] dst, int offset) {
+        long id = idFor(longUrl);
+        System.arraycopy(BASE_URL_BYTES, 0, dst, offset, BASE_URL_BYTES.length);
+        return BASE_URL_BYTES.length + toBase62(id, dst, offset + BASE_URL_BYTES.length);
+    }
+
+    public static int maxShortUrlLength() {
+        return BASE_URL_CHARS.length + MAX_TOKEN_LENGTH;
+    }
+
+    private long idFor(String longUrl) {
+        longUrl = key(longUrl);
+        // Reuse existing mapping if present
+        long existing = store.find(longUrl);
+        if (existing != UrlStore.NONE) {
+            return existing;
+        }
+
+        // Create new mapping atomically for concurrent callers of the same URL
+        return store.putIfAbsent(longUrl, nextId);
+    }
+
+
+    // The URL as it is deduped and stored: canonical if this codec canonicalizes
+    private String key(String longUrl) {
+        if (longUrl == null || longUrl.isEmpty()) {
+            throw new IllegalArgumentException("longUrl must be non-empty");
+        }
+        return canonicalize ? UrlCanonicalizer.canonicalize(longUrl) : longUrl;
+    }
 
     public String decode(String shortUrl) {
         // Decodes a shortened URL to its original URL.
         if (shortUrl == null || shortUrl.isEmpty()) {
             throw new IllegalArgumentException("shortUrl must be non-empty");
         }
-        String token = extractToken(shortUrl);
-        long id = fromBase62(token);
-        String longUrl = idToLong.get(id);
+        return decode(shortUrl, 0, shortUrl.length());
+    }
+
+    // Decodes the short URL held in shortUrl[start, end), e.g. the path of a request
+    // line still sitting in a buffer, without copying it out
+    public String decode(CharSequence shortUrl, int start, int end) {
+        String longUrl = tryDecode(shortUrl, start, end);
+        if (longUrl == null) {
+            // Parsed again only to say what was wrong
+            idOf(shortUrl, start, end);
+            throw new IllegalArgumentException("Unknown short URL: " + shortUrl.subSequence(start, end));
+        }
+        return longUrl;
+    }
+
+    // The long URL, or null for a malformed or unknown short URL. Nothing is thrown
+    // or allocated on the way to a null, so a flood of made-up tokens costs little
+    // more than parsing them.
+    public String tryDecode(CharSequence shortUrl, int start, int end) {
+        long id = tokenId(shortUrl, start, end);
+        if (id < 1 || (filter != null && !filter.mightContain(id))) {
+            return null;
+        }
+        String longUrl = cache == null ? null : cache.get(id);
         if (longUrl == null) {
-            throw new IllegalArgumentException("Unknown short URL: " + shortUrl);
+            longUrl = store.get(id);
+            if (longUrl != null && cache != null) {
+                cache.put(id, longUrl);
+                // The sweeper may have removed it and cleared the cache between the
+                // get and the put; with expiry only a heap store, asking again is cheap
+                if (expiry != null && store.get(id) == null) {
+                    cache.invalidate(id);
+                    return null;
+                }
+            }
         }
         return longUrl;
     }
 
-    private String extractToken(String shortUrl) {
-        int idx = shortUrl.lastIndexOf('/');
-        if (idx == -1 || idx == shortUrl.length() - 1) {
+    public String tryDecode(String shortUrl) {
+        return shortUrl == null ? null : tryDecode(shortUrl, 0, shortUrl.length());
+    }
+
+    // Decodes to the long URL's UTF-8 bytes, read-only; with a MappedUrlStore this
+    // is a view of the mapped file, so the URL can go out on a socket uncopied
+    public ByteBuffer decodeBytes(CharSequence shortUrl, int start, int end) {
+        ByteBuffer longUrl = store.getBytes(idOf(shortUrl, start, end));
+        if (longUrl == null) {
+            throw new IllegalArgumentException("Unknown short URL: " + shortUrl.subSequence(start, end));
+        }
+        return longUrl;
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (sweeper != null) {
+                sweeper.shutdownNow();
+            }
+        }
+        store.close();
+    }
+
+    private static long idOf(CharSequence shortUrl, int start, int end) {
+        if (start >= end) {
+            throw new IllegalArgumentException("shortUrl must be non-empty");
+        }
+        return fromBase62(shortUrl, tokenStart(shortUrl, start, end), end);
+    }
+
+    private static int tokenStart(CharSequence shortUrl, int start, int end) {
+        int idx = end - 1;
+        while (idx >= start && shortUrl.charAt(idx) != '/') {
+            idx--;
+        }
+        if (idx < start || idx == end - 1) {
             throw new IllegalArgumentException("Invalid short URL format");
         }
-        return shortUrl.substring(idx + 1);
+        return idx + 1;
     }
 
-    private String toBase62(long n) {
-        if (n == 0) return "0";
-        StringBuilder sb = new StringBuilder();
-        long x = n;
-        while (x > 0) {
-            int r = (int) (x % BASE);
-            sb.append(BASE62.charAt(r));
-            x /= BASE;
+    // The id the token after the last '/' spells, or -1 when there is no such token
+    // or it is not Base62 that fits a long
+    private static long tokenId(CharSequence shortUrl, int start, int end) {
+        int idx = end - 1;
+        while (idx >= start && shortUrl.charAt(idx) != '/') {
+            idx--;
         }
-        return sb.reverse().toString();
+        if (idx < start || idx == end - 1 || end - idx - 1 > MAX_TOKEN_LENGTH) {
+            return -1;
+        }
+        long n = 0L;
+        for (int i = idx + 1; i < end; i++) {
+            char c = shortUrl.charAt(i);
+            int val = c < DIGIT_VALUES.length ? DIGIT_VALUES[c] : -1;
+            if (val == -1 || n > (Long.MAX_VALUE - val) / BASE) {
+                return -1;
+            }
+            n = n * BASE + val;
+        }
+        return n;
+    }
+
+    // Writes the digits of n at offset and returns how many were written
+    static int toBase62(long n, char[] dst, int offset) {
+        int length = base62Length(n);
+        for (int i = offset + length - 1; i >= offset; i--) {
+            dst[i] = DIGITS[(int) (n % BASE)];
+            n /= BASE;
+        }
+        return length;
     }
 
-    private long fromBase62(String s) {
+    static int toBase62(long n, byte[] dst, int offset) {
+        int length = base62Length(n);
+        for (int i = offset + length - 1; i >= offset; i--) {
+            dst[i] = (byte) DIGITS[(int) (n % BASE)];
+            n /= BASE;
+        }
+        return length;
+    }
+
+    static int base62Length(long n) {
+        int length = 1;
+        while (n >= BASE) {
+            n /= BASE;
+            length++;
+        }
+        return length;
+    }
+
+    // The ids every Codec numbers its URLs with unless given an allocator; a bulk
+    // import takes its whole range in one step
+    private static final class Counter implements IdAllocator {
+        private final AtomicLong next;
+
+        Counter(long firstId) {
+            next = new AtomicLong(firstId);
+        }
+
+        @Override
+        public long nextId() {
+            return next.getAndIncrement();
+        }
+
+        @Override
+        public void nextIds(long[] ids, int from, int to) {
+            long first = next.getAndAdd(to - from);
+            for (int i = from; i < to; i++) {
+                ids[i] = first + i - from;
+            }
+        }
+    }
+
+    private static final class ImportedChunk {
+        final int urls;
+        final byte[] shortUrls;
+        final int length;
+
+        ImportedChunk(int urls, byte[] shortUrls, int length) {
+            this.urls = urls;
+            this.shortUrls = shortUrls;
+            this.length = length;
+        }
+    }
+
+    static long fromBase62(CharSequence s, int from, int to) {
+        if (to - from > MAX_TOKEN_LENGTH) {
+            throw new IllegalArgumentException("Base62 token too long");
+        }
         long n = 0L;
-        for (int i = 0; i < s.length(); i++) {
+        for (int i = from; i < to; i++) {
             char c = s.charAt(i);
-            int val = indexOfBase62(c);
+            int val = c < DIGIT_VALUES.length ? DIGIT_VALUES[c] : -1;
             if (val == -1) throw new IllegalArgumentException("Invalid Base62 char: " + c);
+            // Only an 11-digit token can overflow
+            if (n > (Long.MAX_VALUE - val) / BASE) throw new IllegalArgumentException("Base62 token too long");
             n = n * BASE + val;
         }
         return n;
     }
-
-    private int indexOfBase62(char c) {
-        if (c >= '0' && c <= '9') return c - '0';
-        if (c >= 'a' && c <= 'z') return 10 + (c - 'a');
-        if (c >= 'A' && c <= 'Z') return 36 + (c - 'A');
-        return -1;
-    }
 }
 // Your Codec object will be instantiated and called as such:
 // Codec codec = new Codec();
@@ -0,0 +1,636 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class CodecTest {
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("=== Codec Test ===");
+        try (Codec codec = new Codec()) {
+            verifyRoundTrips(codec, 50_000);
+            System.out.println("In-memory store: PASSED");
+        }
+        DecodeCache cache = DecodeCache.ofEntries(1_000);
+        try (Codec codec = new Codec(new InMemoryUrlStore(), cache)) {
+            verifyRoundTrips(codec, 50_000);
+            check(cache.size() <= 1_000 && cache.evictionCount() > 0, "cache outgrew its bound");
+            verifyCache();
+            System.out.println("Decode cache: PASSED");
+        }
+        Path directory = Files.createTempDirectory("codec-store");
+        try {
+            // Tiny chunks so records and index slots cross many chunk boundaries
+            List<String> shortUrls;
+            try (Codec codec = new Codec(new MappedUrlStore(directory, 12, 12, 0, 0))) {
+                shortUrls = verifyRoundTrips(codec, 50_000);
+                verifyTooLong(codec);
+            }
+            try (Codec codec = new Codec(new MappedUrlStore(directory))) {
+                for (int i = 0; i < shortUrls.size(); i++) {
+                    check(codec.decode(shortUrls.get(i)).equals(url(i)), "reopened store lost " + url(i));
+                }
+                check(codec.encode(url(7)).equals(shortUrls.get(7)), "reopened store gave a second short URL");
+                // 50,001 URLs were stored and a clean close hands back the unused reservation
+                check(codec.encode("https://example.com/after-restart").equals(shortUrl(50_002)),
+                        "numbering did not resume after the stored ids");
+            }
+            System.out.println("Mapped store: PASSED");
+        } finally {
+            deleteRecursively(directory);
+        }
+
+        directory = Files.createTempDirectory("codec-store");
+        try (Codec codec = new Codec(new MappedUrlStore(directory))) {
+            verifyConcurrentEncode(codec);
+            System.out.println("Mapped store, concurrent: PASSED");
+        } finally {
+            deleteRecursively(directory);
+        }
+
+        directory = Files.createTempDirectory("codec-store");
+        try {
+            verifyCrashRecovery(directory);
+            System.out.println("Crash recovery: PASSED");
+        } finally {
+            deleteRecursively(directory);
+        }
+
+        verifyExpiry();
+        System.out.println("Expiry: PASSED");
+
+        directory = Files.createTempDirectory("codec-import");
+        try {
+            verifyBulkImport(directory);
+            System.out.println("Bulk import: PASSED");
+        } finally {
+            deleteRecursively(directory);
+        }
+
+        directory = Files.createTempDirectory("codec-filter");
+        try {
+            verifyNegativeLookups(directory);
+            System.out.println("Negative lookups: PASSED");
+        } finally {
+            deleteRecursively(directory);
+        }
+
+        directory = Files.createTempDirectory("codec-ids");
+        try {
+            verifyIdAllocation(directory);
+            System.out.println("Id allocation: PASSED");
+        } finally {
+            deleteRecursively(directory);
+        }
+
+        verifyRedirectServer();
+        System.out.println("Redirect server: PASSED");
+
+        verifyCanonicalDedup();
+        System.out.println("Canonical dedup: PASSED");
+    }
+
+    // Trivially different spellings share a short URL when the codec canonicalizes,
+    // and only then
+    private static void verifyCanonicalDedup() throws IOException {
+        String[][] cases = {
+                {"HTTP://Example.COM:80/a/b/?z=1&a=2&a=1#Top", "http://example.com/a/b?a=2&a=1&z=1#Top"},
+                {"https://User@Example.com:443", "https://User@example.com/"},
+                {"https://example.com:8443/Path//", "https://example.com:8443/Path"},
+                {"http://[2001:DB8::1]:80/?", "http://[2001:db8::1]/"},
+                {"http://example.com:/x?&&b&a=", "http://example.com/x?a=&b"},
+                {"mailto:Someone@Example.com", "mailto:Someone@Example.com"},
+                {"example.com/A/", "example.com/A/"},
+        };
+        for (String[] c : cases) {
+            String canonical = UrlCanonicalizer.canonicalize(c[0]);
+            check(canonical.equals(c[1]), c[0] + " canonicalized to " + canonical);
+            check(UrlCanonicalizer.canonicalize(canonical).equals(canonical), "not idempotent: " + c[0]);
+        }
+        List<String> variants = List.of("https://example.com/page?b=2&a=1", "HTTPS://EXAMPLE.com:443/page/?a=1&b=2",
+                "https://example.com/page/?b=2&a=1");
+        try (Codec codec = new Codec(new InMemoryUrlStore(), null, new LeasedIdAllocator(new InProcessIdCoordinator(1)), null,
+                true)) {
+            String shortUrl = codec.encode(variants.get(0));
+            for (String variant : variants) {
+                check(codec.encode(variant).equals(shortUrl), "variant got its own short URL: " + variant);
+            }
+            check(codec.decode(shortUrl).equals("https://example.com/page?a=1&b=2"), "decoded to "
+                    + codec.decode(shortUrl));
+            check(new HashSet<>(codec.encodeAll(variants)).equals(Set.of(shortUrl)),
+                    "encodeAll split the variants");
+            check(codec.encodeAll(List.of("http://a.com/x/", "http://A.com/x")).stream().distinct().count() == 1,
+                    "encodeAll did not dedupe canonical repeats in a batch");
+        }
+        try (Codec codec = new Codec()) {
+            check(new HashSet<>(codec.encodeAll(variants)).size() == variants.size(),
+                    "a plain codec canonicalized");
+        }
+    }
+
+    // Redirects, shortens and turns away bad requests over one kept-alive
+    // connection, with requests pipelined and split across writes
+    private static void verifyRedirectServer() throws IOException {
+        try (Codec codec = new Codec();
+             RedirectServer server = new RedirectServer(codec,
+                     new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 2, true);
+             Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.port())) {
+            String shortUrl = codec.encode("https://example.com/a b\r\nSet-Cookie: x=\u00e9");
+            String token = shortUrl.substring(shortUrl.lastIndexOf('/'));
+            OutputStream out = socket.getOutputStream();
+            InputStream in = socket.getInputStream();
+            out.write(("GET " + token + " HTTP/1.1\r\nHost: t\r\n\r\n"
+                    + "GET /zzzzzz HTTP/1.1\r\n\r\n"
+                    + "POST / HTTP/1.1\r\nContent-Length: 26\r\n\r\nhttps://example.com/posted").getBytes(
+                    StandardCharsets.US_ASCII));
+            out.flush();
+            String redirect = readResponse(in);
+            check(redirect.startsWith("HTTP/1.1 301 "), "no redirect: " + redirect);
+            check(redirect.contains("\r\nLocation: https://example.com/a%20b%0D%0ASet-Cookie:%20x=%C3%A9\r\n"),
+                    "Location not escaped: " + redirect);
+            check(readResponse(in).startsWith("HTTP/1.1 404 "), "unknown token was not a 404");
+            String created = readResponse(in);
+            String posted = codec.encode("https://example.com/posted");
+            check(created.startsWith("HTTP/1.1 200 ") && created.endsWith("\r\n\r\n" + posted),
+                    "POST did not answer with the short URL: " + created);
+            // Headers arriving a piece at a time
+            byte[] request = ("GET " + posted.substring(posted.lastIndexOf('/')) + " HTTP/1.1\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII);
+            for (byte b : request) {
+                out.write(b);
+                out.flush();
+            }
+            check(readResponse(in).contains("\r\nLocation: https://example.com/posted\r\n"),
+                    "split request was not redirected");
+            out.write("DELETE / HTTP/1.1\r\nConnection: close\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            String refused = readResponse(in);
+            check(refused.startsWith("HTTP/1.1 405 ") && refused.contains("Connection: close"),
+                    "DELETE was not refused: " + refused);
+            check(in.read() == -1, "connection stayed open after Connection: close");
+
+            // Bodies framed any way but Content-Length are refused and end the connection
+            String chunked = "POST / HTTP/1.1\r\nTransfer-Encoding: chunked\r\n\r\n"
+                    + "1a\r\nhttps://example.com/chunked\r\n0\r\n\r\n";
+            checkRefused(server.port(), chunked, "HTTP/1.1 501 ");
+            checkRefused(server.port(), "POST / HTTP/1.1\r\nContent-Length: 5\r\nTransfer-Encoding: chunked\r\n\r\n"
+                    + "0\r\n\r\n", "HTTP/1.1 400 ");
+            checkRefused(server.port(), "POST / HTTP/1.1\r\nContent-Length: 3\r\nContent-Length: 30\r\n\r\nabc",
+                    "HTTP/1.1 400 ");
+
+            // POST only shortens at /; its body is still read past, so the connection goes on
+            try (Socket other = new Socket(InetAddress.getLoopbackAddress(), server.port())) {
+                String body = "https://example.com/elsewhere";
+                other.getOutputStream().write(("POST /elsewhere HTTP/1.1\r\nContent-Length: " + body.length()
+                        + "\r\n\r\n" + body + "GET " + token + " HTTP/1.1\r\n\r\n")
+                        .getBytes(StandardCharsets.US_ASCII));
+                check(readResponse(other.getInputStream()).startsWith("HTTP/1.1 404 "), "POST off / was not a 404");
+                check(readResponse(other.getInputStream()).startsWith("HTTP/1.1 301 "),
+                        "request after a refused POST was lost");
+            }
+        }
+    }
+
+    // Sends one request on a fresh connection and checks it is refused with status and closed
+    private static void checkRefused(int port, String request, String status) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            socket.getOutputStream().write(request.getBytes(StandardCharsets.US_ASCII));
+            InputStream in = socket.getInputStream();
+            String response = readResponse(in);
+            check(response.startsWith(status) && response.contains("Connection: close"),
+                    "not refused with " + status + response);
+            check(in.read() == -1, "connection stayed open after a refused request");
+        }
+    }
+
+    // One response: its headers and as many body bytes as Content-Length says
+    private static String readResponse(InputStream in) throws IOException {
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        while (!response.toString(StandardCharsets.ISO_8859_1).endsWith("\r\n\r\n")) {
+            int b = in.read();
+            check(b >= 0, "connection closed mid-response: " + response.toString(StandardCharsets.ISO_8859_1));
+            response.write(b);
+        }
+        String headers = response.toString(StandardCharsets.ISO_8859_1);
+        int at = headers.indexOf("Content-Length: ") + "Content-Length: ".length();
+        int length = Integer.parseInt(headers.substring(at, headers.indexOf('\r', at)));
+        response.write(in.readNBytes(length));
+        return response.toString(StandardCharsets.ISO_8859_1);
+    }
+
+    // Mappings go once their TTL is up, from the store and the cache, and their ids
+    // stay retired. The clock stands still, so only the explicit sweeps can expire
+    // anything.
+    private static void verifyExpiry() throws IOException {
+        InMemoryUrlStore store = new InMemoryUrlStore();
+        DecodeCache cache = DecodeCache.ofEntries(10_000);
+        long now = 1_700_000_000_000L;
+        Clock frozen = Clock.fixed(Instant.ofEpochMilli(now), ZoneOffset.UTC);
+        try (Codec codec = new Codec(store, cache)) {
+            codec.setClock(frozen);
+            List<String> expiring = new ArrayList<>();
+            List<String> lasting = new ArrayList<>();
+            // Two full pages and then some, so whole pages are dropped
+            for (int i = 0; i < 10_000; i++) {
+                expiring.add(codec.encode(url(i), 60_000));
+                lasting.add(codec.encode(url(100_000 + i), 86_400_000));
+            }
+            check(codec.encode(url(5), 1).equals(expiring.get(5)), "a mapped URL got a new expiry");
+            for (int i = 0; i < 1_000; i++) {
+                check(codec.decode(expiring.get(i)).equals(url(i)), "expired too early: " + url(i));
+            }
+            check(codec.sweep(now + 30_000) == 0, "swept before the TTL was up");
+            check(codec.sweep(now + 62_000) == 10_000, "sweep missed expired mappings");
+            for (int i = 0; i < 10_000; i++) {
+                check(codec.tryDecode(expiring.get(i)) == null, "still decodes after expiry: " + url(i));
+                check(codec.decode(lasting.get(i)).equals(url(100_000 + i)), "expired too early: " + url(100_000 + i));
+            }
+            check(store.size() == 10_000 && store.find(url(3)) == UrlStore.NONE, "store kept expired mappings");
+
+            String again = codec.encode(url(3), 60_000);
+            check(!expiring.contains(again) && !lasting.contains(again), "an expired id was issued again");
+        }
+        // The highest ids are gone too, and a new Codec still numbers past them
+        try (Codec codec = new Codec(store)) {
+            codec.setClock(frozen);
+            String last = codec.encode("https://example.com/last", 1_000);
+            check(codec.sweep(now + 3_000) == 1, "sweep missed the last mapping");
+            check(!new Codec(store).encode("https://example.com/next").equals(last), "the last id was issued again");
+        }
+
+        Path directory = Files.createTempDirectory("codec-expiry");
+        try (MappedUrlStore mapped = new MappedUrlStore(directory); Codec codec = new Codec(mapped)) {
+            // Its log keeps every mapping, so the encode is refused before anything is stored
+            boolean refused = false;
+            try {
+                codec.encode("https://example.com/expiring", 60_000);
+            } catch (IllegalStateException expected) {
+                refused = true;
+            }
+            check(refused && mapped.find("https://example.com/expiring") == UrlStore.NONE,
+                    "a mapped store took an expiring URL");
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+
+    // encodeAll and importFile agree with encode, repeats included, on both stores
+    private static void verifyBulkImport(Path directory) throws IOException {
+        List<String> longUrls = new ArrayList<>();
+        for (int i = 0; i < 3 * Codec.BATCH_SIZE; i++) {
+            // Every URL twice, the repeat in the same batch or the next one
+            longUrls.add(url(i % 25_000));
+        }
+        for (UrlStore store : new UrlStore[] {new InMemoryUrlStore(), new MappedUrlStore(directory.resolve("store"))}) {
+            try (Codec codec = new Codec(store)) {
+                String known = codec.encode(url(7));
+                List<String> shortUrls = codec.encodeAll(longUrls);
+                check(shortUrls.get(7).equals(known), "encodeAll gave a stored URL a second short URL");
+                check(new HashSet<>(shortUrls).size() == 25_000, "encodeAll gave a URL two short URLs");
+                for (int i = 0; i < longUrls.size(); i++) {
+                    check(codec.decode(shortUrls.get(i)).equals(longUrls.get(i)), "encodeAll lost " + longUrls.get(i));
+                    check(codec.encode(longUrls.get(i)).equals(shortUrls.get(i)), "encode disagrees with encodeAll");
+                }
+                check(codec.encodeAll(longUrls.stream().limit(100)).equals(shortUrls.subList(0, 100)),
+                        "encodeAll of a stream disagrees");
+
+                // A file with CRLF line ends, a blank line and no final newline
+                Path source = directory.resolve("long-urls.txt");
+                StringBuilder text = new StringBuilder();
+                for (int i = 20_000; i < 40_000; i++) {
+                    text.append(url(i)).append(i % 2 == 0 ? "\r\n" : "\n");
+                }
+                text.append("\n").append("https://example.com/last");
+                Files.write(source, text.toString().getBytes(StandardCharsets.UTF_8));
+                Path target = directory.resolve("short-urls.txt");
+                check(codec.importFile(source, target) == 20_001, "importFile miscounted");
+                List<String> imported = Files.readAllLines(target);
+                check(imported.size() == 20_001, "importFile wrote " + imported.size() + " lines");
+                for (int i = 0; i < 20_000; i++) {
+                    check(codec.decode(imported.get(i)).equals(url(20_000 + i)), "importFile lost " + url(20_000 + i));
+                }
+                check(imported.get(1_000).equals(shortUrls.get(21_000)), "importFile re-encoded a stored URL");
+                check(codec.decode(imported.get(20_000)).equals("https://example.com/last"), "importFile lost the last line");
+            }
+        }
+    }
+
+    // Junk tokens come back as null without an exception; with a filter, ids never
+    // issued stop before the store, and a reopened store's ids are let through
+    private static void verifyNegativeLookups(Path directory) throws IOException {
+        InProcessIdCoordinator coordinator = new InProcessIdCoordinator(1);
+        IdBloomFilter filter = new IdBloomFilter(20_000);
+        List<String> shortUrls = new ArrayList<>();
+        try (Codec codec = new Codec(new MappedUrlStore(directory), null, new LeasedIdAllocator(coordinator, 1_000),
+                filter)) {
+            for (int i = 0; i < 20_000; i++) {
+                shortUrls.add(codec.encode(url(i)));
+            }
+            for (int i = 0; i < shortUrls.size(); i++) {
+                check(url(i).equals(codec.tryDecode(shortUrls.get(i))), "filter turned away " + url(i));
+            }
+            for (String bad : new String[] {null, "", "http://tinyurl.com/", "http://tinyurl.com/a-b",
+                    "http://tinyurl.com/zzzzzzzzzzzz", "http://tinyurl.com/0", "http://tinyurl.com/zzzzzz"}) {
+                check(codec.tryDecode(bad) == null, bad + " decoded");
+            }
+        }
+        // Leased blocks are a thread's own, so ids past the first block were never issued
+        int falsePositives = 0;
+        for (long id = 1_000_000; id < 1_100_000; id++) {
+            falsePositives += filter.mightContain(id) ? 1 : 0;
+        }
+        check(falsePositives < 1_000, falsePositives + " false positives in 100,000");
+
+        try (Codec reopened = new Codec(new MappedUrlStore(directory), null, new LeasedIdAllocator(coordinator),
+                new IdBloomFilter(20_000))) {
+            for (int i = 0; i < shortUrls.size(); i++) {
+                check(reopened.decode(shortUrls.get(i)).equals(url(i)), "reopened filter lost " + url(i));
+            }
+        }
+    }
+
+    // Codecs that share a coordinator, or a coordinator file, never issue the same short URL
+    private static void verifyIdAllocation(Path directory) throws Exception {
+        InProcessIdCoordinator coordinator = new InProcessIdCoordinator(1);
+        Set<String> issued = encodeEverywhere(new Codec(new InMemoryUrlStore(), null,
+                new LeasedIdAllocator(coordinator, 100)), new Codec(new InMemoryUrlStore(), null,
+                new LeasedIdAllocator(coordinator, 100)));
+        check(issued.size() == 2 * 8 * 2_000, "leased ids collided");
+
+        Path file = directory.resolve("next-id");
+        try (FileIdCoordinator first = new FileIdCoordinator(file, 1);
+                FileIdCoordinator second = new FileIdCoordinator(file, 1);
+                Codec a = new Codec(new MappedUrlStore(directory.resolve("a")), null, new LeasedIdAllocator(first, 100));
+                Codec b = new Codec(new MappedUrlStore(directory.resolve("b")), null,
+                        new LeasedIdAllocator(second, 100))) {
+            issued = encodeEverywhere(a, b);
+            check(issued.size() == 2 * 8 * 2_000, "ids leased through one file collided");
+        }
+        // A restart picks up after every block claimed before it
+        try (FileIdCoordinator reopened = new FileIdCoordinator(file, 1)) {
+            long next = reopened.claim(1);
+            for (String shortUrl : issued) {
+                check(Codec.fromBase62(shortUrl, shortUrl.lastIndexOf('/') + 1, shortUrl.length()) < next,
+                        "reopened coordinator handed out a claimed id");
+            }
+        }
+
+        long[] millis = {SnowflakeIdAllocator.EPOCH_MILLIS + 1_000};
+        SnowflakeIdAllocator node1 = new SnowflakeIdAllocator(1, () -> millis[0]);
+        SnowflakeIdAllocator node2 = new SnowflakeIdAllocator(2, () -> millis[0]);
+        Set<Long> ids = new HashSet<>();
+        for (int i = 0; i < 10_000; i++) {
+            // 10,000 ids in one millisecond overflow the sequence; a clock step back must not repeat one
+            millis[0] += i == 5_000 ? -500 : 0;
+            ids.add(node1.nextId());
+            ids.add(node2.nextId());
+        }
+        check(ids.size() == 20_000, "Snowflake ids collided");
+        try (Codec codec = new Codec(new InMemoryUrlStore(), null, node1)) {
+            String shortUrl = codec.encode("https://example.com/snowflake");
+            check(codec.decode(shortUrl).equals("https://example.com/snowflake"), "Snowflake id did not round trip");
+        }
+    }
+
+    // Both codecs encode distinct URLs from 8 threads each; returns every short URL issued
+    private static Set<String> encodeEverywhere(Codec a, Codec b) throws Exception {
+        ExecutorService threads = Executors.newFixedThreadPool(16);
+        List<Future<List<String>>> results = new ArrayList<>();
+        for (int t = 0; t < 16; t++) {
+            Codec codec = t % 2 == 0 ? a : b;
+            int thread = t;
+            results.add(threads.submit(() -> {
+                List<String> shortUrls = new ArrayList<>();
+                for (int i = 0; i < 2_000; i++) {
+                    String longUrl = url(thread * 2_000 + i);
+                    String shortUrl = codec.encode(longUrl);
+                    check(codec.decode(shortUrl).equals(longUrl), "leased id did not round trip");
+                    shortUrls.add(shortUrl);
+                }
+                return shortUrls;
+            }));
+        }
+        Set<String> issued = new HashSet<>();
+        for (Future<List<String>> result : results) {
+            issued.addAll(result.get());
+        }
+        threads.shutdown();
+        return issued;
+    }
+
+    private static void verifyCache() throws IOException {
+        DecodeCache cache = DecodeCache.ofEntries(64);
+        try (Codec codec = new Codec(new InMemoryUrlStore(), cache)) {
+            List<String> hot = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                hot.add(codec.encode(url(i)));
+            }
+            // Hot links read every round stay cached while a stream of cold ones passes through
+            for (int round = 0; round < 200; round++) {
+                for (String shortUrl : hot) {
+                    codec.decode(shortUrl);
+                }
+                for (int i = 0; i < 10; i++) {
+                    codec.decode(codec.encode(url(1_000 + round * 10 + i)));
+                }
+            }
+            long hits = cache.hitCount();
+            for (String shortUrl : hot) {
+                codec.decode(shortUrl);
+            }
+            check(cache.hitCount() == hits + hot.size(), "a hot link was evicted");
+            check(cache.size() <= 64 && cache.evictionCount() > 0, "cache outgrew its bound");
+            check(cache.hitCount() + cache.missCount() == 200 * 18 + hot.size(), "lookups were miscounted");
+        }
+
+        cache = DecodeCache.ofBytes(DecodeCache.weigh(100) * 40);
+        try (Codec codec = new Codec(new InMemoryUrlStore(), cache)) {
+            for (int i = 0; i < 500; i++) {
+                String longUrl = url(i) + "&pad=" + "p".repeat(i % 150);
+                check(codec.decode(codec.encode(longUrl)).equals(longUrl), "round trip through the cache failed");
+                check(cache.weight() <= DecodeCache.weigh(100) * 40, "cache outgrew its byte bound");
+            }
+        }
+    }
+
+    // Stores are left open on purpose, as if the process died, and reopened on the same files
+    private static void verifyCrashRecovery(Path directory) throws IOException {
+        MappedUrlStore crashed = new MappedUrlStore(directory, 12, 12, 0, 0);
+        Codec codec = new Codec(crashed);
+        List<String> shortUrls = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            shortUrls.add(codec.encode(url(i)));
+            if (i == 999) {
+                crashed.checkpoint();
+            }
+        }
+        String lost = codec.encode("https://example.com/torn");
+
+        // Corrupt the last record, as a write cut short would
+        Path log = directory.resolve("urls.dat");
+        byte[] bytes = Files.readAllBytes(log);
+        byte[] torn = "example.com/torn".getBytes(StandardCharsets.US_ASCII);
+        int at = indexOf(bytes, torn);
+        check(at > 0, "last record not found in the log");
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {'X'}), at);
+        }
+
+        try (Codec recovered = new Codec(new MappedUrlStore(directory, 12, 12, 0, 0))) {
+            for (int i = 0; i < shortUrls.size(); i++) {
+                check(recovered.decode(shortUrls.get(i)).equals(url(i)), "crash lost " + url(i));
+                check(recovered.encode(url(i)).equals(shortUrls.get(i)), "crash broke dedup for " + url(i));
+            }
+            try {
+                recovered.decode(lost);
+                throw new IllegalStateException("torn record was recovered");
+            } catch (IllegalArgumentException expected) {
+                // Its id is gone for good
+            }
+            String again = recovered.encode("https://example.com/torn");
+            check(!again.equals(lost) && !shortUrls.contains(again), "an id was handed out twice");
+        }
+
+        // Rebuilds both indexes from the log alone when they are missing
+        try (DirectoryStream<Path> indexes = Files.newDirectoryStream(directory, "*.idx")) {
+            for (Path index : indexes) {
+                Files.delete(index);
+            }
+        }
+        try (Codec rebuilt = new Codec(new MappedUrlStore(directory, 12, 12, 0, 0))) {
+            for (int i = 0; i < shortUrls.size(); i++) {
+                check(rebuilt.encode(url(i)).equals(shortUrls.get(i)), "rebuild lost " + url(i));
+            }
+            check(rebuilt.decode(rebuilt.encode("https://example.com/torn")).equals("https://example.com/torn"),
+                    "rebuild lost the re-encoded URL");
+        }
+    }
+
+    private static int indexOf(byte[] bytes, byte[] wanted) {
+        for (int i = bytes.length - wanted.length; i >= 0; i--) {
+            if (Arrays.equals(bytes, i, i + wanted.length, wanted, 0, wanted.length)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String shortUrl(long id) {
+        char[] token = new char[Codec.MAX_TOKEN_LENGTH];
+        return "http://tinyurl.com/" + new String(token, 0, Codec.toBase62(id, token, 0));
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                if (Files.isDirectory(file)) {
+                    deleteRecursively(file);
+                } else {
+                    Files.delete(file);
+                }
+            }
+        }
+        Files.delete(directory);
+    }
+
+    private static List<String> verifyRoundTrips(Codec codec, int urls) {
+        List<String> shortUrls = new ArrayList<>();
+        for (int i = 0; i < urls; i++) {
+            shortUrls.add(codec.encode(url(i)));
+        }
+        check(codec.encode(url(7)).equals(shortUrls.get(7)), "same URL got a second short URL");
+        for (int i = 0; i < urls; i++) {
+            check(codec.decode(shortUrls.get(i)).equals(url(i)), "round trip failed for " + url(i));
+        }
+
+        String unicode = "https://example.com/caf\u00e9?q=\u65e5\u672c";
+        String shortUrl = codec.encode(unicode);
+        check(codec.decode(shortUrl).equals(unicode), "non-ASCII URL changed");
+        ByteBuffer bytes = codec.decodeBytes(shortUrl, 0, shortUrl.length());
+        check(bytes.isReadOnly() && bytes.equals(ByteBuffer.wrap(unicode.getBytes(StandardCharsets.UTF_8))),
+                "decodeBytes returned other bytes");
+
+        // A token inside a request line decodes in place
+        String request = "GET /" + shortUrls.get(42).substring(shortUrls.get(42).lastIndexOf('/') + 1) + " HTTP/1.1";
+        check(codec.decode(request, 4, request.length() - 9).equals(url(42)), "range decode failed");
+
+        for (String bad : new String[] {"http://tinyurl.com/", "http://tinyurl.com/a-b", "http://tinyurl.com/zzzzzz",
+                "http://tinyurl.com/zzzzzzzzzzzz", "http://tinyurl.com/0"}) {
+            try {
+                codec.decode(bad);
+                throw new IllegalStateException(bad + " decoded");
+            } catch (IllegalArgumentException expected) {
+                // Rejected as it should be
+            }
+        }
+        return shortUrls;
+    }
+
+    private static void verifyTooLong(Codec codec) {
+        try {
+            codec.encode("https://example.com/" + "x".repeat(5000));
+            throw new IllegalStateException("URL longer than a chunk was stored");
+        } catch (IllegalArgumentException expected) {
+            // A record must fit one chunk
+        }
+    }
+
+    // Every thread encodes the same URLs; each must get one id and no id may be wasted
+    private static void verifyConcurrentEncode(Codec codec) throws Exception {
+        int urls = 20_000;
+        ExecutorService threads = Executors.newFixedThreadPool(8);
+        List<Future<List<String>>> results = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            results.add(threads.submit(() -> {
+                List<String> shortUrls = new ArrayList<>();
+                for (int i = 0; i < urls; i++) {
+                    shortUrls.add(codec.encode(url(i)));
+                }
+                return shortUrls;
+            }));
+        }
+        List<String> first = results.get(0).get();
+        for (Future<List<String>> result : results) {
+            check(result.get().equals(first), "threads got different short URLs for one URL");
+        }
+        threads.shutdown();
+        Set<String> distinct = new HashSet<>(first);
+        check(distinct.size() == urls, "two URLs share a short URL");
+        check(codec.encode("https://example.com/next").equals(codec.encode("https://example.com/next"))
+                && codec.decode(codec.encode("https://example.com/next")).equals("https://example.com/next"),
+                "encode after the race failed");
+        // The URLs above took ids 1 to urls + 1, so the next is urls + 2 unless one was wasted
+        check(codec.encode("https://example.com/last").equals(shortUrl(urls + 2)), "ids were skipped");
+    }
+
+    private static String url(int i) {
+        return "https://example.com/articles/" + i + "?utm_source=test";
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+}
@@ -0,0 +1,347 @@
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+// A bounded cache of decoded URLs for the hot links, in front of the store. Keyed
+// by the token's id, which is the token in numeric form, so a hit skips the store
+// entirely: no offset read, no copy out of a mapping, no new String.
+// Eviction is CLOCK per segment: a hit only sets a reference bit, and a full
+// segment sweeps its hand past referenced entries, clearing their bits, until it
+// reaches one nobody read since the last sweep. That victim only makes room if the
+// newcomer was looked up more often recently, by a 4-bit count-min sketch of each
+// segment's lookups that halves as it fills (TinyLFU admission), so the stream of
+// links read once does not flush the hot ones. Lookups take no lock unless they
+// race an insert into the same segment.
+public class DecodeCache {
+
+    // A String's header and array header plus the cache's own slot, index and
+    // bookkeeping per entry; the chars are counted on top, two bytes each at most
+    static final long ENTRY_OVERHEAD = 72;
+    // What a byte-bounded cache sizes its slots for; with shorter URLs it holds
+    // this many entries and stays under its byte bound
+    private static final int TYPICAL_URL_LENGTH = 100;
+
+    private final Segment[] segments;
+    private final int segmentMask;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+
+    private DecodeCache(long maxEntries, long maxBytes) {
+        if (maxEntries < 1 || maxBytes < 1) {
+            throw new IllegalArgumentException("Cache bound must be positive");
+        }
+        // Enough segments that threads rarely insert into the same one, but never
+        // so many that a segment holds fewer than 16 entries
+        int wanted = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 4 - 1) << 1;
+        int count = (int) Math.max(1, Math.min(wanted, Long.highestOneBit(Math.max(1, maxEntries / 16))));
+        segments = new Segment[count];
+        segmentMask = count - 1;
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment((int) Math.min(Integer.MAX_VALUE / 2, (maxEntries + count - 1) / count),
+                    Math.max(1, maxBytes / count));
+        }
+    }
+
+    // Holds at most maxEntries URLs, whatever their length
+    public static DecodeCache ofEntries(long maxEntries) {
+        return new DecodeCache(maxEntries, Long.MAX_VALUE);
+    }
+
+    // Holds URLs worth at most maxBytes of heap, by weigh()
+    public static DecodeCache ofBytes(long maxBytes) {
+        return new DecodeCache(Math.max(1, maxBytes / weigh(TYPICAL_URL_LENGTH)), maxBytes);
+    }
+
+    // Heap taken by a cached URL of the given length
+    static long weigh(int length) {
+        return ENTRY_OVERHEAD + 2L * length;
+    }
+
+    // The URL cached under id, or null
+    public String get(long id) {
+        long hash = spread(id);
+        String longUrl = segments[(int) (hash >>> 32) & segmentMask].get(id, hash);
+        if (longUrl == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return longUrl;
+    }
+
+    public void put(long id, String longUrl) {
+        long hash = spread(id);
+        segments[(int) (hash >>> 32) & segmentMask].put(id, hash, longUrl, evictions, rejections);
+    }
+
+    // Drops the URL cached under id, e.g. once its mapping expired
+    public void invalidate(long id) {
+        long hash = spread(id);
+        segments[(int) (hash >>> 32) & segmentMask].invalidate(id, hash);
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    // Puts turned away because the entry they would evict is read more often
+    public long rejectionCount() {
+        return rejections.sum();
+    }
+
+    // Hits over lookups, 0 before the first lookup
+    public double hitRate() {
+        long hit = hits.sum();
+        long total = hit + misses.sum();
+        return total == 0 ? 0 : (double) hit / total;
+    }
+
+    // Entries held; exact only while no put runs
+    public long size() {
+        long size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    // Bytes held by weigh(); exact only while no put runs
+    public long weight() {
+        long weight = 0;
+        for (Segment segment : segments) {
+            weight += segment.weight;
+        }
+        return weight;
+    }
+
+    // Murmur3's 64-bit finalizer, so dense ids spread over segments and slots
+    static long spread(long id) {
+        long h = id;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        return h ^ (h >>> 33);
+    }
+
+    private static final class Segment {
+        private static final long[] SEEDS = {0x9e3779b97f4a7c15L, 0xc2b2ae3d27d4eb4fL, 0x165667b19e3779f9L,
+                0xd6e8feb86659fd93L};
+        private static final long HALF_MASK = 0x7777777777777777L;
+
+        private final StampedLock lock = new StampedLock();
+        // Slot -> entry; a slot with a null URL is free
+        private final long[] ids;
+        private final String[] urls;
+        // Set by hits without the lock; a lost write only costs the entry its second chance
+        private final byte[] referenced;
+        // Open addressing over the slots, hash -> slot + 1, 0 when empty
+        private final int[] index;
+        private final int indexMask;
+        private final int[] free;
+        private final long maxWeight;
+        // Sixteen 4-bit counters per long. Updated without a lock: a lost increment
+        // only makes the estimate a little lower, which admission tolerates.
+        private final long[] frequencies;
+        private final int frequencyMask;
+        private final int sampleSize;
+        private int additions;
+        // Guarded by the write lock
+        private int freeCount;
+        private int hand;
+        private volatile long weight;
+
+        Segment(int slots, long maxWeight) {
+            ids = new long[slots];
+            urls = new String[slots];
+            referenced = new byte[slots];
+            index = new int[Integer.highestOneBit(slots) << 2];
+            indexMask = index.length - 1;
+            free = new int[slots];
+            for (int i = 0; i < slots; i++) {
+                free[i] = slots - 1 - i;
+            }
+            freeCount = slots;
+            this.maxWeight = maxWeight;
+            frequencies = new long[Integer.highestOneBit(slots) << 1];
+            frequencyMask = frequencies.length - 1;
+            sampleSize = (int) Math.min(Integer.MAX_VALUE, 10L * slots);
+        }
+
+        String get(long id, long hash) {
+            record(hash);
+            long stamp = lock.tryOptimisticRead();
+            int slot = find(id, hash);
+            String longUrl = slot < 0 ? null : urls[slot];
+            if (!lock.validate(stamp)) {
+                stamp = lock.readLock();
+                try {
+                    slot = find(id, hash);
+                    longUrl = slot < 0 ? null : urls[slot];
+                } finally {
+                    lock.unlockRead(stamp);
+                }
+            }
+            // Hot entries are mostly set already; skipping the write keeps their line shared
+            if (longUrl != null && referenced[slot] == 0) {
+                referenced[slot] = 1;
+            }
+            return longUrl;
+        }
+
+        void put(long id, long hash, String longUrl, LongAdder evictions, LongAdder rejections) {
+            long entryWeight = weigh(longUrl.length());
+            int frequency = frequency(hash);
+            // A link seen once cannot beat any entry, so a full segment turns it away unlocked
+            if (entryWeight > maxWeight || (freeCount == 0 && frequency <= 1)) {
+                rejections.increment();
+                return;
+            }
+            long stamp = lock.writeLock();
+            try {
+                if (find(id, hash) >= 0) {
+                    return;
+                }
+                boolean admitted = false;
+                while (freeCount == 0 || weight + entryWeight > maxWeight) {
+                    int victim = nextVictim();
+                    if (!admitted && frequency(spread(ids[victim])) >= frequency) {
+                        rejections.increment();
+                        return;
+                    }
+                    admitted = true;
+                    remove(victim);
+                    evictions.increment();
+                }
+                int slot = free[--freeCount];
+                ids[slot] = id;
+                urls[slot] = longUrl;
+                referenced[slot] = 0;
+                weight += entryWeight;
+                int i = (int) hash & indexMask;
+                while (index[i] != 0) {
+                    i = (i + 1) & indexMask;
+                }
+                index[i] = slot + 1;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        void invalidate(long id, long hash) {
+            long stamp = lock.writeLock();
+            try {
+                int slot = find(id, hash);
+                if (slot >= 0) {
+                    remove(slot);
+                }
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        int size() {
+            return ids.length - freeCount;
+        }
+
+        // Bounded so a read racing an insert cannot spin forever
+        private int find(long id, long hash) {
+            int i = (int) hash & indexMask;
+            for (int probes = 0; probes <= indexMask; probes++) {
+                int entry = index[i];
+                if (entry == 0) {
+                    return -1;
+                }
+                if (ids[entry - 1] == id) {
+                    return entry - 1;
+                }
+                i = (i + 1) & indexMask;
+            }
+            return -1;
+        }
+
+        // The next entry under the hand that was not read since the hand last passed
+        // it. Caller holds the write lock and the segment holds at least one entry.
+        private int nextVictim() {
+            while (true) {
+                int slot = hand;
+                hand = hand + 1 == ids.length ? 0 : hand + 1;
+                if (urls[slot] == null) {
+                    continue;
+                }
+                if (referenced[slot] != 0) {
+                    referenced[slot] = 0;
+                    continue;
+                }
+                return slot;
+            }
+        }
+
+        private void record(long hash) {
+            for (int i = 0; i < SEEDS.length; i++) {
+                long h = hash * SEEDS[i];
+                int word = (int) (h >>> 32) & frequencyMask;
+                int shift = ((int) h >>> 28) << 2;
+                if (((frequencies[word] >>> shift) & 15) < 15) {
+                    frequencies[word] += 1L << shift;
+                }
+            }
+            // Halving keeps the counts about the recent past; racing threads may both
+            // halve, which only ages the counts a little faster
+            if (++additions >= sampleSize) {
+                additions = 0;
+                for (int i = 0; i < frequencies.length; i++) {
+                    frequencies[i] = (frequencies[i] >>> 1) & HALF_MASK;
+                }
+            }
+        }
+
+        // Lookups of the hash in the recent past, at most 15
+        private int frequency(long hash) {
+            int min = 15;
+            for (int i = 0; i < SEEDS.length; i++) {
+                long h = hash * SEEDS[i];
+                int word = (int) (h >>> 32) & frequencyMask;
+                int shift = ((int) h >>> 28) << 2;
+                min = Math.min(min, (int) (frequencies[word] >>> shift) & 15);
+            }
+            return min;
+        }
+
+        private void remove(int slot) {
+            int i = (int) spread(ids[slot]) & indexMask;
+            while (index[i] != slot + 1) {
+                i = (i + 1) & indexMask;
+            }
+            // Backward-shift deletion: pull later entries of the run into the gap, unless
+            // that would move one before its home slot
+            int j = i;
+            while (true) {
+                j = (j + 1) & indexMask;
+                int entry = index[j];
+                if (entry == 0) {
+                    break;
+                }
+                int home = (int) spread(ids[entry - 1]) & indexMask;
+                if (((j - home) & indexMask) >= ((j - i) & indexMask)) {
+                    index[i] = entry;
+                    i = j;
+                }
+            }
+            index[i] = 0;
+            weight -= weigh(urls[slot].length());
+            urls[slot] = null;
+            ids[slot] = 0;
+            free[freeCount++] = slot;
+        }
+    }
+}
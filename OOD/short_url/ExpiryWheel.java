@@ -0,0 +1,117 @@
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+// Ids by the tick they expire in, on a wheel of buckets, so a sweeper reclaims
+// them a bucket at a time instead of scanning every mapping. An id due more than
+// one turn ahead shares its bucket with nearer ones and is passed over until its
+// turn comes; with a one-second tick and 4096 buckets a 30-day link is looked at
+// about 630 times, so each tick costs the sweeper 1/4096 of the live ids.
+// Scheduling locks one bucket; the sweeper holds a bucket's lock only while it
+// picks out the due ids, and expires them after letting go.
+public class ExpiryWheel {
+
+    private static final int MIN_CAPACITY = 16;
+    private static final long[] NONE_DUE = new long[0];
+
+    private final long tickMillis;
+    private final Bucket[] buckets;
+    private final int mask;
+    // The last tick swept; written with the swept bucket's lock held
+    private volatile long swept;
+
+    public ExpiryWheel(long tickMillis, int bucketCount, long nowMillis) {
+        if (tickMillis < 1 || bucketCount < 1) {
+            throw new IllegalArgumentException("Tick and bucket count must be positive");
+        }
+        this.tickMillis = tickMillis;
+        buckets = new Bucket[Integer.highestOneBit(Math.max(1, bucketCount - 1)) << 1];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new Bucket();
+        }
+        mask = buckets.length - 1;
+        swept = nowMillis / tickMillis;
+    }
+
+    // Expires id at the first sweep at or after deadlineMillis, to within a tick
+    public void schedule(long id, long deadlineMillis) {
+        long due = (deadlineMillis + tickMillis - 1) / tickMillis;
+        while (true) {
+            long tick = Math.max(due, swept + 1);
+            Bucket bucket = buckets[(int) tick & mask];
+            synchronized (bucket) {
+                // Swept while we waited for the lock; the next tick's bucket it is
+                if (tick > swept) {
+                    bucket.add(id, due);
+                    return;
+                }
+            }
+        }
+    }
+
+    // Passes every id due by nowMillis to expire and returns how many there were.
+    // One caller at a time.
+    public int advance(long nowMillis, LongConsumer expire) {
+        long target = nowMillis / tickMillis;
+        int expired = 0;
+        // A sweeper that fell a whole turn behind goes round once
+        for (long tick = Math.max(swept + 1, target - mask); tick <= target; tick++) {
+            long[] due;
+            Bucket bucket = buckets[(int) tick & mask];
+            synchronized (bucket) {
+                due = bucket.takeDue(target);
+                swept = tick;
+            }
+            for (long id : due) {
+                expire.accept(id);
+            }
+            expired += due.length;
+        }
+        return expired;
+    }
+
+    public long tickMillis() {
+        return tickMillis;
+    }
+
+    // Ids and the ticks they are due at, unordered; guarded by its own monitor
+    private static final class Bucket {
+        private long[] ids = new long[MIN_CAPACITY];
+        private long[] ticks = new long[MIN_CAPACITY];
+        private int size;
+
+        void add(long id, long tick) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                ticks = Arrays.copyOf(ticks, size * 2);
+            }
+            ids[size] = id;
+            ticks[size++] = tick;
+        }
+
+        // Removes and returns the ids due at or before tick; the rest stay in place
+        long[] takeDue(long tick) {
+            int kept = 0;
+            int taken = 0;
+            long[] due = null;
+            for (int i = 0; i < size; i++) {
+                if (ticks[i] <= tick) {
+                    if (due == null) {
+                        due = new long[size - i];
+                    }
+                    due[taken++] = ids[i];
+                } else {
+                    ids[kept] = ids[i];
+                    ticks[kept++] = ticks[i];
+                }
+            }
+            size = kept;
+            // Shrinks after a burst drains, so a bucket gives its memory back
+            if (ids.length > MIN_CAPACITY && size < ids.length / 4) {
+                int capacity = Math.max(MIN_CAPACITY, Integer.highestOneBit(Math.max(1, size)) << 1);
+                ids = Arrays.copyOf(ids, capacity);
+                ticks = Arrays.copyOf(ticks, capacity);
+            }
+            return due == null ? NONE_DUE : Arrays.copyOf(due, taken);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// A coordinator shared by every process that opens the same file, e.g. the
+// redirect nodes of one host or of a shared volume. The file holds the first id
+// not yet claimed; a claim locks it, advances it and forces it to disk before
+// returning, so no block is handed out twice, even across restarts. Ids of a
+// block not used up before a crash are skipped, never reissued.
+public class FileIdCoordinator implements IdBlockCoordinator, Closeable {
+
+    // File locks belong to the whole JVM, so claims within one JVM are serialized
+    // here first; claims are rare, once per block
+    private static final Object JVM_LOCK = new Object();
+
+    private final FileChannel channel;
+    private final long firstId;
+    private final ByteBuffer buffer = ByteBuffer.allocate(8);
+
+    // firstId is where a new file starts; an existing file keeps its own position
+    public FileIdCoordinator(Path file, long firstId) throws IOException {
+        if (firstId < 1) {
+            throw new IllegalArgumentException("Ids start at 1");
+        }
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        this.firstId = firstId;
+    }
+
+    @Override
+    public long claim(int size) {
+        synchronized (JVM_LOCK) {
+            try {
+                FileLock lock = channel.lock();
+                try {
+                    buffer.clear();
+                    int read = 0;
+                    while (read < 8) {
+                        int n = channel.read(buffer, read);
+                        if (n < 0) {
+                            break;
+                        }
+                        read += n;
+                    }
+                    long first = read < 8 ? firstId : buffer.getLong(0);
+                    buffer.clear();
+                    buffer.putLong(first + size).flip();
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer, buffer.position());
+                    }
+                    channel.force(false);
+                    return first;
+                } finally {
+                    lock.release();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,15 @@
+// Where a Codec gets the id of each new URL. Ids must be at least 1 and never
+// repeat, across every Codec that shares a store or whose short URLs must not
+// collide; they need not be dense or increasing.
+public interface IdAllocator {
+
+    long nextId();
+
+    // Fills ids[from, to) with new ids, for bulk imports; an allocator that can
+    // claim a whole range at once does so
+    default void nextIds(long[] ids, int from, int to) {
+        for (int i = from; i < to; i++) {
+            ids[i] = nextId();
+        }
+    }
+}
@@ -0,0 +1,7 @@
+// Hands out disjoint blocks of ids to LeasedIdAllocators, which may sit on other
+// threads, other Codecs or other processes.
+public interface IdBlockCoordinator {
+
+    // The first id of a block of size ids that no caller was or will be given
+    long claim(int size);
+}
@@ -0,0 +1,383 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
+
+// The heap store: ids are mostly dense from 1, so id -> URL is a paged array
+// indexed by id instead of a map with boxed Long keys, and a get allocates
+// nothing. Ids too large for the pages, such as Snowflake ids, go to a map.
+// Removed URLs leave both maps; a page is dropped once every id on it has been
+// filed and taken out again, which ids that are never reissued make safe. Ids
+// never filed, such as the end of an unfinished lease, keep their page.
+// The long URL -> id index is keyed by a 64-bit fingerprint of the URL rather than
+// the URL: an open-addressing table of [fingerprint, id] pairs, split into stripes
+// each with its own lock. A fingerprint match is confirmed against the URL filed
+// under the id, so URLs that share a fingerprint each keep their own id and an
+// entry is 16 bytes of long[] instead of a map node and a boxed Long. Lookups run
+// under an optimistic read and only take the read lock when a write raced them.
+public class InMemoryUrlStore implements UrlStore {
+
+    private static final int PAGE_BITS = 12;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    // Caps the page directory at 2^19 entries
+    private static final long PAGED_IDS = 1L << 31;
+    private static final VarHandle URLS = MethodHandles.arrayElementVarHandle(String[].class);
+    private static final int STRIPE_BITS = 6;
+    private static final int MIN_STRIPE_SLOTS = 64;
+    private volatile String[][] idToLong = new String[16][];
+    private final ConcurrentHashMap<Long, String> sparse = new ConcurrentHashMap<>();
+    private final Stripe[] longToId = new Stripe[1 << STRIPE_BITS];
+    // The highest id ever removed; removals are rare next to inserts, so they are the
+    // ones that keep a maximum
+    private final AtomicLong removedMax = new AtomicLong();
+    // Page -> ids erased from it; guarded by this
+    private int[] erasedPerPage = new int[16];
+
+    public InMemoryUrlStore() {
+        for (int i = 0; i < longToId.length; i++) {
+            longToId[i] = new Stripe();
+        }
+    }
+
+    @Override
+    public long find(String longUrl) {
+        long fingerprint = fingerprint(longUrl);
+        return stripe(fingerprint).find(fingerprint, longUrl);
+    }
+
+    @Override
+    public long putIfAbsent(String longUrl, LongSupplier nextId) {
+        long fingerprint = fingerprint(longUrl);
+        Stripe stripe = stripe(fingerprint);
+        long stamp = stripe.lock.writeLock();
+        try {
+            long existing = stripe.probe(fingerprint, longUrl);
+            if (existing != NONE) {
+                return existing;
+            }
+            long newId = nextId.getAsLong();
+            store(newId, longUrl);
+            stripe.add(fingerprint, newId);
+            return newId;
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+    }
+
+    // Files each new URL under its id before publishing the mapping, as putIfAbsent
+    // does, but with no lambda per URL. A URL another caller stores in between keeps
+    // that caller's id, and the one taken for it goes unused.
+    @Override
+    public void putAllIfAbsent(String[] longUrls, long[] ids, int count, IdAllocator allocator) {
+        long[] fingerprints = new long[count];
+        int[] absent = new int[count];
+        int absentCount = 0;
+        for (int i = 0; i < count; i++) {
+            fingerprints[i] = fingerprint(longUrls[i]);
+            ids[i] = stripe(fingerprints[i]).find(fingerprints[i], longUrls[i]);
+            if (ids[i] == NONE) {
+                absent[absentCount++] = i;
+            }
+        }
+        long[] newIds = new long[absentCount];
+        allocator.nextIds(newIds, 0, absentCount);
+        for (int j = 0; j < absentCount; j++) {
+            int i = absent[j];
+            Stripe stripe = stripe(fingerprints[i]);
+            long stamp = stripe.lock.writeLock();
+            try {
+                ids[i] = stripe.probe(fingerprints[i], longUrls[i]);
+                if (ids[i] == NONE) {
+                    store(newIds[j], longUrls[i]);
+                    stripe.add(fingerprints[i], newIds[j]);
+                    ids[i] = newIds[j];
+                }
+            } finally {
+                stripe.lock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    @Override
+    public String get(long id) {
+        if (id >= PAGED_IDS) {
+            return sparse.get(id);
+        }
+        String[][] pages = idToLong;
+        long page = id >>> PAGE_BITS;
+        if (page >= pages.length || pages[(int) page] == null) {
+            return null;
+        }
+        return (String) URLS.getAcquire(pages[(int) page], (int) (id & (PAGE_SIZE - 1)));
+    }
+
+    @Override
+    public ByteBuffer getBytes(long id) {
+        String longUrl = get(id);
+        return longUrl == null ? null : ByteBuffer.wrap(longUrl.getBytes(StandardCharsets.UTF_8)).asReadOnlyBuffer();
+    }
+
+    @Override
+    public boolean supportsRemoval() {
+        return true;
+    }
+
+    @Override
+    public boolean remove(long id) {
+        String longUrl = get(id);
+        if (longUrl == null) {
+            return false;
+        }
+        // Raised before the id goes, so firstUnusedId() never sees it free
+        removedMax.accumulateAndGet(id, Math::max);
+        // Unmapped first, so an encode racing this either finds the old id, which
+        // then decodes as unknown, or makes a new one; never a URL under a dead id
+        long fingerprint = fingerprint(longUrl);
+        Stripe stripe = stripe(fingerprint);
+        long stamp = stripe.lock.writeLock();
+        try {
+            stripe.remove(fingerprint, id);
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+        return erase(id, longUrl);
+    }
+
+    @Override
+    public long size() {
+        long size = 0;
+        for (Stripe stripe : longToId) {
+            long stamp = stripe.lock.readLock();
+            size += stripe.size;
+            stripe.lock.unlockRead(stamp);
+        }
+        return size;
+    }
+
+    @Override
+    public void forEachId(LongConsumer action) {
+        for (Stripe stripe : longToId) {
+            long[] ids;
+            long stamp = stripe.lock.readLock();
+            try {
+                ids = stripe.ids();
+            } finally {
+                stripe.lock.unlockRead(stamp);
+            }
+            for (long id : ids) {
+                action.accept(id);
+            }
+        }
+    }
+
+    @Override
+    public long firstUnusedId() {
+        // Asked once per Codec, so it scans rather than have every insert bump a shared maximum
+        long max = removedMax.get();
+        for (long id : sparse.keySet()) {
+            max = Math.max(max, id);
+        }
+        if (max >= PAGED_IDS) {
+            return max + 1;
+        }
+        String[][] pages = idToLong;
+        for (int page = pages.length - 1; page >= 0; page--) {
+            if (pages[page] != null) {
+                for (int i = PAGE_SIZE - 1; i >= 0; i--) {
+                    if (URLS.getAcquire(pages[page], i) != null) {
+                        return Math.max(max, ((long) page << PAGE_BITS) + i) + 1;
+                    }
+                }
+            }
+        }
+        return max + 1;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private Stripe stripe(long fingerprint) {
+        return longToId[(int) (fingerprint >>> (64 - STRIPE_BITS))];
+    }
+
+    // 64-bit FNV-1a over the UTF-16 chars with a murmur finalizer, so the high bits
+    // (stripe) and the low bits (slot) are both well mixed
+    static long fingerprint(String longUrl) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < longUrl.length(); i++) {
+            h = (h ^ longUrl.charAt(i)) * 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        return h ^ (h >>> 33);
+    }
+
+    private void store(long id, String longUrl) {
+        if (id >= PAGED_IDS) {
+            sparse.put(id, longUrl);
+            return;
+        }
+        int page = (int) (id >>> PAGE_BITS);
+        String[][] pages = idToLong;
+        if (page >= pages.length || pages[page] == null) {
+            pages = addPage(page);
+        }
+        URLS.setRelease(pages[page], (int) (id & (PAGE_SIZE - 1)), longUrl);
+    }
+
+    // Takes longUrl out from under id unless another removal got there first, so
+    // each id is counted against its page once
+    private boolean erase(long id, String longUrl) {
+        if (id >= PAGED_IDS) {
+            return sparse.remove(id, longUrl);
+        }
+        int page = (int) (id >>> PAGE_BITS);
+        String[] slots = idToLong[page];
+        if (slots == null || !URLS.compareAndSet(slots, (int) (id & (PAGE_SIZE - 1)), longUrl, null)) {
+            return false;
+        }
+        erased(page);
+        return true;
+    }
+
+    private synchronized void erased(int page) {
+        if (page >= erasedPerPage.length) {
+            erasedPerPage = Arrays.copyOf(erasedPerPage, Math.max(erasedPerPage.length * 2, page + 1));
+        }
+        if (++erasedPerPage[page] == PAGE_SIZE) {
+            // Every id of the page came and went, and none of them comes back
+            String[][] pages = idToLong;
+            pages[page] = null;
+            idToLong = pages;
+        }
+    }
+
+    private synchronized String[][] addPage(int page) {
+        String[][] pages = idToLong;
+        if (page >= pages.length) {
+            pages = Arrays.copyOf(pages, Math.max(pages.length * 2, page + 1));
+        }
+        if (pages[page] == null) {
+            pages[page] = new String[PAGE_SIZE];
+        }
+        // Publish the directory after the page, so a reader that finds one finds both
+        idToLong = pages;
+        return pages;
+    }
+
+    // One stripe of the index: [fingerprint, id] pairs in a linear-probing table,
+    // id NONE marking an empty slot; guarded by lock
+    private final class Stripe {
+        final StampedLock lock = new StampedLock();
+        private long[] slots = new long[2 * MIN_STRIPE_SLOTS];
+        private int size;
+
+        long find(long fingerprint, String longUrl) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                try {
+                    long id = probe(fingerprint, longUrl);
+                    if (lock.validate(stamp)) {
+                        return id;
+                    }
+                } catch (IndexOutOfBoundsException e) {
+                    // A slot read mid-write pointed nowhere; retry under the lock
+                }
+            }
+            stamp = lock.readLock();
+            try {
+                return probe(fingerprint, longUrl);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        // The id of the URL with this fingerprint, confirmed against the URL filed
+        // under it, or NONE. Bounded, so a torn optimistic read cannot spin forever.
+        long probe(long fingerprint, String longUrl) {
+            long[] table = slots;
+            int mask = table.length / 2 - 1;
+            int slot = (int) fingerprint & mask;
+            for (int probes = 0; probes <= mask && table[2 * slot + 1] != NONE; probes++) {
+                long id = table[2 * slot + 1];
+                if (table[2 * slot] == fingerprint && longUrl.equals(get(id))) {
+                    return id;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return NONE;
+        }
+
+        void add(long fingerprint, long id) {
+            if (++size * 4 > slots.length / 2 * 3) {
+                grow();
+            }
+            put(slots, fingerprint, id);
+        }
+
+        // Takes out the id's entry and shifts later entries of its run back into the
+        // hole, so lookups need no tombstones
+        void remove(long fingerprint, long id) {
+            int mask = slots.length / 2 - 1;
+            int hole = (int) fingerprint & mask;
+            while (slots[2 * hole + 1] != id) {
+                if (slots[2 * hole + 1] == NONE) {
+                    return;
+                }
+                hole = (hole + 1) & mask;
+            }
+            size--;
+            for (int slot = (hole + 1) & mask; slots[2 * slot + 1] != NONE; slot = (slot + 1) & mask) {
+                int home = (int) slots[2 * slot] & mask;
+                // Moves back only an entry whose probe passed through the hole
+                if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+                    slots[2 * hole] = slots[2 * slot];
+                    slots[2 * hole + 1] = slots[2 * slot + 1];
+                    hole = slot;
+                }
+            }
+            slots[2 * hole] = 0;
+            slots[2 * hole + 1] = NONE;
+        }
+
+        long[] ids() {
+            long[] ids = new long[size];
+            int count = 0;
+            for (int i = 1; i < slots.length; i += 2) {
+                if (slots[i] != NONE) {
+                    ids[count++] = slots[i];
+                }
+            }
+            return ids;
+        }
+
+        private void grow() {
+            long[] grown = new long[slots.length * 2];
+            for (int i = 0; i < slots.length; i += 2) {
+                if (slots[i + 1] != NONE) {
+                    put(grown, slots[i], slots[i + 1]);
+                }
+            }
+            slots = grown;
+        }
+
+        private void put(long[] table, long fingerprint, long id) {
+            int mask = table.length / 2 - 1;
+            int slot = (int) fingerprint & mask;
+            while (table[2 * slot + 1] != NONE) {
+                slot = (slot + 1) & mask;
+            }
+            table[2 * slot] = fingerprint;
+            table[2 * slot + 1] = id;
+        }
+    }
+}
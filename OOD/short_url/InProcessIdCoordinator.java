@@ -0,0 +1,20 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+// A coordinator for the Codecs of one process. It forgets its position on a
+// restart, so start it at the store's firstUnusedId() when the store persists.
+public class InProcessIdCoordinator implements IdBlockCoordinator {
+
+    private final AtomicLong next;
+
+    public InProcessIdCoordinator(long firstId) {
+        if (firstId < 1) {
+            throw new IllegalArgumentException("Ids start at 1");
+        }
+        next = new AtomicLong(firstId);
+    }
+
+    @Override
+    public long claim(int size) {
+        return next.getAndAdd(size);
+    }
+}
@@ -0,0 +1,54 @@
+// Gives every thread its own lease of blockSize ids from the coordinator and
+// hands ids out of it with no shared write at all; only a thread whose lease
+// runs out goes back to the coordinator. Ids are unique but not dense: each
+// thread works through its own block, and a lease left unfinished, by a thread
+// that ends or a process that stops, leaves its remaining ids unused.
+public class LeasedIdAllocator implements IdAllocator {
+
+    public static final int DEFAULT_BLOCK_SIZE = 10_000;
+
+    private final IdBlockCoordinator coordinator;
+    private final int blockSize;
+    // {next id, end of the lease}
+    private final ThreadLocal<long[]> leases = ThreadLocal.withInitial(() -> new long[2]);
+
+    public LeasedIdAllocator(IdBlockCoordinator coordinator) {
+        this(coordinator, DEFAULT_BLOCK_SIZE);
+    }
+
+    public LeasedIdAllocator(IdBlockCoordinator coordinator, int blockSize) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Block size must be positive");
+        }
+        this.coordinator = coordinator;
+        this.blockSize = blockSize;
+    }
+
+    @Override
+    public long nextId() {
+        long[] lease = leases.get();
+        if (lease[0] == lease[1]) {
+            lease[0] = coordinator.claim(blockSize);
+            lease[1] = lease[0] + blockSize;
+        }
+        return lease[0]++;
+    }
+
+    // Takes what is left of the lease, then the rest as one claim of at least a block
+    @Override
+    public void nextIds(long[] ids, int from, int to) {
+        long[] lease = leases.get();
+        int i = from;
+        while (i < to && lease[0] < lease[1]) {
+            ids[i++] = lease[0]++;
+        }
+        if (i < to) {
+            int size = Math.max(blockSize, to - i);
+            lease[0] = coordinator.claim(size);
+            lease[1] = lease[0] + size;
+            while (i < to) {
+                ids[i++] = lease[0]++;
+            }
+        }
+    }
+}
@@ -0,0 +1,158 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// A file mapped in fixed-size chunks and addressed by long position, so it can
+// grow past the 2 GiB limit of a single MappedByteBuffer. Reads and writes use
+// absolute positions only and may run on many threads; a value must not
+// straddle two chunks, which callers guarantee by aligning longs and ints and by
+// never letting a record cross a chunk boundary. Mapped chunks live outside the
+// heap and are paged in and out by the OS.
+class MappedRegion implements Closeable {
+
+    private final FileChannel channel;
+    private final int chunkBits;
+    private final int chunkMask;
+    private volatile MappedByteBuffer[] chunks = new MappedByteBuffer[0];
+
+    MappedRegion(Path file, int chunkBits) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        this.chunkBits = chunkBits;
+        this.chunkMask = (1 << chunkBits) - 1;
+    }
+
+    int chunkSize() {
+        return 1 << chunkBits;
+    }
+
+    long fileSize() throws IOException {
+        return channel.size();
+    }
+
+    // Maps enough chunks to address [0, bytes); mapping past the end grows the file
+    synchronized void ensureCapacity(long bytes) throws IOException {
+        int needed = (int) ((bytes + chunkMask) >>> chunkBits);
+        MappedByteBuffer[] current = chunks;
+        if (needed <= current.length) {
+            return;
+        }
+        MappedByteBuffer[] grown = Arrays.copyOf(current, needed);
+        for (int i = current.length; i < needed; i++) {
+            grown[i] = channel.map(FileChannel.MapMode.READ_WRITE, (long) i << chunkBits, 1 << chunkBits);
+        }
+        chunks = grown;
+    }
+
+    long capacity() {
+        return (long) chunks.length << chunkBits;
+    }
+
+    long getLong(long position) {
+        return chunks[(int) (position >>> chunkBits)].getLong((int) position & chunkMask);
+    }
+
+    void putLong(long position, long value) {
+        chunks[(int) (position >>> chunkBits)].putLong((int) position & chunkMask, value);
+    }
+
+    int getInt(long position) {
+        return chunks[(int) (position >>> chunkBits)].getInt((int) position & chunkMask);
+    }
+
+    void putInt(long position, int value) {
+        chunks[(int) (position >>> chunkBits)].putInt((int) position & chunkMask, value);
+    }
+
+    byte get(long position) {
+        return chunks[(int) (position >>> chunkBits)].get((int) position & chunkMask);
+    }
+
+    void put(long position, byte[] src) {
+        ByteBuffer chunk = chunks[(int) (position >>> chunkBits)].duplicate();
+        chunk.position((int) position & chunkMask);
+        chunk.put(src);
+    }
+
+    void get(long position, byte[] dst) {
+        // Absolute reads, so no buffer view is allocated per call
+        MappedByteBuffer chunk = chunks[(int) (position >>> chunkBits)];
+        int start = (int) position & chunkMask;
+        for (int i = 0; i < dst.length; i++) {
+            dst[i] = chunk.get(start + i);
+        }
+    }
+
+    // Whether [position, position + bytes.length) holds exactly these bytes
+    boolean contentEquals(long position, byte[] bytes) {
+        MappedByteBuffer chunk = chunks[(int) (position >>> chunkBits)];
+        int start = (int) position & chunkMask;
+        for (int i = 0; i < bytes.length; i++) {
+            if (chunk.get(start + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // A read-only view of [position, position + length) sharing the mapping, no copy
+    ByteBuffer slice(long position, int length) {
+        ByteBuffer chunk = chunks[(int) (position >>> chunkBits)].asReadOnlyBuffer();
+        int start = (int) position & chunkMask;
+        chunk.limit(start + length).position(start);
+        return chunk.slice();
+    }
+
+    // A read-only view of the whole chunk holding position, for a caller that walks
+    // many records of one chunk and repositions the view instead of slicing each
+    ByteBuffer chunkView(long position) {
+        return chunks[(int) (position >>> chunkBits)].asReadOnlyBuffer();
+    }
+
+    void force() {
+        for (MappedByteBuffer chunk : chunks) {
+            chunk.force();
+        }
+    }
+
+    // Forces only the chunks overlapping [from, to)
+    void force(long from, long to) {
+        MappedByteBuffer[] mapped = chunks;
+        int last = (int) Math.min(mapped.length - 1, (to - 1) >>> chunkBits);
+        for (int i = (int) (from >>> chunkBits); i <= last; i++) {
+            mapped[i].force();
+        }
+    }
+
+    // Zeroes [from, to), writing only where something is set, so pages of a
+    // sparse file that were never written stay unallocated
+    void clear(long from, long to) {
+        long position = from;
+        while (position < to) {
+            MappedByteBuffer chunk = chunks[(int) (position >>> chunkBits)];
+            int index = (int) position & chunkMask;
+            if ((index & 7) == 0 && to - position >= 8) {
+                if (chunk.getLong(index) != 0) {
+                    chunk.putLong(index, 0);
+                }
+                position += 8;
+            } else {
+                if (chunk.get(index) != 0) {
+                    chunk.put(index, (byte) 0);
+                }
+                position++;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        // The mappings stay valid until collected, so racing readers never fault
+        channel.close();
+    }
+}
@@ -0,0 +1,733 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
+import java.util.zip.CRC32C;
+
+// A store whose URLs never touch the heap while at rest and that survives a
+// restart. Memory-mapped files:
+// - urls.dat: the log, append-only [int length][long id][UTF-8 bytes][int crc32c]
+//   records; a length of -1 pads out the rest of a chunk
+// - offsets.idx: one long per id, the position of its record, so a decode is one
+//   offset read and a read of the record in place
+// - dedup-<slots>.idx: an open-addressing table of longs for long URL -> id, each
+//   slot a 24-bit hash tag over a 40-bit id; a tag match is confirmed against the
+//   record bytes, so the table stores no URL copy at all
+// - checkpoint: how far the log is covered by the index files as last forced, and
+//   the highest id that may have been handed out
+// New records are forced in batches every few milliseconds and the indexes at each
+// checkpoint. Opening an existing store replays the log past the checkpoint
+// straight from the mapping, checking each record's CRC, and stops at the first
+// torn one. Ids are reserved in blocks on disk before use, so ids lost in a crash
+// are never handed out again.
+// Lookups run under an optimistic read and only fall back to a read lock when an
+// insert raced them; inserts are serialized. Ids should be close to dense, since
+// offsets.idx is indexed by id: leased blocks are fine, Snowflake ids do not fit.
+// The log is append-only and recovery replays all of it, so a mapping cannot be
+// taken back and the store does not support removal; expire URLs in a heap store.
+public class MappedUrlStore implements UrlStore {
+
+    private static final int DATA_CHUNK_BITS = 26;
+    private static final int INDEX_CHUNK_BITS = 23;
+    private static final int MIN_SLOTS = 1 << 16;
+    private static final int ID_BITS = 40;
+    private static final long ID_MASK = (1L << ID_BITS) - 1;
+    // Offset 0 of urls.dat is never a record, so an offset of 0 means no URL
+    private static final long DATA_START = 8;
+    private static final int RECORD_HEADER = 12;
+    private static final int RECORD_OVERHEAD = RECORD_HEADER + 4;
+    private static final int PADDING = -1;
+    private static final long RESERVE_BLOCK = 1 << 16;
+    private static final long SYNC_MILLIS = 10;
+    private static final long CHECKPOINT_MILLIS = 60_000;
+
+    private final Path directory;
+    private final int indexChunkBits;
+    private final MappedRegion data;
+    private final MappedRegion offsets;
+    private final StampedLock lock = new StampedLock();
+    // Guarded by the write lock
+    private final CRC32C crc = new CRC32C();
+    private final Object syncLock = new Object();
+    private final ScheduledExecutorService background;
+    private volatile DedupTable dedup;
+    // Written under the write lock; read by sync without it
+    private volatile long appendPosition = DATA_START;
+    // Guarded by the write lock
+    private long count;
+    // Highest id indexed so far. With leased ids it is only an upper bound, since a
+    // lower id can still be inserted later. Every insert writes it after the record
+    // and offset, even when the value does not change, so a reader that reads it
+    // after an insert returned sees that insert's record.
+    private volatile long maxId;
+    private volatile long size;
+    // No id above this has been handed out; raised on disk before one is
+    private volatile long reservedId;
+    // Ids up to this may have been lost in a crash, so a close never releases them
+    private long reservedFloor;
+    private Checkpoint checkpoint;
+    // Guarded by syncLock
+    private long syncedPosition;
+    private boolean closed;
+
+    // Opens the store in the directory, recovering what an earlier store left there,
+    // or creates an empty one. New records reach the disk within 10 ms and the
+    // indexes are checkpointed every minute.
+    public MappedUrlStore(Path directory) throws IOException {
+        this(directory, SYNC_MILLIS, CHECKPOINT_MILLIS);
+    }
+
+    // A crash loses at most the records of the last syncIntervalMillis, and a
+    // recovery replays at most checkpointIntervalMillis of log; 0 leaves either to
+    // sync(), checkpoint() and close()
+    public MappedUrlStore(Path directory, long syncIntervalMillis, long checkpointIntervalMillis) throws IOException {
+        this(directory, DATA_CHUNK_BITS, INDEX_CHUNK_BITS, syncIntervalMillis, checkpointIntervalMillis);
+    }
+
+    // Smaller chunks let tests cross chunk boundaries with little data. An existing
+    // store keeps the data chunk size it was created with.
+    MappedUrlStore(Path directory, int dataChunkBits, int indexChunkBits, long syncIntervalMillis,
+            long checkpointIntervalMillis) throws IOException {
+        Files.createDirectories(directory);
+        this.directory = directory;
+        this.indexChunkBits = indexChunkBits;
+        Checkpoint saved = Checkpoint.read(directory.resolve("checkpoint"));
+        if (saved == null) {
+            // Never checkpointed, so whatever is there never held a mapping
+            deleteStoreFiles(directory);
+            this.data = new MappedRegion(directory.resolve("urls.dat"), dataChunkBits);
+            this.offsets = new MappedRegion(directory.resolve("offsets.idx"), indexChunkBits);
+            this.dedup = newTable(MIN_SLOTS);
+            checkpoint();
+        } else {
+            if (!Files.exists(directory.resolve("urls.dat"))) {
+                throw new IOException("Store in " + directory + " has lost its log");
+            }
+            boolean rebuild = !Files.exists(directory.resolve("offsets.idx"))
+                    || !Files.exists(tableFile(directory, saved.slots));
+            if (rebuild) {
+                Files.deleteIfExists(directory.resolve("offsets.idx"));
+            }
+            this.data = new MappedRegion(directory.resolve("urls.dat"), saved.dataChunkBits);
+            this.offsets = new MappedRegion(directory.resolve("offsets.idx"), indexChunkBits);
+            recover(saved, rebuild);
+        }
+        syncedPosition = appendPosition;
+        if (syncIntervalMillis > 0 || checkpointIntervalMillis > 0) {
+            background = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "url-store");
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            background = null;
+        }
+        if (syncIntervalMillis > 0) {
+            background.scheduleWithFixedDelay(this::syncQuietly, syncIntervalMillis, syncIntervalMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+        if (checkpointIntervalMillis > 0) {
+            background.scheduleWithFixedDelay(this::checkpointQuietly, checkpointIntervalMillis,
+                    checkpointIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public long find(String longUrl) {
+        byte[] bytes = longUrl.getBytes(StandardCharsets.UTF_8);
+        return find(bytes, hash(bytes));
+    }
+
+    private long find(byte[] bytes, long hash) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                long id = probe(bytes, hash);
+                if (lock.validate(stamp)) {
+                    return id;
+                }
+            } catch (IndexOutOfBoundsException e) {
+                // A slot read mid-insert pointed nowhere; retry under the lock
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return probe(bytes, hash);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public long putIfAbsent(String longUrl, LongSupplier nextId) {
+        byte[] bytes = longUrl.getBytes(StandardCharsets.UTF_8);
+        long hash = hash(bytes);
+        long existing = find(bytes, hash);
+        if (existing != NONE) {
+            return existing;
+        }
+        long stamp = lock.writeLock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Store is closed");
+            }
+            existing = probe(bytes, hash);
+            if (existing != NONE) {
+                return existing;
+            }
+            long id = nextId.getAsLong();
+            if (id < 1 || id > ID_MASK) {
+                throw new IllegalStateException("Id " + id + " does not fit the store");
+            }
+            // Also the first insert after a clean open, so the checkpoint stops saying closed
+            if (id > reservedId || checkpoint.closed) {
+                reservedId = Math.max(reservedId, Math.min(id + RESERVE_BLOCK, ID_MASK));
+                writeCheckpoint(checkpoint.reserving(reservedId));
+            }
+            long position = append(bytes, id);
+            index(id, position, hash);
+            appendPosition = position + RECORD_OVERHEAD + bytes.length;
+            return id;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Encodes and hashes the batch before taking the write lock, then takes it once,
+    // claims ids for exactly the absent URLs and writes at most one reservation
+    @Override
+    public void putAllIfAbsent(String[] longUrls, long[] ids, int count, IdAllocator allocator) {
+        byte[][] bytes = new byte[count][];
+        long[] hashes = new long[count];
+        for (int i = 0; i < count; i++) {
+            bytes[i] = longUrls[i].getBytes(StandardCharsets.UTF_8);
+            hashes[i] = hash(bytes[i]);
+            if (RECORD_OVERHEAD + bytes[i].length > data.chunkSize()) {
+                throw new IllegalArgumentException("URL of " + bytes[i].length + " bytes is too long to store");
+            }
+        }
+        long stamp = lock.writeLock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Store is closed");
+            }
+            int[] absent = new int[count];
+            int absentCount = 0;
+            for (int i = 0; i < count; i++) {
+                ids[i] = probe(bytes[i], hashes[i]);
+                if (ids[i] == NONE) {
+                    absent[absentCount++] = i;
+                }
+            }
+            long[] newIds = new long[absentCount];
+            allocator.nextIds(newIds, 0, absentCount);
+            long highest = 0;
+            for (long id : newIds) {
+                if (id < 1 || id > ID_MASK) {
+                    throw new IllegalStateException("Id " + id + " does not fit the store");
+                }
+                highest = Math.max(highest, id);
+            }
+            if (absentCount > 0 && (highest > reservedId || checkpoint.closed)) {
+                reservedId = Math.max(reservedId, Math.min(highest + RESERVE_BLOCK, ID_MASK));
+                writeCheckpoint(checkpoint.reserving(reservedId));
+            }
+            for (int j = 0; j < absentCount; j++) {
+                int i = absent[j];
+                long position = append(bytes[i], newIds[j]);
+                index(newIds[j], position, hashes[i]);
+                appendPosition = position + RECORD_OVERHEAD + bytes[i].length;
+                ids[i] = newIds[j];
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public String get(long id) {
+        long position = recordPosition(id);
+        if (position == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[data.getInt(position)];
+        data.get(position + RECORD_HEADER, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public ByteBuffer getBytes(long id) {
+        long position = recordPosition(id);
+        return position == 0 ? null : data.slice(position + RECORD_HEADER, data.getInt(position));
+    }
+
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    // Walks offsets.idx, so it costs a read per id up to the highest, used or not
+    @Override
+    public void forEachId(LongConsumer action) {
+        long stamp = lock.readLock();
+        try {
+            for (long id = 1; id <= maxId; id++) {
+                if (recordPosition(id) != 0) {
+                    action.accept(id);
+                }
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public long firstUnusedId() {
+        return reservedId + 1;
+    }
+
+    // Forces every record appended so far to disk. Callers that arrive while a
+    // force runs share the next one.
+    public void sync() {
+        long target = appendPosition;
+        synchronized (syncLock) {
+            if (syncedPosition >= target) {
+                return;
+            }
+            long upTo = appendPosition;
+            data.force(syncedPosition, upTo);
+            syncedPosition = upTo;
+        }
+    }
+
+    // Forces the log and the indexes and records how far they reach, so a recovery
+    // only replays what is appended after this. Inserts wait while it runs; lookups
+    // do not.
+    public void checkpoint() throws IOException {
+        long stamp = lock.readLock();
+        try {
+            if (!closed) {
+                forceCheckpoint(false);
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (background != null) {
+            background.shutdown();
+            try {
+                background.awaitTermination(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        long stamp = lock.writeLock();
+        try {
+            if (closed) {
+                return;
+            }
+            // Every id above maxId that was reserved went unused, unless a crash lost it
+            reservedId = Math.max(maxId, reservedFloor);
+            forceCheckpoint(true);
+            closed = true;
+            data.close();
+            offsets.close();
+            dedup.region.close();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private long recordPosition(long id) {
+        if (id < 1 || id > maxId) {
+            return 0;
+        }
+        long position = offsets.getLong(id * 8);
+        // The offset of an id lost in a crash points at nothing or at another id's record
+        return position != 0 && data.getLong(position + 4) == id ? position : 0;
+    }
+
+    // Returns the id whose record holds these bytes, or NONE
+    private long probe(byte[] bytes, long hash) {
+        DedupTable table = dedup;
+        long tag = hash >>> ID_BITS;
+        long slot = hash & table.mask;
+        // Bounded so a torn optimistic read cannot spin forever
+        for (long probes = 0; probes <= table.mask; probes++) {
+            long entry = table.region.getLong(slot * 8);
+            if (entry == 0) {
+                return NONE;
+            }
+            if (entry >>> ID_BITS == tag && matches(entry & ID_MASK, bytes)) {
+                return entry & ID_MASK;
+            }
+            slot = (slot + 1) & table.mask;
+        }
+        return NONE;
+    }
+
+    private boolean matches(long id, byte[] bytes) {
+        long position = recordPosition(id);
+        return position != 0 && data.getInt(position) == bytes.length
+                && data.contentEquals(position + RECORD_HEADER, bytes);
+    }
+
+    // Writes the record and returns its position; the caller moves appendPosition
+    // past it once it is indexed, so a checkpoint never covers an unindexed record.
+    // Caller holds the write lock.
+    private long append(byte[] bytes, long id) throws IOException {
+        int recordLength = RECORD_OVERHEAD + bytes.length;
+        if (recordLength > data.chunkSize()) {
+            throw new IllegalArgumentException("URL of " + bytes.length + " bytes is too long to store");
+        }
+        long position = appendPosition;
+        // Records never straddle two chunks
+        long chunkLeft = data.chunkSize() - (position & (data.chunkSize() - 1));
+        if (recordLength > chunkLeft) {
+            if (chunkLeft >= 4) {
+                data.putInt(position, PADDING);
+            }
+            position += chunkLeft;
+        }
+        data.ensureCapacity(position + recordLength);
+        data.putInt(position, bytes.length);
+        data.putLong(position + 4, id);
+        data.put(position + RECORD_HEADER, bytes);
+        crc.reset();
+        crc.update(data.slice(position + 4, 8 + bytes.length));
+        data.putInt(position + RECORD_HEADER + bytes.length, (int) crc.getValue());
+        return position;
+    }
+
+    // Caller holds the write lock, or is recovering
+    private void index(long id, long position, long hash) throws IOException {
+        DedupTable table = dedup;
+        // Grown first, since growing checkpoints and the record is not in yet
+        if ((count + 1) * 2 > table.mask + 1) {
+            table = grow(table);
+        }
+        offsets.ensureCapacity((id + 1) * 8);
+        offsets.putLong(id * 8, position);
+        maxId = Math.max(maxId, id);
+        // A replayed record may already be in a table forced after it was written
+        if (!table.contains(hash, id)) {
+            table.add(hash, id);
+        }
+        count++;
+        size = count;
+    }
+
+    private void recover(Checkpoint saved, boolean rebuild) throws IOException {
+        reservedId = saved.reservedId;
+        reservedFloor = saved.reservedId;
+        checkpoint = saved;
+        data.ensureCapacity(data.fileSize());
+        offsets.ensureCapacity(offsets.fileSize());
+        long position;
+        if (rebuild) {
+            // Size the table for what the checkpoint counted, so the replay rarely grows it
+            long slots = MIN_SLOTS;
+            while ((saved.count + 1) * 2 > slots) {
+                slots <<= 1;
+            }
+            deleteTables(directory, -1);
+            dedup = newTable(slots);
+            position = DATA_START;
+        } else {
+            deleteTables(directory, saved.slots);
+            dedup = openTable(saved.slots);
+            position = saved.appendPosition;
+            count = saved.count;
+            maxId = saved.maxId;
+            size = count;
+        }
+        appendPosition = position;
+        // The checkpoint forced the log up to where it was written
+        syncedPosition = position;
+        position = replay(position);
+        // A clean close leaves nothing past the tail
+        if (!saved.closed) {
+            // Past the tail lie a torn record or records whose ids were lost; clear them so
+            // a later tail cannot run into them and bring them back
+            data.clear(position, data.capacity());
+            data.force(position, data.capacity());
+        }
+        if (rebuild || position != saved.appendPosition) {
+            forceCheckpoint(false);
+        }
+    }
+
+    // Indexes every intact record from position on and returns where the log ends.
+    // Reads the mapping in place: the CRC and the hash run over a view of the
+    // mapped chunk, so nothing is copied or allocated per record.
+    private long replay(long position) throws IOException {
+        int chunkSize = data.chunkSize();
+        CRC32C check = new CRC32C();
+        ByteBuffer chunk = null;
+        while (position < data.capacity()) {
+            int offset = (int) (position & (chunkSize - 1));
+            int chunkLeft = chunkSize - offset;
+            if (offset == 0 || chunk == null) {
+                chunk = data.chunkView(position);
+            }
+            if (chunkLeft < 4) {
+                position += chunkLeft;
+                continue;
+            }
+            int length = chunk.getInt(offset);
+            if (length == PADDING) {
+                position += chunkLeft;
+                continue;
+            }
+            if (length <= 0 || RECORD_OVERHEAD + length > chunkLeft) {
+                break;
+            }
+            long id = chunk.getLong(offset + 4);
+            check.reset();
+            check.update(chunk.limit(offset + RECORD_HEADER + length).position(offset + 4));
+            chunk.limit(chunkSize);
+            if (id < 1 || id > ID_MASK || chunk.getInt(offset + RECORD_HEADER + length) != (int) check.getValue()) {
+                break;
+            }
+            index(id, position, hash(chunk.limit(offset + RECORD_HEADER + length).position(offset + RECORD_HEADER)));
+            chunk.limit(chunkSize);
+            position += RECORD_OVERHEAD + length;
+            appendPosition = position;
+        }
+        return appendPosition;
+    }
+
+    // Caller holds the lock or is the constructor. Forces data before the
+    // checkpoint that claims it.
+    private void forceCheckpoint(boolean closing) throws IOException {
+        sync();
+        offsets.force();
+        dedup.region.force();
+        writeCheckpoint(new Checkpoint(appendPosition, count, maxId, dedup.mask + 1, reservedId,
+                Integer.numberOfTrailingZeros(data.chunkSize()), closing));
+    }
+
+    // Readers of a checkpoint may be several, so writes of the file are serialized
+    private synchronized void writeCheckpoint(Checkpoint next) throws IOException {
+        next.write(directory);
+        checkpoint = next;
+    }
+
+    // Caller holds the write lock, or is recovering
+    private DedupTable grow(DedupTable old) throws IOException {
+        DedupTable grown = newTable((old.mask + 1) * 2);
+        for (long slot = 0; slot <= old.mask; slot++) {
+            long entry = old.region.getLong(slot * 8);
+            long position = recordPosition(entry & ID_MASK);
+            // Entries of ids lost in a crash have no record and are dropped here
+            if (entry != 0 && position != 0) {
+                // The tag alone cannot place an entry in a bigger table; rehash its record
+                grown.add(hash(data.slice(position + RECORD_HEADER, data.getInt(position))), entry & ID_MASK);
+            }
+        }
+        dedup = grown;
+        // The checkpoint must name the new table before the old one goes
+        forceCheckpoint(false);
+        old.region.close();
+        Files.deleteIfExists(old.file);
+        return grown;
+    }
+
+    private DedupTable newTable(long slots) throws IOException {
+        Files.deleteIfExists(tableFile(directory, slots));
+        return openTable(slots);
+    }
+
+    private DedupTable openTable(long slots) throws IOException {
+        Path file = tableFile(directory, slots);
+        MappedRegion region = new MappedRegion(file, indexChunkBits);
+        region.ensureCapacity(slots * 8);
+        return new DedupTable(file, region, slots - 1);
+    }
+
+    private static Path tableFile(Path directory, long slots) {
+        return directory.resolve("dedup-" + slots + ".idx");
+    }
+
+    // Deletes every dedup table but the one with keepSlots slots
+    private static void deleteTables(Path directory, long keepSlots) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "dedup-*.idx")) {
+            for (Path file : files) {
+                if (!file.equals(tableFile(directory, keepSlots))) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    private static void deleteStoreFiles(Path directory) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+                "{urls.dat,offsets.idx,dedup-*.idx,checkpoint.tmp}")) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    private void syncQuietly() {
+        try {
+            sync();
+        } catch (RuntimeException e) {
+            // Retried on the next tick; until then a crash may lose the newest records
+        }
+    }
+
+    private void checkpointQuietly() {
+        try {
+            checkpoint();
+        } catch (IOException | RuntimeException e) {
+            // The log still holds everything, so a failed checkpoint only lengthens recovery
+        }
+    }
+
+    // 64-bit FNV-1a with a murmur finalizer, so both the low bits (slot) and the high
+    // bits (tag) are well mixed
+    static long hash(byte[] bytes) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : bytes) {
+            h = (h ^ (b & 0xff)) * 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    // Same hash over the remaining bytes of a buffer, e.g. a record still in the mapping
+    static long hash(ByteBuffer bytes) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = bytes.position(); i < bytes.limit(); i++) {
+            h = (h ^ (bytes.get(i) & 0xff)) * 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        return h ^ (h >>> 33);
+    }
+
+    private static final class DedupTable {
+        final Path file;
+        final MappedRegion region;
+        final long mask;
+
+        DedupTable(Path file, MappedRegion region, long mask) {
+            this.file = file;
+            this.region = region;
+            this.mask = mask;
+        }
+
+        void add(long hash, long id) {
+            long slot = hash & mask;
+            while (region.getLong(slot * 8) != 0) {
+                slot = (slot + 1) & mask;
+            }
+            region.putLong(slot * 8, (hash >>> ID_BITS) << ID_BITS | id);
+        }
+
+        // Ids are unique in the log, so an equal tag and id can only be this record's entry
+        boolean contains(long hash, long id) {
+            long wanted = (hash >>> ID_BITS) << ID_BITS | id;
+            long slot = hash & mask;
+            for (long entry; (entry = region.getLong(slot * 8)) != 0; slot = (slot + 1) & mask) {
+                if (entry == wanted) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    // The checkpoint file: [int magic][long appendPosition][long count][long maxId]
+    // [long slots][long reservedId][int dataChunkBits][int closed][int crc32c],
+    // replaced atomically
+    private static final class Checkpoint {
+        private static final int MAGIC = 0x55524c43;
+        private static final int BYTES = 4 + 5 * 8 + 4 + 4 + 4;
+
+        final long appendPosition;
+        final long count;
+        final long maxId;
+        final long slots;
+        final long reservedId;
+        final int dataChunkBits;
+        // Written by close, so nothing was appended after it
+        final boolean closed;
+
+        Checkpoint(long appendPosition, long count, long maxId, long slots, long reservedId, int dataChunkBits,
+                boolean closed) {
+            this.appendPosition = appendPosition;
+            this.count = count;
+            this.maxId = maxId;
+            this.slots = slots;
+            this.reservedId = reservedId;
+            this.dataChunkBits = dataChunkBits;
+            this.closed = closed;
+        }
+
+        Checkpoint reserving(long reservedId) {
+            return new Checkpoint(appendPosition, count, maxId, slots, reservedId, dataChunkBits, false);
+        }
+
+        // Null when there is no checkpoint yet
+        static Checkpoint read(Path file) throws IOException {
+            if (!Files.exists(file)) {
+                return null;
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+            CRC32C check = new CRC32C();
+            check.update(buffer.array(), 0, Math.max(0, buffer.limit() - 4));
+            if (buffer.limit() != BYTES || buffer.getInt() != MAGIC
+                    || buffer.getInt(BYTES - 4) != (int) check.getValue()) {
+                throw new IOException("Corrupt checkpoint " + file);
+            }
+            return new Checkpoint(buffer.getLong(), buffer.getLong(), buffer.getLong(), buffer.getLong(),
+                    buffer.getLong(), buffer.getInt(), buffer.getInt() != 0);
+        }
+
+        void write(Path directory) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(BYTES);
+            buffer.putInt(MAGIC).putLong(appendPosition).putLong(count).putLong(maxId).putLong(slots)
+                    .putLong(reservedId).putInt(dataChunkBits).putInt(closed ? 1 : 0);
+            CRC32C check = new CRC32C();
+            check.update(buffer.array(), 0, BYTES - 4);
+            buffer.putInt((int) check.getValue()).flip();
+            Path temp = directory.resolve("checkpoint.tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+            }
+            Files.move(temp, directory.resolve("checkpoint"), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+// Drives a RedirectServer over loopback and reports redirects per second and
+// latency percentiles. Fills a heap Codec, serves it, and keeps one request in
+// flight on each kept-alive connection for a warm-up and then a measured period.
+// Client and server share the machine, so on few cores the numbers are those of
+// both together.
+//
+//   java RedirectLoadGenerator [connections] [seconds] [urls] [event loops]
+public class RedirectLoadGenerator {
+
+    private static final int WARMUP_SECONDS = 3;
+    private static final int REQUESTS_PER_CONNECTION = 1024;
+
+    private static volatile boolean measuring;
+    private static volatile boolean stopping;
+
+    public static void main(String[] args) throws Exception {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int urls = args.length > 2 ? Integer.parseInt(args[2]) : 100_000;
+        int eventLoops = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+
+        try (Codec codec = new Codec(new InMemoryUrlStore(), DecodeCache.ofEntries(urls));
+             RedirectServer server = new RedirectServer(codec,
+                     new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), eventLoops, true)) {
+            String[] tokens = new String[urls];
+            for (int i = 0; i < urls; i++) {
+                String shortUrl = codec.encode("https://example.com/articles/" + i + "?ref=load");
+                tokens[i] = shortUrl.substring(shortUrl.lastIndexOf('/'));
+            }
+            Client[] clients = new Client[connections];
+            Thread[] threads = new Thread[connections];
+            CountDownLatch connected = new CountDownLatch(connections);
+            for (int i = 0; i < connections; i++) {
+                clients[i] = new Client(server.port(), tokens, new Random(i), connected);
+                threads[i] = new Thread(clients[i], "load-" + i);
+                threads[i].start();
+            }
+            connected.await();
+            Thread.sleep(WARMUP_SECONDS * 1000L);
+            measuring = true;
+            long start = System.nanoTime();
+            Thread.sleep(seconds * 1000L);
+            measuring = false;
+            long elapsed = System.nanoTime() - start;
+            stopping = true;
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            report(clients, elapsed, connections, eventLoops);
+        }
+    }
+
+    private static void report(Client[] clients, long elapsedNanos, int connections, int eventLoops) {
+        int total = 0;
+        for (Client client : clients) {
+            if (client.failure != null) {
+                throw new IllegalStateException("Connection failed", client.failure);
+            }
+            total += client.count;
+        }
+        long[] latencies = new long[total];
+        int at = 0;
+        for (Client client : clients) {
+            System.arraycopy(client.latencies, 0, latencies, at, client.count);
+            at += client.count;
+        }
+        Arrays.sort(latencies);
+        System.out.printf("%d connections, %d event loops: %,d redirects in %.1f s, %,.0f req/s%n", connections,
+                eventLoops, total, elapsedNanos / 1e9, total * 1e9 / elapsedNanos);
+        System.out.printf("latency us: p50 %.1f  p99 %.1f  p99.9 %.1f  max %.1f%n", percentile(latencies, 0.50),
+                percentile(latencies, 0.99), percentile(latencies, 0.999), percentile(latencies, 1.0));
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return Double.NaN;
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1e3;
+    }
+
+    // One kept-alive connection sending GETs for random tokens, one at a time
+    private static final class Client implements Runnable {
+        private final int port;
+        private final byte[][] requests = new byte[REQUESTS_PER_CONNECTION][];
+        private final CountDownLatch connected;
+        private final ByteBuffer response = ByteBuffer.allocate(8192);
+        long[] latencies = new long[1 << 16];
+        int count;
+        volatile Exception failure;
+
+        Client(int port, String[] tokens, Random random, CountDownLatch connected) {
+            this.port = port;
+            this.connected = connected;
+            for (int i = 0; i < requests.length; i++) {
+                requests[i] = ("GET " + tokens[random.nextInt(tokens.length)] + " HTTP/1.1\r\nHost: load\r\n\r\n")
+                        .getBytes(StandardCharsets.US_ASCII);
+            }
+        }
+
+        @Override
+        public void run() {
+            try (SocketChannel channel = SocketChannel.open()) {
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                channel.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+                connected.countDown();
+                for (int i = 0; !stopping; i = (i + 1) & (REQUESTS_PER_CONNECTION - 1)) {
+                    long start = System.nanoTime();
+                    ByteBuffer request = ByteBuffer.wrap(requests[i]);
+                    while (request.hasRemaining()) {
+                        channel.write(request);
+                    }
+                    readRedirect(channel);
+                    long latency = System.nanoTime() - start;
+                    if (measuring) {
+                        record(latency);
+                    }
+                }
+            } catch (Exception e) {
+                failure = e;
+                connected.countDown();
+            }
+        }
+
+        // Reads up to the end of the headers; a redirect has no body
+        private void readRedirect(SocketChannel channel) throws IOException {
+            response.clear();
+            while (!endsWithBlankLine()) {
+                if (!response.hasRemaining() || channel.read(response) < 0) {
+                    throw new IOException("Bad response: "
+                            + new String(response.array(), 0, response.position(), StandardCharsets.ISO_8859_1));
+                }
+            }
+            if (response.get(9) != '3' || response.get(10) != '0' || response.get(11) != '1') {
+                throw new IOException("Not a redirect: "
+                        + new String(response.array(), 0, response.position(), StandardCharsets.ISO_8859_1));
+            }
+        }
+
+        private boolean endsWithBlankLine() {
+            int end = response.position();
+            return end >= 4 && response.get(end - 4) == '\r' && response.get(end - 3) == '\n'
+                    && response.get(end - 2) == '\r' && response.get(end - 1) == '\n';
+        }
+
+        private void record(long latency) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = latency;
+        }
+    }
+}
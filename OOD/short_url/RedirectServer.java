@@ -0,0 +1,543 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// A small HTTP/1.1 front end for a Codec: GET /{token} redirects to the long URL,
+// and POST / with a long URL as its body answers with the short URL as text.
+// Bodies must come with a Content-Length: a request with Transfer-Encoding is
+// refused and its connection closed, so no framing is ever guessed at.
+// Each event loop thread runs a selector over its own connections, which the
+// first loop accepts and deals out in turn. Requests are parsed in place in the
+// connection's buffer and the token is decoded from there, the response headers
+// are pre-encoded bytes, and connections are kept alive with pipelined requests
+// answered in order; a redirect allocates nothing beyond what the decode does.
+public class RedirectServer implements Closeable {
+
+    private static final int BUFFER_SIZE = 4096;
+    // Headers and body of one request; anything longer is refused and the connection closed
+    private static final int MAX_REQUEST_BYTES = 64 * 1024;
+
+    private static final byte[] MOVED_PERMANENTLY = ascii("HTTP/1.1 301 Moved Permanently\r\n");
+    private static final byte[] FOUND = ascii("HTTP/1.1 302 Found\r\n");
+    private static final byte[] REDIRECT_HEADERS = ascii("Content-Length: 0\r\nLocation: ");
+    private static final byte[] CREATED = ascii("HTTP/1.1 200 OK\r\nContent-Type: text/plain\r\nContent-Length: ");
+    private static final byte[] NOT_FOUND = ascii("HTTP/1.1 404 Not Found\r\nContent-Length: 0\r\n");
+    private static final byte[] BAD_REQUEST = ascii("HTTP/1.1 400 Bad Request\r\nContent-Length: 0\r\n");
+    private static final byte[] NOT_ALLOWED = ascii("HTTP/1.1 405 Method Not Allowed\r\nAllow: GET, POST\r\n"
+            + "Content-Length: 0\r\n");
+    private static final byte[] TOO_LARGE = ascii("HTTP/1.1 413 Content Too Large\r\nContent-Length: 0\r\n");
+    private static final byte[] SERVER_ERROR = ascii("HTTP/1.1 500 Internal Server Error\r\nContent-Length: 0\r\n");
+    private static final byte[] NOT_IMPLEMENTED = ascii("HTTP/1.1 501 Not Implemented\r\nContent-Length: 0\r\n");
+    private static final byte[] CLOSE = ascii("Connection: close\r\n");
+    private static final byte[] CRLF = ascii("\r\n");
+    private static final byte[] HEX = ascii("0123456789ABCDEF");
+    private static final byte[] CONTENT_LENGTH = ascii("content-length:");
+    private static final byte[] CONNECTION = ascii("connection:");
+    private static final byte[] TRANSFER_ENCODING = ascii("transfer-encoding:");
+
+    private final Codec codec;
+    private final boolean permanent;
+    private final ServerSocketChannel server;
+    private final int port;
+    private final EventLoop[] loops;
+    private int nextLoop;
+    private volatile boolean closed;
+
+    // Permanent (301) redirects, one event loop per processor
+    public RedirectServer(Codec codec, InetSocketAddress address) throws IOException {
+        this(codec, address, Runtime.getRuntime().availableProcessors(), true);
+    }
+
+    // permanent picks 301 over 302; a 302 keeps browsers coming back, so every
+    // visit is seen, at the cost of a request per visit
+    public RedirectServer(Codec codec, InetSocketAddress address, int eventLoops, boolean permanent)
+            throws IOException {
+        if (eventLoops < 1) {
+            throw new IllegalArgumentException("Need at least one event loop");
+        }
+        this.codec = codec;
+        this.permanent = permanent;
+        server = ServerSocketChannel.open();
+        server.bind(address, 1024);
+        server.configureBlocking(false);
+        port = ((InetSocketAddress) server.getLocalAddress()).getPort();
+        loops = new EventLoop[eventLoops];
+        for (int i = 0; i < eventLoops; i++) {
+            loops[i] = new EventLoop(i);
+        }
+        server.register(loops[0].selector, SelectionKey.OP_ACCEPT);
+        for (EventLoop loop : loops) {
+            loop.thread.start();
+        }
+    }
+
+    public int port() {
+        return port;
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        for (EventLoop loop : loops) {
+            loop.selector.wakeup();
+        }
+        for (EventLoop loop : loops) {
+            try {
+                loop.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        server.close();
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private final class EventLoop implements Runnable {
+        final Selector selector;
+        final Thread thread;
+        // Handed over by the accepting loop, registered by this one
+        final ConcurrentLinkedQueue<SocketChannel> accepted = new ConcurrentLinkedQueue<>();
+
+        EventLoop(int index) throws IOException {
+            selector = Selector.open();
+            thread = new Thread(this, "redirect-" + index);
+            thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!closed) {
+                    selector.select(this::handle);
+                    SocketChannel channel;
+                    while ((channel = accepted.poll()) != null) {
+                        register(channel);
+                    }
+                }
+            } catch (IOException | ClosedSelectorException e) {
+                // Closing anyway
+            } finally {
+                for (SelectionKey key : selector.keys()) {
+                    closeQuietly(key);
+                }
+                closeQuietly(selector);
+            }
+        }
+
+        // Whatever one connection throws, e.g. a CancelledKeyException, closes only
+        // that connection; the loop goes on, and loop 0 keeps accepting
+        private void handle(SelectionKey key) {
+            if (key.channel() == server) {
+                accept();
+                return;
+            }
+            try {
+                Connection connection = (Connection) key.attachment();
+                if (key.isWritable()) {
+                    connection.flush(key);
+                }
+                if (key.isValid() && key.isReadable()) {
+                    connection.read(key);
+                }
+            } catch (IOException | RuntimeException e) {
+                closeQuietly(key);
+            }
+        }
+
+        private void accept() {
+            while (true) {
+                SocketChannel channel;
+                try {
+                    channel = server.accept();
+                } catch (IOException e) {
+                    // E.g. out of file descriptors; the server stays open and the next select retries
+                    return;
+                }
+                if (channel == null) {
+                    return;
+                }
+                EventLoop loop = loops[nextLoop];
+                nextLoop = nextLoop + 1 == loops.length ? 0 : nextLoop + 1;
+                if (loop == this) {
+                    register(channel);
+                } else {
+                    loop.accepted.add(channel);
+                    loop.selector.wakeup();
+                }
+            }
+        }
+
+        // A client that is already gone fails here and is dropped alone
+        private void register(SocketChannel channel) {
+            try {
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                channel.register(selector, SelectionKey.OP_READ, new Connection(channel));
+            } catch (IOException | RuntimeException e) {
+                closeQuietly(channel);
+            }
+        }
+    }
+
+    private static void closeQuietly(SelectionKey key) {
+        key.cancel();
+        closeQuietly(key.channel());
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // Nothing left to do with it
+        }
+    }
+
+    // One client connection; touched only by its event loop
+    private final class Connection {
+        final SocketChannel channel;
+        // Request bytes not yet answered, in write mode between reads
+        ByteBuffer in = ByteBuffer.allocate(BUFFER_SIZE);
+        // Response bytes not yet sent, in write mode between flushes
+        ByteBuffer out = ByteBuffer.allocate(BUFFER_SIZE);
+        final AsciiView view = new AsciiView();
+        final byte[] shortUrl = new byte[Codec.maxShortUrlLength()];
+        boolean closing;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        void read(SelectionKey key) throws IOException {
+            if (channel.read(in) < 0) {
+                closeQuietly(key);
+                return;
+            }
+            in.flip();
+            while (!closing && answer()) {
+                // Pipelined requests, answered in order
+            }
+            in.compact();
+            if (!closing && !in.hasRemaining()) {
+                if (in.capacity() >= MAX_REQUEST_BYTES) {
+                    respond(TOO_LARGE, true);
+                } else {
+                    in = ByteBuffer.allocate(in.capacity() * 2).put(in.flip());
+                }
+            }
+            flush(key);
+        }
+
+        void flush(SelectionKey key) throws IOException {
+            out.flip();
+            channel.write(out);
+            boolean drained = !out.hasRemaining();
+            out.compact();
+            if (drained && closing) {
+                closeQuietly(key);
+            } else {
+                // Stops reading while a slow client has responses waiting
+                key.interestOps(drained ? SelectionKey.OP_READ : SelectionKey.OP_WRITE);
+            }
+        }
+
+        // Answers the request at the head of in, if it has all arrived, and
+        // returns whether it did
+        private boolean answer() {
+            int start = in.position();
+            int limit = in.limit();
+            byte[] bytes = in.array();
+            int headersEnd = indexOf(bytes, start, limit);
+            if (headersEnd < 0) {
+                return false;
+            }
+            int methodEnd = indexOf(bytes, start, headersEnd, (byte) ' ');
+            int targetEnd = methodEnd < 0 ? -1 : indexOf(bytes, methodEnd + 1, headersEnd, (byte) ' ');
+            int lineEnd = indexOf(bytes, start, headersEnd + 2, (byte) '\r');
+            if (targetEnd < 0 || lineEnd < targetEnd) {
+                respond(BAD_REQUEST, true);
+                return false;
+            }
+            // HTTP/1.0 closes unless asked not to, HTTP/1.1 stays open unless asked to close
+            boolean keepAlive = bytes[lineEnd - 1] != '0';
+            long contentLength = 0;
+            boolean hasContentLength = false;
+            boolean hasTransferEncoding = false;
+            int line = lineEnd + 2;
+            while (line < headersEnd) {
+                int end = indexOf(bytes, line, headersEnd + 2, (byte) '\r');
+                if (startsWithIgnoreCase(bytes, line, end, CONTENT_LENGTH)) {
+                    long length = parseLength(bytes, line + CONTENT_LENGTH.length, end);
+                    // Two lengths that disagree leave the body's end to whoever reads it
+                    contentLength = hasContentLength && length != contentLength ? -1 : length;
+                    hasContentLength = true;
+                } else if (startsWithIgnoreCase(bytes, line, end, TRANSFER_ENCODING)) {
+                    hasTransferEncoding = true;
+                } else if (startsWithIgnoreCase(bytes, line, end, CONNECTION)) {
+                    keepAlive = containsIgnoreCase(bytes, line + CONNECTION.length, end, "keep-alive")
+                            || keepAlive && !containsIgnoreCase(bytes, line + CONNECTION.length, end, "close");
+                }
+                line = end + 2;
+            }
+            // Chunked bodies are not read, so a request framed that way cannot be
+            // answered, nor can the bytes after it be trusted to start a request;
+            // with a Content-Length as well it is ambiguous, the way requests get smuggled
+            if (hasTransferEncoding) {
+                respond(hasContentLength ? BAD_REQUEST : NOT_IMPLEMENTED, true);
+                return false;
+            }
+            if (contentLength < 0 || contentLength > MAX_REQUEST_BYTES) {
+                respond(contentLength < 0 ? BAD_REQUEST : TOO_LARGE, true);
+                return false;
+            }
+            int bodyStart = headersEnd + 4;
+            if (limit - bodyStart < contentLength) {
+                return false;
+            }
+            int bodyEnd = bodyStart + (int) contentLength;
+            try {
+                if (isMethod(bytes, start, methodEnd, "GET")) {
+                    redirect(bytes, methodEnd + 1, targetEnd, !keepAlive);
+                } else if (isMethod(bytes, start, methodEnd, "POST")) {
+                    if (targetEnd - methodEnd == 2 && bytes[methodEnd + 1] == '/') {
+                        shorten(bytes, bodyStart, bodyEnd, !keepAlive);
+                    } else {
+                        respond(NOT_FOUND, !keepAlive);
+                    }
+                } else {
+                    respond(NOT_ALLOWED, !keepAlive);
+                }
+            } catch (RuntimeException e) {
+                respond(SERVER_ERROR, true);
+            }
+            in.position(bodyEnd);
+            return true;
+        }
+
+        private void redirect(byte[] bytes, int targetStart, int targetEnd, boolean close) {
+            view.wrap(bytes);
+            String longUrl = codec.tryDecode(view, targetStart, targetEnd);
+            if (longUrl == null) {
+                respond(NOT_FOUND, close);
+                return;
+            }
+            // Escaped, at most 9 bytes per char, so a stored URL cannot end the header early
+            ensure(MOVED_PERMANENTLY.length + REDIRECT_HEADERS.length + CLOSE.length + 2 * CRLF.length
+                    + 9 * longUrl.length());
+            out.put(permanent ? MOVED_PERMANENTLY : FOUND);
+            if (close) {
+                out.put(CLOSE);
+                closing = true;
+            }
+            out.put(REDIRECT_HEADERS);
+            putEscaped(longUrl);
+            out.put(CRLF).put(CRLF);
+        }
+
+        private void shorten(byte[] bytes, int bodyStart, int bodyEnd, boolean close) {
+            while (bodyEnd > bodyStart && bytes[bodyEnd - 1] <= ' ') {
+                bodyEnd--;
+            }
+            if (bodyEnd == bodyStart) {
+                respond(BAD_REQUEST, close);
+                return;
+            }
+            int length;
+            try {
+                length = codec.encode(new String(bytes, bodyStart, bodyEnd - bodyStart, StandardCharsets.UTF_8),
+                        shortUrl, 0);
+            } catch (IllegalArgumentException e) {
+                respond(BAD_REQUEST, close);
+                return;
+            }
+            ensure(CREATED.length + 10 + CLOSE.length + 2 * CRLF.length + length);
+            out.put(CREATED);
+            putDecimal(length);
+            out.put(CRLF);
+            if (close) {
+                out.put(CLOSE);
+                closing = true;
+            }
+            out.put(CRLF).put(shortUrl, 0, length);
+        }
+
+        private void respond(byte[] response, boolean close) {
+            ensure(response.length + CLOSE.length + CRLF.length);
+            out.put(response);
+            if (close) {
+                out.put(CLOSE);
+                closing = true;
+            }
+            out.put(CRLF);
+        }
+
+        private void ensure(int bytes) {
+            if (out.remaining() < bytes) {
+                out = ByteBuffer.allocate(Math.max(out.capacity() * 2, out.position() + bytes)).put(out.flip());
+            }
+        }
+
+        // Printable ASCII as is, everything else as %XX of its UTF-8 bytes
+        private void putEscaped(String url) {
+            for (int i = 0; i < url.length(); i++) {
+                char c = url.charAt(i);
+                if (c > ' ' && c < 0x7f) {
+                    out.put((byte) c);
+                } else if (c < 0x80) {
+                    putPercent(c);
+                } else if (c < 0x800) {
+                    putPercent(0xc0 | c >> 6);
+                    putPercent(0x80 | c & 0x3f);
+                } else if (Character.isHighSurrogate(c) && i + 1 < url.length()
+                        && Character.isLowSurrogate(url.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, url.charAt(++i));
+                    putPercent(0xf0 | codePoint >> 18);
+                    putPercent(0x80 | codePoint >> 12 & 0x3f);
+                    putPercent(0x80 | codePoint >> 6 & 0x3f);
+                    putPercent(0x80 | codePoint & 0x3f);
+                } else {
+                    putPercent(0xe0 | c >> 12);
+                    putPercent(0x80 | c >> 6 & 0x3f);
+                    putPercent(0x80 | c & 0x3f);
+                }
+            }
+        }
+
+        private void putPercent(int b) {
+            out.put((byte) '%').put(HEX[b >> 4 & 0xf]).put(HEX[b & 0xf]);
+        }
+
+        private void putDecimal(int n) {
+            int digits = 1;
+            for (int rest = n / 10; rest > 0; rest /= 10) {
+                digits++;
+            }
+            int at = out.position() + digits;
+            out.position(at);
+            do {
+                out.put(--at, (byte) ('0' + n % 10));
+                n /= 10;
+            } while (n > 0);
+        }
+    }
+
+    // Where "\r\n\r\n" starts in bytes[from, to), or -1
+    private static int indexOf(byte[] bytes, int from, int to) {
+        for (int i = from; i + 3 < to; i++) {
+            if (bytes[i] == '\r' && bytes[i + 1] == '\n' && bytes[i + 2] == '\r' && bytes[i + 3] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int indexOf(byte[] bytes, int from, int to, byte b) {
+        for (int i = from; i < to; i++) {
+            if (bytes[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isMethod(byte[] bytes, int from, int to, String method) {
+        if (to - from != method.length()) {
+            return false;
+        }
+        for (int i = 0; i < method.length(); i++) {
+            if (bytes[from + i] != method.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Whether bytes[from, to) starts with prefix, which is lower case
+    private static boolean startsWithIgnoreCase(byte[] bytes, int from, int to, byte[] prefix) {
+        if (to - from < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if ((bytes[from + i] | 0x20) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Whether bytes[from, to) holds word, which is lower-case letters and dashes
+    private static boolean containsIgnoreCase(byte[] bytes, int from, int to, String word) {
+        for (int i = from; i + word.length() <= to; i++) {
+            int j = 0;
+            while (j < word.length() && (bytes[i + j] | 0x20) == word.charAt(j)) {
+                j++;
+            }
+            if (j == word.length()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // The decimal in bytes[from, to) around optional spaces, or -1 if it is not one
+    private static long parseLength(byte[] bytes, int from, int to) {
+        while (from < to && bytes[from] == ' ') {
+            from++;
+        }
+        while (to > from && bytes[to - 1] == ' ') {
+            to--;
+        }
+        if (from == to || to - from > 18) {
+            return -1;
+        }
+        long n = 0;
+        for (int i = from; i < to; i++) {
+            if (bytes[i] < '0' || bytes[i] > '9') {
+                return -1;
+            }
+            n = n * 10 + bytes[i] - '0';
+        }
+        return n;
+    }
+
+    // The bytes of a request as chars, without copying them out
+    private static final class AsciiView implements CharSequence {
+        private byte[] bytes;
+
+        void wrap(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public int length() {
+            return bytes.length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (bytes[index] & 0xff);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new String(bytes, start, end - start, StandardCharsets.ISO_8859_1);
+        }
+
+        @Override
+        public String toString() {
+            return new String(bytes, StandardCharsets.ISO_8859_1);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+// Snowflake-style ids, [41-bit milliseconds since 2024][10-bit node][12-bit
+// sequence]: unique across up to 1024 nodes with no coordination at all, as long
+// as every node has its own node id and its clock does not run back across a
+// restart. A burst of more than 4096 ids in a millisecond borrows from the next
+// millisecond rather than waiting. The ids are 63 bits wide, so they suit only a
+// store that takes sparse ids, such as InMemoryUrlStore, and make 11-character
+// tokens; MappedUrlStore rejects them.
+public class SnowflakeIdAllocator implements IdAllocator {
+
+    static final long EPOCH_MILLIS = 1_704_067_200_000L;
+    static final int NODE_BITS = 10;
+    static final int SEQUENCE_BITS = 12;
+    public static final int MAX_NODE = (1 << NODE_BITS) - 1;
+
+    private final long node;
+    private final LongSupplier clock;
+    // Milliseconds since EPOCH_MILLIS over the sequence, the last one issued
+    private final AtomicLong last = new AtomicLong();
+
+    public SnowflakeIdAllocator(int node) {
+        this(node, System::currentTimeMillis);
+    }
+
+    SnowflakeIdAllocator(int node, LongSupplier clock) {
+        if (node < 0 || node > MAX_NODE) {
+            throw new IllegalArgumentException("Node id must be between 0 and " + MAX_NODE);
+        }
+        this.node = node;
+        this.clock = clock;
+    }
+
+    @Override
+    public long nextId() {
+        while (true) {
+            long previous = last.get();
+            long now = (clock.getAsLong() - EPOCH_MILLIS) << SEQUENCE_BITS;
+            // Never behind the last id, so a clock stepping back cannot repeat one
+            long next = Math.max(now, previous + 1);
+            if (last.compareAndSet(previous, next)) {
+                long millis = next >>> SEQUENCE_BITS;
+                long sequence = next & ((1 << SEQUENCE_BITS) - 1);
+                return millis << (NODE_BITS + SEQUENCE_BITS) | node << SEQUENCE_BITS | sequence;
+            }
+        }
+    }
+}
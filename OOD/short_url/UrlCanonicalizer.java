@@ -0,0 +1,170 @@
+// Rewrites URLs that differ only trivially to one spelling, so they dedupe to one
+// short URL: scheme and host lower-cased, the scheme's default port dropped, an
+// empty path made "/" and a trailing slash dropped from any other, and query
+// parameters sorted by name, keeping the order of repeated names. Userinfo, path
+// case, percent-encoding and the fragment are left as they are. A URL without a
+// "scheme://" authority comes back unchanged.
+// Dropping a trailing slash and reordering parameters are not equivalences HTTP
+// promises; they hold for nearly every site, which is why a Codec only does this
+// when asked.
+public final class UrlCanonicalizer {
+
+    private UrlCanonicalizer() {
+    }
+
+    public static String canonicalize(String url) {
+        int schemeEnd = schemeEnd(url);
+        if (schemeEnd < 0 || !url.startsWith("//", schemeEnd + 1)) {
+            return url;
+        }
+        int authorityStart = schemeEnd + 3;
+        int authorityEnd = indexOfAny(url, authorityStart, "/?#");
+        int fragmentStart = url.indexOf('#', authorityEnd);
+        if (fragmentStart < 0) {
+            fragmentStart = url.length();
+        }
+        int queryStart = url.indexOf('?', authorityEnd);
+        if (queryStart < 0 || queryStart > fragmentStart) {
+            queryStart = fragmentStart;
+        }
+
+        StringBuilder canonical = new StringBuilder(url.length());
+        appendLowerCase(canonical, url, 0, schemeEnd).append("://");
+        appendAuthority(canonical, defaultPort(canonical, schemeEnd), url, authorityStart, authorityEnd);
+        int pathEnd = queryStart;
+        while (pathEnd > authorityEnd + 1 && url.charAt(pathEnd - 1) == '/') {
+            pathEnd--;
+        }
+        if (pathEnd == authorityEnd) {
+            canonical.append('/');
+        } else {
+            canonical.append(url, authorityEnd, pathEnd);
+        }
+        appendQuery(canonical, url, queryStart, fragmentStart);
+        canonical.append(url, fragmentStart, url.length());
+        // Most URLs come in canonical already; hand those back rather than a copy
+        return url.contentEquals(canonical) ? url : canonical.toString();
+    }
+
+    // Where the scheme's ':' is, or -1 if the URL does not start with a scheme
+    private static int schemeEnd(String url) {
+        if (url.isEmpty() || !isAsciiLetter(url.charAt(0))) {
+            return -1;
+        }
+        for (int i = 1; i < url.length(); i++) {
+            char c = url.charAt(i);
+            if (c == ':') {
+                return i;
+            }
+            if (!isAsciiLetter(c) && (c < '0' || c > '9') && c != '+' && c != '-' && c != '.') {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private static void appendAuthority(StringBuilder canonical, String defaultPort, String url, int start, int end) {
+        int hostStart = url.lastIndexOf('@', end - 1) + 1;
+        if (hostStart > start) {
+            canonical.append(url, start, hostStart);
+        } else {
+            hostStart = start;
+        }
+        // An IPv6 literal has colons of its own; the port comes after its ']'
+        int bracket = url.lastIndexOf(']', end - 1);
+        int colon = url.lastIndexOf(':', end - 1);
+        int hostEnd = colon >= hostStart && colon > bracket ? colon : end;
+        appendLowerCase(canonical, url, hostStart, hostEnd);
+        int portLength = end - hostEnd - 1;
+        if (portLength > 0 && !(portLength == defaultPort.length()
+                && url.regionMatches(hostEnd + 1, defaultPort, 0, portLength))) {
+            canonical.append(url, hostEnd, end);
+        }
+    }
+
+    // The default port of the scheme in canonical[0, schemeEnd), already lower case
+    private static String defaultPort(StringBuilder canonical, int schemeEnd) {
+        switch (canonical.substring(0, schemeEnd)) {
+            case "http":
+            case "ws":
+                return "80";
+            case "https":
+            case "wss":
+                return "443";
+            case "ftp":
+                return "21";
+            default:
+                return "";
+        }
+    }
+
+    // Parameters sorted by name, stably, with empty ones and an empty query dropped.
+    // Sorted as start offsets into url by insertion, since queries are short and
+    // mostly in order already, so no parameter is copied out.
+    private static void appendQuery(StringBuilder canonical, String url, int start, int end) {
+        if (end - start <= 1) {
+            return;
+        }
+        int[] starts = new int[(end - start) / 2 + 1];
+        int count = 0;
+        for (int at = start + 1; at < end; at = nextParameter(url, at, end) + 1) {
+            if (url.charAt(at) == '&') {
+                continue;
+            }
+            int i = count++;
+            while (i > 0 && compareNames(url, starts[i - 1], at, end) > 0) {
+                starts[i] = starts[i - 1];
+                i--;
+            }
+            starts[i] = at;
+        }
+        for (int i = 0; i < count; i++) {
+            canonical.append(i == 0 ? '?' : '&').append(url, starts[i], nextParameter(url, starts[i], end));
+        }
+    }
+
+    // Where the parameter starting at from ends
+    private static int nextParameter(String url, int from, int end) {
+        int amp = url.indexOf('&', from);
+        return amp < 0 || amp > end ? end : amp;
+    }
+
+    // Compares the names of the parameters starting at a and b, the part before '='
+    private static int compareNames(String url, int a, int b, int end) {
+        while (true) {
+            char x = a < end ? url.charAt(a) : '&';
+            char y = b < end ? url.charAt(b) : '&';
+            boolean xDone = x == '&' || x == '=';
+            boolean yDone = y == '&' || y == '=';
+            if (xDone || yDone) {
+                return xDone == yDone ? 0 : xDone ? -1 : 1;
+            }
+            if (x != y) {
+                return x - y;
+            }
+            a++;
+            b++;
+        }
+    }
+
+    private static StringBuilder appendLowerCase(StringBuilder canonical, String url, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = url.charAt(i);
+            canonical.append(c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c);
+        }
+        return canonical;
+    }
+
+    private static int indexOfAny(String s, int from, String chars) {
+        for (int i = from; i < s.length(); i++) {
+            if (chars.indexOf(s.charAt(i)) >= 0) {
+                return i;
+            }
+        }
+        return s.length();
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+}
@@ -0,0 +1,61 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
+
+// Where Codec keeps its mappings: long URL -> id for dedup, id -> long URL for
+// decode. Ids come from the Codec; a store only files URLs under them.
+public interface UrlStore extends AutoCloseable {
+
+    long NONE = 0;
+
+    // The id the URL is stored under, or NONE
+    long find(String longUrl);
+
+    // The URL's id, storing the URL under nextId.getAsLong() first if it is absent.
+    // Concurrent callers with the same URL get the same id and nextId is called
+    // once between them.
+    long putIfAbsent(String longUrl, LongSupplier nextId);
+
+    // Sets ids[i] to the id of each of the distinct URLs longUrls[0, count), storing
+    // the absent ones under ids taken from the allocator in one nextIds call. A
+    // store may take its locks once for the whole batch.
+    default void putAllIfAbsent(String[] longUrls, long[] ids, int count, IdAllocator allocator) {
+        for (int i = 0; i < count; i++) {
+            ids[i] = putIfAbsent(longUrls[i], allocator::nextId);
+        }
+    }
+
+    // The URL stored under id, or null
+    String get(long id);
+
+    // The UTF-8 bytes of the URL stored under id as a read-only buffer, or null.
+    // A store backed by a mapping returns a view of it rather than a copy.
+    ByteBuffer getBytes(long id);
+
+    // Whether remove works. A store without it cannot take mappings with a TTL.
+    default boolean supportsRemoval() {
+        return false;
+    }
+
+    // Forgets the URL stored under id, in both directions, and returns whether there
+    // was one. The id stays used: firstUnusedId() never falls back below it. Only
+    // called on a store whose supportsRemoval() is true.
+    default boolean remove(long id) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " keeps every mapping");
+    }
+
+    long size();
+
+    // Calls action with the id of every stored URL, in no particular order; URLs
+    // stored while it runs may or may not be seen
+    void forEachId(LongConsumer action);
+
+    // The lowest id above every id the store holds or may have handed out before a
+    // crash; a Codec numbers new URLs from here, so a reopened store never sees an
+    // id twice. 1 for an empty store.
+    long firstUnusedId();
+
+    @Override
+    void close() throws IOException;
+}